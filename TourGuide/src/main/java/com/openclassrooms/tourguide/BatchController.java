@@ -0,0 +1,126 @@
+package com.openclassrooms.tourguide;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.openclassrooms.tourguide.cluster.BatchRouter;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Contrôleur des requêtes groupées de l'application TourGuide.
+ * Chaque endpoint reçoit la liste des noms d'utilisateurs dans le corps de la requête
+ * et renvoie une seule réponse, indexée par nom d'utilisateur ; un utilisateur inconnu
+ * est associé à {@code null}. Le travail commun (instantané du catalogue, appels à
+ * RewardCentral) est partagé entre les utilisateurs de la requête.
+ * En mode cluster, les utilisateurs appartenant à d'autres nœuds leur sont transmis par tranche,
+ * et la réponse réunit les tranches dans l'ordre de la requête.
+ */
+@RestController
+@RequestMapping("/batch")
+public class BatchController {
+
+    @Autowired
+    TourGuideService tourGuideService;
+
+    @Autowired
+    BatchRouter batchRouter;
+
+    @Value("${tourguide.batch.max-users:1000}")
+    int maxUsers;
+
+    /**
+     * Retourne la dernière position de chaque utilisateur.
+     * @param request la requête reçue
+     * @param userNames les noms des utilisateurs
+     * @return la position de chaque utilisateur
+     */
+    @PostMapping("/getLocations")
+    public Map<String, Object> getLocations(HttpServletRequest request, @RequestBody List<String> userNames) {
+        return query(request, userNames, tourGuideService::getUserLocations);
+    }
+
+    /**
+     * Retourne les récompenses de chaque utilisateur.
+     * @param request la requête reçue
+     * @param userNames les noms des utilisateurs
+     * @return les récompenses de chaque utilisateur
+     */
+    @PostMapping("/getRewards")
+    public Map<String, Object> getRewards(HttpServletRequest request, @RequestBody List<String> userNames) {
+        return query(request, userNames, tourGuideService::getUserRewards);
+    }
+
+    /**
+     * Retourne les attractions proches de chaque utilisateur, comme {@code /getNearbyAttractions}.
+     * @param request la requête reçue
+     * @param userNames les noms des utilisateurs
+     * @param limit le nombre maximal d'attractions par utilisateur, au plus {@value TourGuideController#MAX_NEARBY_LIMIT}
+     * @return les attractions proches de chaque utilisateur
+     */
+    @PostMapping("/getNearbyAttractions")
+    public Map<String, Object> getNearbyAttractions(HttpServletRequest request, @RequestBody List<String> userNames,
+                                                    @RequestParam(defaultValue = "5") int limit) {
+        TourGuideController.checkNearbyLimit(limit);
+        return query(request, userNames, users -> tourGuideService.getNearbyAttractionDTOs(users, limit));
+    }
+
+    private <T> Map<String, Object> query(HttpServletRequest request, List<String> userNames,
+                                          Function<List<User>, Map<User, T>> batch) {
+        if (userNames.size() > maxUsers) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + maxUsers + " users per batch, got " + userNames.size());
+        }
+        String selfId = batchRouter.getSelfId();
+        Map<String, List<String>> slices = batchRouter.partition(request, userNames);
+        // Les tranches distantes partent avant le traitement de la tranche locale
+        Map<String, CompletableFuture<Map<String, JsonNode>>> forwarded = new LinkedHashMap<>();
+        slices.forEach((nodeId, names) -> {
+            if (!nodeId.equals(selfId)) {
+                forwarded.put(nodeId, batchRouter.forward(nodeId, request, names));
+            }
+        });
+
+        Map<String, Object> results = new HashMap<>(queryLocally(slices.getOrDefault(selfId, List.of()), batch));
+        forwarded.forEach((nodeId, response) -> results.putAll(batchRouter.await(nodeId, response)));
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        for (String userName : userNames) {
+            response.put(userName, results.get(userName));
+        }
+        return response;
+    }
+
+    private <T> Map<String, T> queryLocally(List<String> userNames, Function<List<User>, Map<User, T>> batch) {
+        Map<String, User> users = new LinkedHashMap<>();
+        for (String userName : userNames) {
+            User user = tourGuideService.getUser(userName);
+            if (user != null) {
+                users.put(userName, user);
+            }
+        }
+        Map<User, T> results = batch.apply(new ArrayList<>(users.values()));
+
+        Map<String, T> response = new HashMap<>();
+        users.forEach((userName, user) -> response.put(userName, results.get(user)));
+        return response;
+    }
+}
@@ -0,0 +1,50 @@
+package com.openclassrooms.tourguide;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.openclassrooms.tourguide.service.CheckpointService;
+
+/**
+ * Contrôleur des points de reprise de l'état des utilisateurs.
+ * Chaque nœud écrit les utilisateurs qu'il détient, dans son propre répertoire.
+ */
+@RestController
+public class CheckpointController {
+
+    @Autowired
+    CheckpointService checkpointService;
+
+    /**
+     * Écrit immédiatement un point de reprise, sans interrompre le suivi.
+     * @return le bilan de l'écriture, avec son débit
+     * @throws IOException si l'écriture échoue
+     */
+    @PostMapping("/checkpoint")
+    public CheckpointService.Report checkpoint() throws IOException {
+        if (checkpointService.getDirectory() == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "tourguide.checkpoint.directory is not set");
+        }
+        return checkpointService.checkpoint();
+    }
+
+    /**
+     * Retourne le bilan du dernier point de reprise écrit et de la dernière restauration.
+     * @return les deux bilans, {@code null} s'ils n'ont pas eu lieu
+     */
+    @GetMapping("/checkpoint")
+    public Map<String, CheckpointService.Report> getCheckpointReports() {
+        Map<String, CheckpointService.Report> reports = new LinkedHashMap<>();
+        reports.put("lastCheckpoint", checkpointService.getLastCheckpoint());
+        reports.put("lastRestore", checkpointService.getLastRestore());
+        return reports;
+    }
+}
@@ -0,0 +1,113 @@
+package com.openclassrooms.tourguide;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.openclassrooms.tourguide.diagnostics.DiagnosticsRecorder;
+
+/**
+ * Contrôleur des enregistrements Java Flight Recorder : démarrage, arrêt et téléchargement,
+ * pour profiler un incident sans attacher d'outil externe au processus.
+ * Les enregistrements contenant les noms des utilisateurs, ces endpoints sont refusés tant que
+ * {@code tourguide.diagnostics.directory} n'est pas configuré.
+ */
+@RestController
+public class DiagnosticsController {
+
+    @Autowired
+    DiagnosticsRecorder diagnosticsRecorder;
+
+    /**
+     * Démarre un enregistrement borné.
+     * @param duration la durée de l'enregistrement (ISO-8601), ramenée à la durée maximale configurée
+     * @param settings la configuration JFR : {@code default} ou {@code profile}
+     * @return l'état de l'enregistrement
+     * @throws IOException si le répertoire des enregistrements ne peut pas être créé
+     */
+    @PostMapping("/diagnostics/recording")
+    public DiagnosticsRecorder.Status startRecording(@RequestParam(defaultValue = "PT1M") Duration duration,
+                                                     @RequestParam(defaultValue = "default") String settings) throws IOException {
+        requireEnabled();
+        if (duration.isNegative() || duration.isZero()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "duration must be positive");
+        }
+        if (!DiagnosticsRecorder.SETTINGS.contains(settings)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "settings must be one of " + DiagnosticsRecorder.SETTINGS);
+        }
+        try {
+            return diagnosticsRecorder.start(duration, settings);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    /**
+     * Arrête l'enregistrement en cours ; il devient téléchargeable.
+     * @return l'état de l'enregistrement arrêté
+     */
+    @PostMapping("/diagnostics/recording/stop")
+    public DiagnosticsRecorder.Status stopRecording() {
+        requireEnabled();
+        try {
+            return diagnosticsRecorder.stop();
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    /**
+     * Retourne l'état du dernier enregistrement.
+     * @return son état
+     */
+    @GetMapping("/diagnostics/recording")
+    public DiagnosticsRecorder.Status getRecording() {
+        requireEnabled();
+        DiagnosticsRecorder.Status status = diagnosticsRecorder.status();
+        if (status == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No recording");
+        }
+        return status;
+    }
+
+    /**
+     * Télécharge le dernier enregistrement, à ouvrir avec JDK Mission Control ou {@code jfr print}.
+     * Un enregistrement en cours est téléchargé tel qu'il est, sans être interrompu.
+     * @return le fichier JFR
+     * @throws IOException si la copie de l'enregistrement en cours échoue
+     */
+    @GetMapping("/diagnostics/recording/file")
+    public ResponseEntity<Resource> downloadRecording() throws IOException {
+        requireEnabled();
+        Path file = diagnosticsRecorder.getFile();
+        if (file == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No recording");
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(file.getFileName().toString()).build().toString())
+                .body(new FileSystemResource(file));
+    }
+
+    private void requireEnabled() {
+        if (diagnosticsRecorder.getDirectory() == null) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "tourguide.diagnostics.directory is not set");
+        }
+    }
+}
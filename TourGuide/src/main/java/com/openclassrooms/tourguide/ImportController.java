@@ -0,0 +1,58 @@
+package com.openclassrooms.tourguide;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.openclassrooms.tourguide.service.UserImportService;
+
+/**
+ * Contrôleur de l'import en masse des utilisateurs.
+ * Seuls les fichiers du répertoire {@code tourguide.import.directory} peuvent être importés ;
+ * l'import est désactivé tant que ce répertoire n'est pas configuré.
+ * En mode cluster, les utilisateurs sont ajoutés au registre du nœud interrogé.
+ */
+@RestController
+public class ImportController {
+
+    @Autowired
+    UserImportService userImportService;
+
+    @Value("${tourguide.import.directory:}")
+    String importDirectory;
+
+    /**
+     * Importe les utilisateurs d'un fichier CSV ou NDJSON du répertoire d'import.
+     * @param file le nom du fichier dans le répertoire d'import
+     * @param format le format, déduit de l'extension s'il est absent
+     * @return le bilan de l'import, avec son débit en lignes par seconde ; un en-tête CSV invalide
+     *         est refusé par une erreur 400
+     * @throws IOException si le fichier ne peut être lu
+     */
+    @PostMapping("/importUsers")
+    public UserImportService.Report importUsers(@RequestParam String file,
+                                                @RequestParam(required = false) UserImportService.Format format)
+            throws IOException {
+        if (importDirectory.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "tourguide.import.directory is not set");
+        }
+        Path directory = Path.of(importDirectory).toAbsolutePath().normalize();
+        Path path = directory.resolve(file).normalize();
+        if (!path.startsWith(directory) || !Files.isRegularFile(path)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No such file in the import directory: " + file);
+        }
+        try {
+            return userImportService.importUsers(path, format != null ? format : UserImportService.Format.of(path));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.openclassrooms.tourguide;
+
+import java.util.List;
+
+import com.openclassrooms.tourguide.service.ItineraryPlanner;
+
+/**
+ * Itinéraire de visite proposé à un utilisateur, tel que renvoyé par {@code /getItinerary}
+ */
+public class ItineraryDTO {
+    public String userName;
+
+    /** Durée du séjour, en jours. */
+    public int tripDuration;
+
+    /** Distance totale parcourue depuis la position de l'utilisateur, en miles. */
+    public double totalMiles;
+
+    /** Journées ayant au moins une visite, dans l'ordre. */
+    public List<DayDTO> days;
+
+    /**
+     * @param userName     le nom de l'utilisateur
+     * @param tripDuration la durée du séjour
+     * @param totalMiles   la distance totale
+     * @param days         les journées
+     */
+    public ItineraryDTO(String userName, int tripDuration, double totalMiles, List<DayDTO> days) {
+        this.userName = userName;
+        this.tripDuration = tripDuration;
+        this.totalMiles = totalMiles;
+        this.days = days;
+    }
+
+    /**
+     * @param userName  le nom de l'utilisateur
+     * @param itinerary l'itinéraire planifié
+     * @return sa projection
+     */
+    public static ItineraryDTO from(String userName, ItineraryPlanner.Itinerary itinerary) {
+        return new ItineraryDTO(userName, itinerary.tripDuration(), itinerary.totalMiles(),
+                itinerary.days().stream().map(DayDTO::from).toList());
+    }
+
+    /**
+     * Journée de visites.
+     */
+    public static class DayDTO {
+        /** Numéro du jour, à partir de 1. */
+        public int day;
+
+        /** Distance parcourue ce jour-là, en miles. */
+        public double miles;
+
+        public List<StopDTO> stops;
+
+        /**
+         * @param day   le numéro du jour
+         * @param miles la distance parcourue
+         * @param stops les attractions visitées, dans l'ordre
+         */
+        public DayDTO(int day, double miles, List<StopDTO> stops) {
+            this.day = day;
+            this.miles = miles;
+            this.stops = stops;
+        }
+
+        static DayDTO from(ItineraryPlanner.Day day) {
+            return new DayDTO(day.day(), day.miles(), day.stops().stream().map(StopDTO::from).toList());
+        }
+    }
+
+    /**
+     * Étape de l'itinéraire.
+     */
+    public static class StopDTO {
+        public String attractionName;
+        public double latitude;
+        public double longitude;
+
+        /** Distance depuis l'étape précédente, ou depuis l'utilisateur pour la première, en miles. */
+        public double milesFromPrevious;
+
+        /**
+         * @param attractionName    le nom de l'attraction
+         * @param latitude          sa latitude
+         * @param longitude         sa longitude
+         * @param milesFromPrevious la distance depuis l'étape précédente
+         */
+        public StopDTO(String attractionName, double latitude, double longitude, double milesFromPrevious) {
+            this.attractionName = attractionName;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.milesFromPrevious = milesFromPrevious;
+        }
+
+        static StopDTO from(ItineraryPlanner.Stop stop) {
+            return new StopDTO(stop.attraction().attractionName, stop.attraction().latitude,
+                    stop.attraction().longitude, stop.milesFromPrevious());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.openclassrooms.tourguide;
+
+import java.util.List;
+
+import com.openclassrooms.tourguide.user.LocationHistory;
+
+/**
+ * Page de l'historique des positions d'un utilisateur, telle que renvoyée par {@code /getLocationHistory}
+ */
+public class LocationHistoryDTO {
+    public List<UserLocationDTO> locations;
+
+    /** Nombre total de positions sur la période demandée. */
+    public int matching;
+
+    /**
+     * Date de la première position de la page suivante, en millisecondes depuis l'époque Unix,
+     * à passer en {@code from} pour la lire ; absente sur la dernière page.
+     */
+    public Long nextFrom;
+
+    /** Nombre de positions datées de {@code nextFrom} déjà lues, à passer en {@code skip}. */
+    public int nextSkip;
+
+    /**
+     * @param locations les positions de la page
+     * @param matching  le nombre total de positions de la période
+     * @param nextFrom  le début de la page suivante, ou {@code null}
+     * @param nextSkip  le rang de reprise parmi les positions datées de {@code nextFrom}
+     */
+    public LocationHistoryDTO(List<UserLocationDTO> locations, int matching, Long nextFrom, int nextSkip) {
+        this.locations = locations;
+        this.matching = matching;
+        this.nextFrom = nextFrom;
+        this.nextSkip = nextSkip;
+    }
+
+    /**
+     * @param page une page de l'historique
+     * @return sa projection
+     */
+    public static LocationHistoryDTO from(LocationHistory.Page page) {
+        return new LocationHistoryDTO(page.locations().stream().map(UserLocationDTO::from).toList(),
+                page.matching(), page.nextFrom(), page.nextSkip());
+    }
+}
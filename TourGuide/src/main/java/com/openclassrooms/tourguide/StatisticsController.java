@@ -0,0 +1,67 @@
+package com.openclassrooms.tourguide;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.openclassrooms.tourguide.helper.BoundingBox;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.VisitAggregates;
+
+/**
+ * Contrôleur des vues agrégées de la fréquentation.
+ * Les réponses sont calculées à partir des agrégats tenus à jour par le suivi, sans parcourir
+ * les utilisateurs. Les bornes de période sont des instants ISO-8601 ou des millisecondes
+ * depuis l'époque Unix, arrondies à la tranche de temps des agrégats ; sans bornes,
+ * toute la période conservée est couverte.
+ * En mode cluster, chaque nœud répond pour les utilisateurs de sa partition.
+ */
+@RestController
+public class StatisticsController {
+
+    @Autowired
+    TourGuideService tourGuideService;
+
+    /**
+     * Retourne la carte de chaleur des positions enregistrées sur une période.
+     * @param from début de la période, inclus
+     * @param to fin de la période, exclue
+     * @param minLatitude latitude minimale
+     * @param maxLatitude latitude maximale
+     * @param minLongitude longitude minimale
+     * @param maxLongitude longitude maximale
+     * @return le nombre de positions par cellule de la grille
+     */
+    @GetMapping("/getHeatmap")
+    public List<VisitAggregates.Cell> getHeatmap(@RequestParam(required = false) String from,
+                                                 @RequestParam(required = false) String to,
+                                                 @RequestParam(defaultValue = "-90") double minLatitude,
+                                                 @RequestParam(defaultValue = "90") double maxLatitude,
+                                                 @RequestParam(defaultValue = "-180") double minLongitude,
+                                                 @RequestParam(defaultValue = "180") double maxLongitude) {
+        return tourGuideService.getVisitAggregates().heatmap(
+                TourGuideController.parseInstant(from, Instant.EPOCH),
+                TourGuideController.parseInstant(to, Instant.ofEpochMilli(Long.MAX_VALUE)),
+                new BoundingBox(minLatitude, maxLatitude, minLongitude, maxLongitude));
+    }
+
+    /**
+     * Retourne la fréquentation des attractions sur une période.
+     * @param from début de la période, inclus
+     * @param to fin de la période, exclue
+     * @return par nom d'attraction, le nombre de positions à portée et de récompenses attribuées
+     */
+    @GetMapping("/getAttractionFootfall")
+    public Map<String, VisitAggregates.AttractionFootfall> getAttractionFootfall(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to) {
+        return tourGuideService.getVisitAggregates().footfall(
+                TourGuideController.parseInstant(from, Instant.EPOCH),
+                TourGuideController.parseInstant(to, Instant.ofEpochMilli(Long.MAX_VALUE)));
+    }
+}
@@ -1,16 +1,31 @@
 package com.openclassrooms.tourguide;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import com.openclassrooms.tourguide.NearbyAttractionDTO;
-import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 
+import com.openclassrooms.tourguide.helper.BoundingBox;
+import com.openclassrooms.tourguide.helper.RecordStreamEncoder;
+import com.openclassrooms.tourguide.service.ItineraryPlanner;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
@@ -28,9 +43,18 @@ import tripPricer.Provider;
 @RestController
 public class TourGuideController {
 
+    /** Nombre maximal de positions par page de {@code /getLocationHistory}. */
+    static final int MAX_HISTORY_LIMIT = 1000;
+
+    /** Nombre maximal d'attractions retournées par {@code /getNearbyAttractions} et sa version groupée. */
+    static final int MAX_NEARBY_LIMIT = 50;
+
     @Autowired
     TourGuideService tourGuideService;
 
+    @Autowired
+    ItineraryPlanner itineraryPlanner;
+
     @RequestMapping("/")
     public String index() {
         return "Greetings from TourGuide!";
@@ -47,7 +71,8 @@ public class TourGuideController {
     }
 
     /**
-     * Retourne les 5 attractions touristiques les plus proches de l'utilisateur.
+     * Retourne les attractions touristiques les plus proches de l'utilisateur
+     * (5 par défaut), limitées au rayon défini dans ses préférences.
      *
      * Réponse JSON inclut :
      * - Nom de l'attraction
@@ -55,34 +80,194 @@ public class TourGuideController {
      * - Coordonnées utilisateur (lat, lon)
      * - Distance en miles
      * - Points de récompense
+     *
+     * @param limit nombre d'attractions retournées, au plus {@value #MAX_NEARBY_LIMIT}
      */
     @RequestMapping("/getNearbyAttractions")
-    public List<NearbyAttractionDTO> getNearbyAttractions(@RequestParam String userName) {
+    public List<NearbyAttractionDTO> getNearbyAttractions(@RequestParam String userName,
+                                                          @RequestParam(defaultValue = "5") int limit) {
+        checkNearbyLimit(limit);
         User user = getUser(userName);
         VisitedLocation visitedLocation = tourGuideService.getUserLocation(user);
 
-        return tourGuideService.getNearByAttractions(visitedLocation).stream()
-                .limit(5)
-                .map(attraction -> new NearbyAttractionDTO(
-                        attraction.attractionName,
-                        attraction.latitude,
-                        attraction.longitude,
-                        visitedLocation.location.latitude,
-                        visitedLocation.location.longitude,
-                        tourGuideService.getDistance(visitedLocation.location, attraction),
-                        tourGuideService.getRewardPoints(attraction, user)
-                ))
-                .collect(Collectors.toList());
+        return tourGuideService.getNearbyAttractionDTOs(user, visitedLocation, limit);
+    }
+
+    /**
+     * Propose un ordre de visite des attractions, réparti sur la durée du séjour de l'utilisateur
+     * ({@code tripDuration}), au départ de sa position actuelle.
+     * Sans attractions choisies, les plus proches sont retenues, autant que le séjour le permet.
+     * @param userName le nom de l'utilisateur
+     * @param attractions les noms des attractions à visiter, facultatifs
+     * @return une {@link ItineraryDTO}
+     */
+    @GetMapping("/getItinerary")
+    public ItineraryDTO getItinerary(@RequestParam String userName,
+                                     @RequestParam(required = false) List<String> attractions) {
+        User user = getUser(userName);
+        VisitedLocation visitedLocation = tourGuideService.getUserLocation(user);
+        int tripDuration = user.getUserPreferences().getTripDuration();
+        try {
+            ItineraryPlanner.Itinerary itinerary = attractions == null || attractions.isEmpty()
+                    ? itineraryPlanner.plan(visitedLocation.location, tripDuration)
+                    : itineraryPlanner.plan(visitedLocation.location, tripDuration, attractions);
+            return ItineraryDTO.from(userName, itinerary);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Retourne les positions d'un utilisateur sur une période, par ordre chronologique et page par page.
+     * Les bornes sont des instants ISO-8601 ({@code 2024-05-01T12:00:00Z}) ou des millisecondes
+     * depuis l'époque Unix ; sans bornes, tout l'historique est parcouru. La page suivante se lit
+     * en reprenant {@code nextFrom} et {@code nextSkip} de la réponse comme {@code from} et {@code skip}.
+     * @param userName le nom de l'utilisateur
+     * @param from début de la période, inclus
+     * @param skip nombre de positions datées de {@code from} déjà lues
+     * @param to fin de la période, exclue
+     * @param limit nombre de positions par page, au plus {@value #MAX_HISTORY_LIMIT}
+     * @return une {@link LocationHistoryDTO}
+     */
+    @GetMapping("/getLocationHistory")
+    public LocationHistoryDTO getLocationHistory(@RequestParam String userName,
+                                                 @RequestParam(required = false) String from,
+                                                 @RequestParam(defaultValue = "0") int skip,
+                                                 @RequestParam(required = false) String to,
+                                                 @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > MAX_HISTORY_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + MAX_HISTORY_LIMIT + ", got " + limit);
+        }
+        if (skip < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "skip must not be negative, got " + skip);
+        }
+        return LocationHistoryDTO.from(tourGuideService.getLocationHistory(getUser(userName),
+                parseInstant(from, Instant.EPOCH), skip, parseInstant(to, Instant.ofEpochMilli(Long.MAX_VALUE)), limit));
+    }
+
+    /**
+     * Refuse un nombre d'attractions hors de [1, {@value #MAX_NEARBY_LIMIT}] : il entre dans la clé du cache.
+     */
+    static void checkNearbyLimit(int limit) {
+        if (limit < 1 || limit > MAX_NEARBY_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + MAX_NEARBY_LIMIT + ", got " + limit);
+        }
+    }
+
+    /**
+     * Lit un instant ISO-8601 ou un nombre de millisecondes depuis l'époque Unix.
+     * @return l'instant, ou {@code defaultValue} si le paramètre est absent
+     */
+    static Instant parseInstant(String value, Instant defaultValue) {
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return value.chars().allMatch(Character::isDigit)
+                    ? Instant.ofEpochMilli(Long.parseLong(value)) : Instant.parse(value);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid instant: " + value);
+        }
+    }
+
+    /**
+     * Diffuse la dernière position connue de tous les utilisateurs suivis par ce nœud.
+     * Les positions sont écrites au fil du parcours du registre, en NDJSON par défaut ou en
+     * séquence CBOR si le client l'accepte ; un client lent ralentit le parcours au lieu de
+     * faire grossir un tampon. Les quatre bornes de la zone sont facultatives.
+     * @param accept l'en-tête {@code Accept} de la requête
+     * @param minLatitude latitude minimale
+     * @param maxLatitude latitude maximale
+     * @param minLongitude longitude minimale
+     * @param maxLongitude longitude maximale
+     * @return le flux des positions, une {@link UserLocationDTO} par utilisateur
+     */
+    @GetMapping("/getAllCurrentLocations")
+    public ResponseEntity<StreamingResponseBody> getAllCurrentLocations(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestParam(defaultValue = "-90") double minLatitude,
+            @RequestParam(defaultValue = "90") double maxLatitude,
+            @RequestParam(defaultValue = "-180") double minLongitude,
+            @RequestParam(defaultValue = "180") double maxLongitude) {
+        BoundingBox boundingBox = new BoundingBox(minLatitude, maxLatitude, minLongitude, maxLongitude);
+        MediaType mediaType = RecordStreamEncoder.negotiate(accept);
+
+        StreamingResponseBody body = out -> {
+            try (RecordStreamEncoder encoder = RecordStreamEncoder.open(out, mediaType)) {
+                tourGuideService.forEachCurrentLocation(boundingBox, visitedLocation -> {
+                    try {
+                        encoder.write(UserLocationDTO.from(visitedLocation));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(mediaType).body(body);
+    }
+
+    /**
+     * Abonne le client aux nouvelles positions et récompenses (Server-Sent Events), au lieu
+     * d'interroger régulièrement {@code /getLocation} et {@code /getRewards}.
+     * Les événements sont nommés {@code location} ({@link UserLocationDTO}) et {@code reward}
+     * ({@link UserRewardDTO}). Sans {@code userName}, tous les utilisateurs suivis par ce nœud sont diffusés.
+     * @param userName le nom de l'utilisateur suivi, facultatif
+     * @return le flux d'événements
+     */
+    @GetMapping(value = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam(required = false) String userName) {
+        return tourGuideService.getUserUpdatePublisher().subscribe(userName);
     }
 
     /**
      * Endpoint pour obtenir la liste des récompenses d'un utilisateur
+     * Les récompenses sont lues telles que calculées par le suivi, sans recalcul. La réponse porte
+     * la version des récompenses de l'utilisateur en ETag : si le client renvoie cette valeur dans
+     * {@code If-None-Match} et que rien n'a changé, la réponse est un 304 sans corps.
      * @param userName le nom de l'utilisateur
+     * @param request la requête, pour la vérification conditionnelle
      * @return une liste d'objets {@link com.openclassrooms.tourguide.user.UserReward} représentant les récompenses
      */
     @RequestMapping("/getRewards")
-    public List<UserReward> getRewards(@RequestParam String userName) {
-        return tourGuideService.getUserRewards(getUser(userName));
+    public ResponseEntity<List<UserReward>> getRewards(@RequestParam String userName, WebRequest request) {
+        User user = getUser(userName);
+        String eTag = rewardsETag(user, "json");
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(tourGuideService.getUserRewards(user));
+    }
+
+    /**
+     * Variante binaire de {@code /getRewards}, choisie lorsque le client accepte {@code application/cbor}
+     * Elle renvoie la projection allégée des récompenses, encodée en CBOR, avec le même contrôle par ETag
+     * @param userName le nom de l'utilisateur
+     * @param request la requête, pour la vérification conditionnelle
+     * @return une liste de {@link UserRewardDTO}
+     */
+    @RequestMapping(value = "/getRewards", produces = MediaType.APPLICATION_CBOR_VALUE)
+    public ResponseEntity<List<UserRewardDTO>> getRewardsCompact(@RequestParam String userName, WebRequest request) {
+        User user = getUser(userName);
+        String eTag = rewardsETag(user, "cbor");
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        List<UserRewardDTO> rewards = tourGuideService.getUserRewards(user).stream()
+                .map(UserRewardDTO::from)
+                .toList();
+        return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(rewards);
+    }
+
+    /**
+     * Construit l'ETag des récompenses d'un utilisateur. La version est lue avant les récompenses :
+     * au pire l'ETag est plus ancien que le contenu, et le client le relira une fois de plus.
+     */
+    private String rewardsETag(User user, String representation) {
+        return "\"" + user.getUserId() + "-" + user.getRewardsVersion() + "-" + representation + "\"";
     }
 
     @RequestMapping("/getTripDeals")
@@ -1,11 +1,42 @@
 package com.openclassrooms.tourguide;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 
 import gpsUtil.GpsUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.diagnostics.DiagnosticsRecorder;
+import com.openclassrooms.tourguide.service.AttractionCatalog;
+import com.openclassrooms.tourguide.service.GpsUtilScheduler;
+import com.openclassrooms.tourguide.service.NearbyAttractionsCache;
+import com.openclassrooms.tourguide.service.RewardCentralClient;
+import com.openclassrooms.tourguide.service.CheckpointService;
+import com.openclassrooms.tourguide.service.InternalUserGenerator;
+import com.openclassrooms.tourguide.service.ItineraryPlanner;
 import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideExecutors;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.UserImportService;
+import com.openclassrooms.tourguide.service.UserUpdatePublisher;
+import com.openclassrooms.tourguide.service.TrajectoryCompressor;
+import com.openclassrooms.tourguide.service.VisitAggregates;
+import com.openclassrooms.tourguide.service.WarmUpService;
+import com.openclassrooms.tourguide.tracker.Tracker;
 
 /**
  * Classe de configuration Spring Boot pour l'application TourGuide
@@ -14,6 +45,7 @@ import com.openclassrooms.tourguide.service.RewardsService;
  * ainsi que les services internes comme {@link RewardsService}
  */
 @Configuration
+@ImportRuntimeHints(TourGuideRuntimeHints.class)
 public class TourGuideModule {
 
     /**
@@ -27,15 +59,414 @@ public class TourGuideModule {
 		return new GpsUtil();
 	}
 
+    /**
+     * Fournit l'ordonnanceur placé devant {@link GpsUtil}
+     * Les requêtes interactives y sont servies avant celles du tracker, dans la limite
+     * du débit autorisé par le limiteur de GpsUtil
+     * @param permitsPerSecond nombre d'appels GpsUtil délivrés par seconde
+     * @param workers nombre de threads exécutant les appels GpsUtil
+     * @return une instance de {@link GpsUtilScheduler}
+     */
+	@Bean(destroyMethod = "shutdown")
+	public GpsUtilScheduler getGpsUtilScheduler(
+			@Value("${tourguide.gps.permits-per-second:1000}") double permitsPerSecond,
+			@Value("${tourguide.gps.workers:100}") int workers) {
+		return new GpsUtilScheduler(getGpsUtil(), permitsPerSecond, workers);
+	}
+
+    /**
+     * Expose la profondeur des files et le nombre de demandes servies de l'ordonnanceur GpsUtil
+     * @param scheduler l'ordonnanceur GpsUtil
+     * @return le {@link MeterBinder} enregistrant les métriques
+     */
+	@Bean
+	public MeterBinder gpsUtilSchedulerMetrics(GpsUtilScheduler scheduler) {
+		return registry -> {
+			Gauge.builder("tourguide.gps.queue.depth", scheduler, GpsUtilScheduler::getInteractiveQueueDepth)
+					.tag("lane", "interactive").register(registry);
+			Gauge.builder("tourguide.gps.queue.depth", scheduler, GpsUtilScheduler::getBackgroundQueueDepth)
+					.tag("lane", "background").register(registry);
+			FunctionCounter.builder("tourguide.gps.completed", scheduler, GpsUtilScheduler::getInteractiveCompletedCount)
+					.tag("lane", "interactive").register(registry);
+			FunctionCounter.builder("tourguide.gps.completed", scheduler, GpsUtilScheduler::getBackgroundCompletedCount)
+					.tag("lane", "background").register(registry);
+		};
+	}
+
+    /**
+     * Fournit le catalogue des attractions partagé par les services
+     * Le catalogue est rechargé en arrière-plan à l'intervalle configuré par
+     * {@code tourguide.catalog.refresh-interval}
+     * @param refreshInterval intervalle entre deux rafraîchissements du catalogue
+     * @param gpsUtilScheduler l'ordonnanceur GpsUtil, dont le budget décompte les chargements du catalogue
+     * @return une instance de {@link AttractionCatalog}
+     */
+	@Bean(destroyMethod = "stopRefreshing")
+	public AttractionCatalog getAttractionCatalog(
+			@Value("${tourguide.catalog.refresh-interval:PT10M}") Duration refreshInterval,
+			GpsUtilScheduler gpsUtilScheduler) {
+		AttractionCatalog attractionCatalog = new AttractionCatalog(getGpsUtil(), gpsUtilScheduler);
+		attractionCatalog.startRefreshing(refreshInterval);
+		return attractionCatalog;
+	}
+
+    /**
+     * Fournit les pools de threads dédiés : entrée-sortie (RewardCentral), calcul (positions et
+     * proximité) et boucle du tracker
+     * @param ioThreads nombre de threads pour les appels aux services externes
+     * @param ioQueueCapacity taille de la file du pool d'entrée-sortie, au-delà de laquelle les appels sont rejetés
+     * @param cpuThreads nombre de threads de calcul ; 0 pour un par cœur
+     * @param cpuQueueCapacity taille de la file du pool de calcul, au-delà de laquelle l'appelant exécute la tâche
+     * @return une instance de {@link TourGuideExecutors}
+     */
+	@Bean(destroyMethod = "shutdown")
+	public TourGuideExecutors getTourGuideExecutors(
+			@Value("${tourguide.executors.io.threads:64}") int ioThreads,
+			@Value("${tourguide.executors.io.queue-capacity:10000}") int ioQueueCapacity,
+			@Value("${tourguide.executors.cpu.threads:0}") int cpuThreads,
+			@Value("${tourguide.executors.cpu.queue-capacity:10000}") int cpuQueueCapacity) {
+		int threads = cpuThreads > 0 ? cpuThreads : Runtime.getRuntime().availableProcessors();
+		return new TourGuideExecutors(ioThreads, ioQueueCapacity, threads, cpuQueueCapacity);
+	}
+
+    /**
+     * Expose la taille, l'activité et la file de chaque pool sous forme de métriques Micrometer
+     * ({@code executor.*}, étiquetées par {@code name}), ainsi que la profondeur de chaque file
+     * ({@code tourguide.executors.queue.depth}) et le nombre de tâches rejetées
+     * @param executors les pools de threads
+     * @return le {@link MeterBinder} enregistrant les métriques
+     */
+	@Bean
+	public MeterBinder tourGuideExecutorsMetrics(TourGuideExecutors executors) {
+		return registry -> {
+			new ExecutorServiceMetrics(executors.io(), "tourguide.io", List.of()).bindTo(registry);
+			new ExecutorServiceMetrics(executors.cpu(), "tourguide.cpu", List.of()).bindTo(registry);
+			new ExecutorServiceMetrics(executors.tracker(), "tourguide.tracker", List.of()).bindTo(registry);
+			Gauge.builder("tourguide.executors.queue.depth", executors, TourGuideExecutors::getIoQueueDepth)
+					.tag("pool", "io").register(registry);
+			Gauge.builder("tourguide.executors.queue.depth", executors, TourGuideExecutors::getCpuQueueDepth)
+					.tag("pool", "cpu").register(registry);
+			Gauge.builder("tourguide.executors.queue.depth", executors, TourGuideExecutors::getTrackerQueueDepth)
+					.tag("pool", "tracker").register(registry);
+			FunctionCounter.builder("tourguide.executors.rejected", executors, TourGuideExecutors::getRejectedCount)
+					.register(registry);
+		};
+	}
+
+    /**
+     * Fournit les réglages du tracker : cycles à cadence fixe, échéance par cycle et traitement des retards
+     * @param period intervalle entre le début de deux cycles
+     * @param deadline durée maximale d'un cycle ; par défaut la période
+     * @param overrunPolicy traitement des utilisateurs en retard : SKIP, CARRY_OVER ou SHED
+     * @return les {@link Tracker.Settings}
+     */
+	@Bean
+	public Tracker.Settings getTrackerSettings(
+			@Value("${tourguide.tracker.period:PT5M}") Duration period,
+			@Value("${tourguide.tracker.deadline:}") Duration deadline,
+			@Value("${tourguide.tracker.overrun-policy:CARRY_OVER}") Tracker.OverrunPolicy overrunPolicy) {
+		return new Tracker.Settings(period, deadline != null ? deadline : period, overrunPolicy);
+	}
+
+    /**
+     * Expose les cycles, dépassements d'échéance et l'ancienneté des positions du tracker
+     * @param tourGuideService le service portant le tracker
+     * @return le {@link MeterBinder} enregistrant les métriques
+     */
+	@Bean
+	public MeterBinder trackerMetrics(TourGuideService tourGuideService) {
+		Tracker tracker = tourGuideService.tracker;
+		return registry -> {
+			FunctionCounter.builder("tourguide.tracker.cycles", tracker, Tracker::getCycleCount).register(registry);
+			FunctionCounter.builder("tourguide.tracker.overruns", tracker, Tracker::getOverrunCount).register(registry);
+			FunctionCounter.builder("tourguide.tracker.late.users", tracker, Tracker::getSkippedUserCount)
+					.tag("outcome", "skipped").register(registry);
+			FunctionCounter.builder("tourguide.tracker.late.users", tracker, Tracker::getCarriedOverUserCount)
+					.tag("outcome", "carried-over").register(registry);
+			FunctionCounter.builder("tourguide.tracker.late.users", tracker, Tracker::getShedUserCount)
+					.tag("outcome", "shed").register(registry);
+			Gauge.builder("tourguide.tracker.cycle.duration", tracker, Tracker::getLastCycleMillis)
+					.baseUnit("milliseconds").register(registry);
+			Gauge.builder("tourguide.tracker.staleness.max", tracker, t -> t.getStaleness().maxMillis())
+					.baseUnit("milliseconds").register(registry);
+			Gauge.builder("tourguide.tracker.stale.users", tracker, t -> t.getStaleness().staleUsers())
+					.register(registry);
+		};
+	}
+
     /**
      * Fournit une instance du service de gestion des récompenses
-     * Ce service utilise {@link GpsUtil} et {@link RewardCentral} pour déterminer
+     * Ce service utilise le catalogue d'attractions et {@link RewardCentral} pour déterminer
      * quelles récompenses attribuer en fonction des visites et de la proximité des attractions
+     * @param attractionCatalog le catalogue des attractions
+     * @param pointsTtl durée de vie des points en cache avant un nouvel appel à RewardCentral
      * @return une instance de {@link RewardsService}
      */
 	@Bean
-	public RewardsService getRewardsService() {
-		return new RewardsService(getGpsUtil(), getRewardCentral());
+	public RewardsService getRewardsService(AttractionCatalog attractionCatalog,
+											RewardCentralClient rewardCentralClient,
+											@Value("${tourguide.reward-central.points-ttl:PT10M}") Duration pointsTtl) {
+		return new RewardsService(attractionCatalog, rewardCentralClient, pointsTtl);
+	}
+
+    /**
+     * Fournit le client {@link RewardCentral} borné par deadline et avec hedging
+     * @param deadline délai maximal d'un appel avant repli sur la dernière valeur connue
+     * @param hedgePercentile percentile de latence au-delà duquel une requête dupliquée est envoyée
+     * @param executors les pools de threads ; les appels passent par le pool d'entrée-sortie
+     * @return une instance de {@link RewardCentralClient}
+     */
+	@Bean
+	public RewardCentralClient getRewardCentralClient(TourGuideExecutors executors,
+			@Value("${tourguide.reward-central.deadline:PT0.8S}") Duration deadline,
+			@Value("${tourguide.reward-central.hedge-percentile:0.9}") double hedgePercentile) {
+		return new RewardCentralClient(getRewardCentral(), executors.io(), deadline, hedgePercentile);
+	}
+
+    /**
+     * Expose les compteurs du client RewardCentral (appels, hedges, victoires des hedges,
+     * replis après deadline, erreurs) sous forme de métriques Micrometer
+     * @param client le client RewardCentral
+     * @return le {@link MeterBinder} enregistrant les compteurs
+     */
+	@Bean
+	public MeterBinder rewardCentralClientMetrics(RewardCentralClient client) {
+		return registry -> {
+			FunctionCounter.builder("tourguide.reward.central.calls", client, RewardCentralClient::getCallCount)
+					.register(registry);
+			FunctionCounter.builder("tourguide.reward.central.hedges", client, RewardCentralClient::getHedgeCount)
+					.register(registry);
+			FunctionCounter.builder("tourguide.reward.central.hedge.wins", client, RewardCentralClient::getHedgeWinCount)
+					.register(registry);
+			FunctionCounter.builder("tourguide.reward.central.deadline.fallbacks", client,
+					RewardCentralClient::getDeadlineFallbackCount).register(registry);
+			FunctionCounter.builder("tourguide.reward.central.failures", client, RewardCentralClient::getFailureCount)
+					.register(registry);
+		};
+	}
+
+    /**
+     * Fournit le cache des candidats de {@code /getNearbyAttractions} par cellule de position
+     * @param maxEntries nombre maximal de cellules conservées
+     * @param cellSizeDegrees taille d'une cellule, en degrés ; plus grande, elle sert plus de requêtes
+     *                        mais retient plus de candidats par cellule
+     * @return une instance de {@link NearbyAttractionsCache}
+     */
+	@Bean
+	public NearbyAttractionsCache getNearbyAttractionsCache(
+			@Value("${tourguide.nearby.cache.max-entries:100000}") int maxEntries,
+			@Value("${tourguide.nearby.cache.cell-size-degrees:0.01}") double cellSizeDegrees) {
+		return new NearbyAttractionsCache(maxEntries, cellSizeDegrees);
+	}
+
+    /**
+     * Expose les succès et échecs du cache de {@code /getNearbyAttractions} sous forme de métriques Micrometer
+     * @param cache le cache des attractions proches
+     * @return le {@link MeterBinder} enregistrant les compteurs
+     */
+	@Bean
+	public MeterBinder nearbyAttractionsCacheMetrics(NearbyAttractionsCache cache) {
+		return registry -> {
+			FunctionCounter.builder("tourguide.nearby.cache.requests", cache, NearbyAttractionsCache::getHitCount)
+					.tag("result", "hit").register(registry);
+			FunctionCounter.builder("tourguide.nearby.cache.requests", cache, NearbyAttractionsCache::getMissCount)
+					.tag("result", "miss").register(registry);
+		};
+	}
+
+    /**
+     * Fournit la phase de préchauffage lancée au démarrage
+     * Elle précharge le catalogue et les points de récompense, et sert d'indicateur de santé
+     * {@code warmUp}, intégré au groupe de disponibilité (readiness)
+     * @param rewardsService le service des récompenses à préchauffer
+     * @param tourGuideService le service dont les attractions proches sont préchauffées
+     * @param parallelism nombre maximal d'appels RewardCentral simultanés
+     * @return une instance de {@link WarmUpService}
+     */
+	@Bean(name = "warmUpHealthIndicator", initMethod = "start")
+	public WarmUpService getWarmUpService(RewardsService rewardsService, TourGuideService tourGuideService,
+										  @Value("${tourguide.warmup.parallelism:16}") int parallelism) {
+		return new WarmUpService(rewardsService, tourGuideService, parallelism);
+	}
+
+    /**
+     * Fournit le diffuseur des mises à jour de position et de récompenses (Server-Sent Events)
+     * @param bufferSize nombre maximal d'événements en attente par abonné ; au-delà, les plus anciens sont abandonnés
+     * @param timeout durée d'un abonnement
+     * @return une instance de {@link UserUpdatePublisher}
+     */
+	@Bean(destroyMethod = "shutdown")
+	public UserUpdatePublisher getUserUpdatePublisher(
+			@Value("${tourguide.push.buffer-size:256}") int bufferSize,
+			@Value("${tourguide.push.timeout:PT30M}") Duration timeout) {
+		return new UserUpdatePublisher(bufferSize, timeout);
+	}
+
+    /**
+     * Expose le nombre d'abonnés et les événements publiés ou abandonnés sous forme de métriques Micrometer
+     * @param publisher le diffuseur des mises à jour
+     * @return le {@link MeterBinder} enregistrant les métriques
+     */
+	@Bean
+	public MeterBinder userUpdatePublisherMetrics(UserUpdatePublisher publisher) {
+		return registry -> {
+			Gauge.builder("tourguide.push.subscribers", publisher, UserUpdatePublisher::getSubscriberCount)
+					.register(registry);
+			FunctionCounter.builder("tourguide.push.events", publisher, UserUpdatePublisher::getPublishedCount)
+					.tag("outcome", "published").register(registry);
+			FunctionCounter.builder("tourguide.push.events", publisher, UserUpdatePublisher::getDroppedCount)
+					.tag("outcome", "dropped").register(registry);
+		};
+	}
+
+    /**
+     * Fournit le compresseur de l'historique des positions
+     * @param rewardsService le service indiquant les positions proches d'une attraction, toujours conservées
+     * @param toleranceMiles écart maximal toléré entre une position retirée et la trajectoire conservée ; 0 désactive la compression
+     * @param maxWindow nombre maximal de positions remplacées d'affilée
+     * @param windowIdle durée sans nouvelle position au-delà de laquelle la fenêtre d'un utilisateur est oubliée
+     * @return une instance de {@link TrajectoryCompressor}
+     */
+	@Bean
+	public TrajectoryCompressor getTrajectoryCompressor(RewardsService rewardsService,
+			@Value("${tourguide.history.compression.tolerance-miles:0}") double toleranceMiles,
+			@Value("${tourguide.history.compression.max-window:64}") int maxWindow,
+			@Value("${tourguide.history.compression.window-idle:PT1H}") Duration windowIdle) {
+		return new TrajectoryCompressor(rewardsService, toleranceMiles, maxWindow, windowIdle);
+	}
+
+    /**
+     * Expose le nombre de positions ajoutées à l'historique ou fusionnées par la compression
+     * @param compressor le compresseur de l'historique
+     * @return le {@link MeterBinder} enregistrant les métriques
+     */
+	@Bean
+	public MeterBinder trajectoryCompressorMetrics(TrajectoryCompressor compressor) {
+		return registry -> {
+			FunctionCounter.builder("tourguide.history.locations", compressor, TrajectoryCompressor::getAppendedCount)
+					.tag("outcome", "appended").register(registry);
+			FunctionCounter.builder("tourguide.history.locations", compressor, TrajectoryCompressor::getReplacedCount)
+					.tag("outcome", "replaced").register(registry);
+		};
+	}
+
+    /**
+     * Fournit les agrégats de fréquentation (carte de chaleur et fréquentation des attractions)
+     * @param cellSizeDegrees taille d'une cellule de la carte de chaleur, en degrés
+     * @param bucketDuration durée d'une tranche de temps
+     * @param retention durée de conservation des tranches
+     * @return une instance de {@link VisitAggregates}
+     */
+	@Bean
+	public VisitAggregates getVisitAggregates(
+			@Value("${tourguide.aggregates.cell-size-degrees:0.1}") double cellSizeDegrees,
+			@Value("${tourguide.aggregates.bucket:PT1H}") Duration bucketDuration,
+			@Value("${tourguide.aggregates.retention:P7D}") Duration retention) {
+		return new VisitAggregates(cellSizeDegrees, bucketDuration, retention);
+	}
+
+    /**
+     * Fournit le service des points de reprise de l'état des utilisateurs
+     * @param tourGuideService le service dont les utilisateurs sont sauvegardés
+     * @param rewardsService le service fournissant le catalogue des attractions
+     * @param executors les pools de threads ; les parties sont écrites et lues sur le pool d'entrée-sortie
+     * @param directory répertoire des points de reprise ; vide pour désactiver les points périodiques
+     * @param interval intervalle entre deux points de reprise
+     * @param usersPerPart nombre d'utilisateurs par fichier, écrits et lus en parallèle
+     * @param retained nombre de points de reprise conservés
+     * @param restoreOnStartup restaurer le point de reprise le plus récent au démarrage
+     * @return une instance de {@link CheckpointService}
+     */
+	@Bean(initMethod = "start", destroyMethod = "shutdown")
+	public CheckpointService getCheckpointService(TourGuideService tourGuideService, RewardsService rewardsService,
+			TourGuideExecutors executors,
+			@Value("${tourguide.checkpoint.directory:}") String directory,
+			@Value("${tourguide.checkpoint.interval:PT15M}") Duration interval,
+			@Value("${tourguide.checkpoint.users-per-part:10000}") int usersPerPart,
+			@Value("${tourguide.checkpoint.retained:3}") int retained,
+			@Value("${tourguide.checkpoint.restore-on-startup:true}") boolean restoreOnStartup) {
+		return new CheckpointService(tourGuideService, rewardsService, executors.io(),
+				directory.isBlank() ? null : Path.of(directory), interval, usersPerPart, retained, restoreOnStartup);
+	}
+
+    /**
+     * Fournit le service d'import en masse des utilisateurs
+     * @param tourGuideService le service dont le registre reçoit les utilisateurs
+     * @param executors les pools de threads ; les blocs sont analysés sur le pool de calcul
+     * @param chunkSize nombre de lignes analysées par tâche
+     * @return une instance de {@link UserImportService}
+     */
+	@Bean
+	public UserImportService getUserImportService(TourGuideService tourGuideService, TourGuideExecutors executors,
+			@Value("${tourguide.import.chunk-size:5000}") int chunkSize) {
+		return new UserImportService(tourGuideService, executors.cpu(), chunkSize);
+	}
+
+    /**
+     * Fournit le générateur des utilisateurs internes du mode test
+     * @param seed graine de la population ; une même graine reproduit les mêmes utilisateurs
+     * @param background générer la population sans bloquer le démarrage
+     * @return une instance de {@link InternalUserGenerator}
+     */
+	@Bean
+	public InternalUserGenerator getInternalUserGenerator(
+			@Value("${tourguide.internal-users.seed:" + InternalUserGenerator.DEFAULT_SEED + "}") long seed,
+			@Value("${tourguide.internal-users.background:false}") boolean background) {
+		return new InternalUserGenerator(seed, background);
+	}
+
+    /**
+     * Expose la durée de génération des utilisateurs internes, absente tant qu'elle n'est pas terminée
+     * @param tourGuideService le service générant les utilisateurs
+     * @return le {@link MeterBinder} enregistrant la métrique
+     */
+	@Bean
+	public MeterBinder internalUserGenerationMetrics(TourGuideService tourGuideService) {
+		return registry -> Gauge.builder("tourguide.internal-users.generation.duration", tourGuideService, service -> {
+					CompletableFuture<InternalUserGenerator.Report> generation = service.getInternalUsersGeneration();
+					return generation.isDone() && !generation.isCompletedExceptionally()
+							? generation.join().millis() : Double.NaN;
+				})
+				.baseUnit("milliseconds").register(registry);
+	}
+
+    /**
+     * Fournit le planificateur d'itinéraires de {@code /getItinerary}
+     * @param attractionCatalog le catalogue dont l'instantané fournit la matrice des distances
+     * @param attractionsPerDay nombre maximal d'attractions visitées par jour
+     * @return une instance de {@link ItineraryPlanner}
+     */
+	@Bean
+	public ItineraryPlanner getItineraryPlanner(AttractionCatalog attractionCatalog,
+			@Value("${tourguide.itinerary.attractions-per-day:3}") int attractionsPerDay) {
+		return new ItineraryPlanner(attractionCatalog, attractionsPerDay);
+	}
+
+    /**
+     * Fournit le gestionnaire des enregistrements Java Flight Recorder déclenchés par {@code /diagnostics/recording}
+     * @param directory répertoire des enregistrements ; vide pour désactiver les enregistrements
+     * @param maxDuration durée maximale d'un enregistrement
+     * @param maxSizeBytes taille maximale d'un enregistrement, en octets
+     * @return une instance de {@link DiagnosticsRecorder}
+     */
+	@Bean(destroyMethod = "shutdown")
+	public DiagnosticsRecorder getDiagnosticsRecorder(
+			@Value("${tourguide.diagnostics.directory:}") String directory,
+			@Value("${tourguide.diagnostics.max-duration:PT10M}") Duration maxDuration,
+			@Value("${tourguide.diagnostics.max-size-bytes:104857600}") long maxSizeBytes) {
+		return new DiagnosticsRecorder(directory.isBlank() ? null : Path.of(directory), maxDuration, maxSizeBytes);
+	}
+
+    /**
+     * Fournit le convertisseur CBOR utilisé lorsque le client envoie {@code Accept: application/cbor}
+     * Il reprend la configuration Jackson de l'application ; l'encodage se fait au fil de l'eau
+     * dans le flux de la réponse, sans passer par une chaîne intermédiaire
+     * @param builder le constructeur d'{@code ObjectMapper} configuré par Spring Boot
+     * @return une instance de {@link MappingJackson2CborHttpMessageConverter}
+     */
+	@Bean
+	public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
 	}
 
     /**
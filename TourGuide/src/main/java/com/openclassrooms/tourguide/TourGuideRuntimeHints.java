@@ -0,0 +1,48 @@
+package com.openclassrooms.tourguide;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import com.openclassrooms.tourguide.diagnostics.DiagnosticsRecorder;
+import com.openclassrooms.tourguide.service.CheckpointService;
+import com.openclassrooms.tourguide.service.InternalUserGenerator;
+import com.openclassrooms.tourguide.service.UserImportService;
+import com.openclassrooms.tourguide.service.VisitAggregates;
+import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * Indications fournies à la compilation native (GraalVM) pour les accès par réflexion
+ * que l'analyse AOT de Spring ne peut pas déduire.
+ * Les classes de {@code gpsUtil}, {@code rewardCentral} et {@code tripPricer} exposent leurs
+ * données en champs publics, que Jackson lit par réflexion ; les DTO écrits hors du retour
+ * d'un contrôleur (flux NDJSON/CBOR, événements SSE) ne sont pas vus par l'analyse.
+ * Ces bibliothèques n'embarquent aucune ressource à inclure dans l'image.
+ */
+public class TourGuideRuntimeHints implements RuntimeHintsRegistrar {
+
+    /** Classes des bibliothèques de {@code libs/} sérialisées en JSON. */
+    static final String[] LIBRARY_TYPES = {
+            "gpsUtil.location.Location",
+            "gpsUtil.location.VisitedLocation",
+            "gpsUtil.location.Attraction",
+            "tripPricer.Provider"
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (String type : LIBRARY_TYPES) {
+            hints.reflection().registerType(TypeReference.of(type),
+                    MemberCategory.PUBLIC_FIELDS, MemberCategory.DECLARED_FIELDS,
+                    MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                UserReward.class, UserLocationDTO.class, UserRewardDTO.class, NearbyAttractionDTO.class,
+                LocationHistoryDTO.class, ItineraryDTO.class, VisitAggregates.Cell.class, VisitAggregates.AttractionFootfall.class,
+                CheckpointService.Report.class, UserImportService.Report.class, InternalUserGenerator.Report.class,
+                Tracker.Staleness.class, DiagnosticsRecorder.Status.class);
+    }
+}
@@ -0,0 +1,38 @@
+package com.openclassrooms.tourguide;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Représente la dernière position connue d'un utilisateur, telle que
+ * renvoyée par le flux {@code /getAllCurrentLocations}
+ */
+public class UserLocationDTO {
+    public String userId;
+    public double latitude;
+    public double longitude;
+
+    /** Date de la position, en millisecondes depuis l'époque Unix. */
+    public long timeVisited;
+
+    /**
+     * @param userId      l'identifiant de l'utilisateur
+     * @param latitude    la latitude de la position
+     * @param longitude   la longitude de la position
+     * @param timeVisited la date de la position, en millisecondes depuis l'époque Unix
+     */
+    public UserLocationDTO(String userId, double latitude, double longitude, long timeVisited) {
+        this.userId = userId;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.timeVisited = timeVisited;
+    }
+
+    /**
+     * @param visitedLocation une position visitée
+     * @return sa projection
+     */
+    public static UserLocationDTO from(VisitedLocation visitedLocation) {
+        return new UserLocationDTO(visitedLocation.userId.toString(), visitedLocation.location.latitude,
+                visitedLocation.location.longitude, visitedLocation.timeVisited.getTime());
+    }
+}
@@ -0,0 +1,39 @@
+package com.openclassrooms.tourguide;
+
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * Projection allégée d'une {@link UserReward}, destinée aux clients du format binaire
+ * Au lieu de l'attraction et de la visite complètes, elle ne conserve que
+ * le nom de l'attraction, la date de la visite et les points attribués
+ */
+public class UserRewardDTO {
+    public String attractionName;
+
+    /** Date de la visite, en millisecondes depuis l'époque Unix. */
+    public long timeVisited;
+
+    /** Nombre de points de récompense attribués pour cette visite. */
+    public int rewardPoints;
+
+    /**
+     * @param attractionName le nom de l'attraction
+     * @param timeVisited    la date de la visite, en millisecondes depuis l'époque Unix
+     * @param rewardPoints   le nombre de points de récompense attribués
+     */
+    public UserRewardDTO(String attractionName, long timeVisited, int rewardPoints) {
+        this.attractionName = attractionName;
+        this.timeVisited = timeVisited;
+        this.rewardPoints = rewardPoints;
+    }
+
+    /**
+     * Construit la projection d'une récompense
+     * @param userReward la récompense complète
+     * @return sa projection allégée
+     */
+    public static UserRewardDTO from(UserReward userReward) {
+        return new UserRewardDTO(userReward.attraction.attractionName,
+                userReward.visitedLocation.timeVisited.getTime(), userReward.getRewardPoints());
+    }
+}
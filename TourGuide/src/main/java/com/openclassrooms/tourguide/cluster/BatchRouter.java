@@ -0,0 +1,145 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Répartition des requêtes groupées entre les nœuds propriétaires des utilisateurs.
+ * Une requête groupée reçue directement est découpée par propriétaire : chaque tranche distante
+ * est rejouée sur son nœud avec l'en-tête {@value ClusterRoutingInterceptor#FORWARDED_HEADER},
+ * qui la fait traiter localement, et la tranche du nœud courant est traitée sur place.
+ * Un nom inconnu du nœud reste dans la tranche locale.
+ */
+public class BatchRouter {
+    private final Logger logger = LoggerFactory.getLogger(BatchRouter.class);
+
+    private static final TypeReference<Map<String, JsonNode>> RESPONSE_TYPE = new TypeReference<>() {};
+
+    private final ClusterMembership membership;
+    private final Function<String, UUID> userIds;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    /**
+     * @param membership la composition du cluster
+     * @param userIds retrouve l'identifiant d'un utilisateur à partir de son nom, {@code null} s'il est inconnu
+     */
+    public BatchRouter(ClusterMembership membership, Function<String, UUID> userIds) {
+        this.membership = membership;
+        this.userIds = userIds;
+    }
+
+    /**
+     * @return l'identifiant du nœud courant
+     */
+    public String getSelfId() {
+        return membership.getSelfId();
+    }
+
+    /**
+     * Découpe les noms par nœud propriétaire ; une requête déjà transmise est entièrement locale.
+     * @param request la requête groupée reçue
+     * @param userNames les noms des utilisateurs, dans l'ordre de la requête
+     * @return les noms de chaque nœud, dans l'ordre de la requête
+     */
+    public Map<String, List<String>> partition(HttpServletRequest request, List<String> userNames) {
+        if (!membership.isClustered() || request.getHeader(ClusterRoutingInterceptor.FORWARDED_HEADER) != null) {
+            return Map.of(membership.getSelfId(), userNames);
+        }
+        Map<String, List<String>> slices = new LinkedHashMap<>();
+        for (String userName : userNames) {
+            UUID userId = userIds.apply(userName);
+            String owner = userId == null ? membership.getSelfId() : membership.ownerOf(userId);
+            slices.computeIfAbsent(owner, nodeId -> new ArrayList<>()).add(userName);
+        }
+        return slices;
+    }
+
+    /**
+     * Rejoue la requête groupée sur un autre nœud pour une tranche des noms.
+     * @param nodeId le nœud propriétaire de la tranche
+     * @param request la requête groupée reçue, dont le chemin et les paramètres sont repris
+     * @param userNames les noms de la tranche
+     * @return un futur complété par la réponse du nœud, indexée par nom d'utilisateur
+     */
+    public CompletableFuture<Map<String, JsonNode>> forward(String nodeId, HttpServletRequest request,
+                                                            List<String> userNames) {
+        String baseUrl = membership.getBaseUrl(nodeId);
+        if (baseUrl == null) {
+            return CompletableFuture.failedFuture(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "No address for node " + nodeId));
+        }
+        String query = request.getQueryString();
+        URI uri = URI.create(baseUrl + request.getRequestURI() + (query != null ? "?" + query : ""));
+        HttpRequest forwarded;
+        try {
+            forwarded = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofSeconds(30))
+                    .header(ClusterRoutingInterceptor.FORWARDED_HEADER, membership.getSelfId())
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(userNames)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return httpClient.sendAsync(forwarded, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    if (response.statusCode() != HttpStatus.OK.value()) {
+                        throw new ResponseStatusException(HttpStatus.BAD_GATEWAY,
+                                "Node " + nodeId + " answered " + response.statusCode());
+                    }
+                    try {
+                        return objectMapper.readValue(response.body(), RESPONSE_TYPE);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    /**
+     * Attend la réponse d'un nœud ; un échec est renvoyé au client comme une erreur 502.
+     * @param nodeId le nœud interrogé
+     * @param response la réponse attendue
+     * @return la réponse du nœud, indexée par nom d'utilisateur
+     */
+    public Map<String, JsonNode> await(String nodeId, CompletableFuture<Map<String, JsonNode>> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ResponseStatusException status) {
+                throw status;
+            }
+            logger.error("Forwarding batch to node " + nodeId + " failed", e.getCause());
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Node " + nodeId + " failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.openclassrooms.tourguide.service.CheckpointService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Configuration du partitionnement des utilisateurs entre plusieurs nœuds TourGuide.
+ * Sans membres configurés, le nœud fonctionne en mode autonome et possède tous les utilisateurs.
+ * Pour lancer plusieurs nœuds localement :
+ * {@code --server.port=8081 --tourguide.cluster.node-id=a --tourguide.cluster.members=a=http://localhost:8081,b=http://localhost:8082 --tourguide.cluster.secret=...}
+ * Le secret, identique sur tous les nœuds, protège le changement de composition et la remise des utilisateurs.
+ */
+@Configuration
+public class ClusterConfig implements WebMvcConfigurer {
+
+    @Value("${tourguide.cluster.node-id:" + ClusterMembership.STANDALONE_NODE_ID + "}")
+    private String nodeId;
+
+    @Value("${tourguide.cluster.members:}")
+    private String members;
+
+    @Value("${tourguide.cluster.secret:}")
+    private String secret;
+
+    @Autowired
+    private ObjectProvider<TourGuideService> tourGuideService;
+
+    /**
+     * Fournit la composition du cluster à partir des propriétés {@code tourguide.cluster.*}
+     * @return une instance de {@link ClusterMembership}
+     */
+    @Bean
+    public ClusterMembership getClusterMembership() {
+        if (members.isBlank()) {
+            return new ClusterMembership(nodeId, Map.of(nodeId, ""));
+        }
+        return new ClusterMembership(nodeId, ClusterMembership.parseMembers(members));
+    }
+
+    /**
+     * Fournit la remise des utilisateurs au nouveau propriétaire lors d'un changement de composition
+     * @return une instance de {@link UserHandoff}
+     */
+    @Bean
+    public UserHandoff getUserHandoff(ClusterMembership clusterMembership, TourGuideService tourGuideService,
+                                      CheckpointService checkpointService) {
+        return new UserHandoff(clusterMembership, tourGuideService, checkpointService, secret);
+    }
+
+    /**
+     * Fournit la répartition des requêtes groupées entre les nœuds propriétaires
+     * @return une instance de {@link BatchRouter}
+     */
+    @Bean
+    public BatchRouter getBatchRouter(ClusterMembership clusterMembership) {
+        return new BatchRouter(clusterMembership, this::userIdOf);
+    }
+
+    /**
+     * Enregistre l'intercepteur qui transmet les requêtes au nœud propriétaire de l'utilisateur.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ClusterRoutingInterceptor(getClusterMembership(), this::userIdOf));
+    }
+
+    private UUID userIdOf(String userName) {
+        User user = tourGuideService.getObject().getUser(userName);
+        return user == null ? null : user.getUserId();
+    }
+}
@@ -0,0 +1,98 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+/**
+ * Points d'accès d'administration du cluster TourGuide :
+ * consultation de la composition et de la partition locale, changement de composition
+ * et réception des utilisateurs remis par un autre nœud.
+ * Les modifications exigent le secret partagé du cluster dans l'en-tête {@value UserHandoff#SECRET_HEADER} ;
+ * sans secret configuré, elles sont refusées.
+ */
+@RestController
+public class ClusterController {
+
+    @Autowired
+    ClusterMembership clusterMembership;
+
+    @Autowired
+    TourGuideService tourGuideService;
+
+    @Autowired
+    UserHandoff userHandoff;
+
+    @Value("${tourguide.cluster.secret:}")
+    private String secret;
+
+    /**
+     * Retourne l'état du cluster vu par ce nœud.
+     * @return l'identifiant du nœud, les membres et la taille de la partition locale
+     */
+    @GetMapping("/cluster")
+    public Map<String, Object> getCluster() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("nodeId", clusterMembership.getSelfId());
+        state.put("members", clusterMembership.getMembers());
+        state.put("trackedUsers", tourGuideService.getTrackedUsers().size());
+        return state;
+    }
+
+    /**
+     * Remplace la composition du cluster ; les utilisateurs qui changent de propriétaire lui sont remis
+     * et le suivi est rééquilibré dès le cycle suivant du tracker.
+     * @param presentedSecret le secret partagé du cluster
+     * @param members les membres du cluster, identifiant vers URL de base
+     * @return le nouvel état du cluster
+     */
+    @PutMapping("/cluster/members")
+    public Map<String, Object> updateMembers(
+            @RequestHeader(name = UserHandoff.SECRET_HEADER, required = false) String presentedSecret,
+            @RequestBody Map<String, String> members) {
+        checkSecret(presentedSecret);
+        clusterMembership.updateMembers(members);
+        return getCluster();
+    }
+
+    /**
+     * Reçoit les utilisateurs remis par leur ancien propriétaire.
+     * @param presentedSecret le secret partagé du cluster
+     * @param body les utilisateurs, au format des points de reprise
+     * @return le nombre d'utilisateurs reçus
+     * @throws IOException si le corps ne peut être lu
+     */
+    @PostMapping(UserHandoff.PATH)
+    public Map<String, Integer> receiveUsers(
+            @RequestHeader(name = UserHandoff.SECRET_HEADER, required = false) String presentedSecret,
+            InputStream body) throws IOException {
+        checkSecret(presentedSecret);
+        return Map.of("users", userHandoff.receive(body));
+    }
+
+    private void checkSecret(String presentedSecret) {
+        if (secret.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "tourguide.cluster.secret is not set");
+        }
+        if (presentedSecret == null || !MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8),
+                presentedSecret.getBytes(StandardCharsets.UTF_8))) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Invalid cluster secret");
+        }
+    }
+}
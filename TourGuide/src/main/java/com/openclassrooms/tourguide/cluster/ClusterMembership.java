@@ -0,0 +1,189 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Composition du cluster TourGuide vue par le nœud courant.
+ * Chaque nœud est identifié par un nom et l'URL de base de son API. Les utilisateurs
+ * sont répartis entre les nœuds par hachage cohérent de leur identifiant, qui ne change
+ * jamais, contrairement à leur nom. Lorsque la composition change, l'anneau est reconstruit
+ * et les écouteurs reçoivent l'ancienne et la nouvelle composition, pour rééquilibrer le suivi
+ * et remettre les utilisateurs qui changent de propriétaire.
+ * Avec un seul membre (mode autonome), tous les utilisateurs sont locaux.
+ */
+public class ClusterMembership {
+    private final Logger logger = LoggerFactory.getLogger(ClusterMembership.class);
+
+    /** Identifiant du nœud en mode autonome. */
+    public static final String STANDALONE_NODE_ID = "local";
+
+    private final String selfId;
+    private volatile State state;
+    private final List<Consumer<Change>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param selfId l'identifiant du nœud courant
+     * @param members les membres du cluster, identifiant vers URL de base
+     */
+    public ClusterMembership(String selfId, Map<String, String> members) {
+        this.selfId = selfId;
+        this.state = new State(selfId, members);
+    }
+
+    /**
+     * @return une composition à un seul nœud, propriétaire de tous les utilisateurs
+     */
+    public static ClusterMembership standalone() {
+        return new ClusterMembership(STANDALONE_NODE_ID, Map.of(STANDALONE_NODE_ID, ""));
+    }
+
+    /**
+     * Lit une liste de membres de la forme {@code node1=http://host1:8080,node2=http://host2:8080}.
+     * @param spec la liste des membres
+     * @return les membres, identifiant vers URL de base
+     */
+    public static Map<String, String> parseMembers(String spec) {
+        Map<String, String> members = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int separator = trimmed.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid cluster member: " + trimmed);
+            }
+            members.put(trimmed.substring(0, separator).trim(), trimmed.substring(separator + 1).trim());
+        }
+        return members;
+    }
+
+    /**
+     * @return l'identifiant du nœud courant
+     */
+    public String getSelfId() {
+        return selfId;
+    }
+
+    /**
+     * @return les membres du cluster, identifiant vers URL de base
+     */
+    public Map<String, String> getMembers() {
+        return state.members;
+    }
+
+    /**
+     * @return {@code true} si le cluster ne se réduit pas au seul nœud courant
+     */
+    public boolean isClustered() {
+        return state.isClustered();
+    }
+
+    /**
+     * @param userId l'identifiant de l'utilisateur
+     * @return l'identifiant du nœud propriétaire de l'utilisateur
+     */
+    public String ownerOf(UUID userId) {
+        return state.ownerOf(userId);
+    }
+
+    /**
+     * @param userId l'identifiant de l'utilisateur
+     * @return {@code true} si l'utilisateur appartient au nœud courant
+     */
+    public boolean isLocal(UUID userId) {
+        return selfId.equals(state.ownerOf(userId));
+    }
+
+    /**
+     * @param nodeId l'identifiant d'un nœud
+     * @return l'URL de base de son API
+     */
+    public String getBaseUrl(String nodeId) {
+        return state.members.get(nodeId);
+    }
+
+    /**
+     * Remplace la composition du cluster et prévient les écouteurs.
+     * @param newMembers les nouveaux membres, identifiant vers URL de base
+     */
+    public void updateMembers(Map<String, String> newMembers) {
+        Change change;
+        synchronized (this) {
+            State previous = state;
+            state = new State(selfId, newMembers);
+            change = new Change(previous, state);
+        }
+        logger.info("Cluster membership changed: {}", change.current.members.keySet());
+        listeners.forEach(listener -> listener.accept(change));
+    }
+
+    /**
+     * Enregistre un écouteur appelé après chaque changement de composition.
+     * @param listener l'écouteur
+     */
+    public void addMembershipListener(Consumer<Change> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Changement de composition : l'ancienne et la nouvelle répartition des utilisateurs.
+     */
+    public static final class Change {
+        private final State previous;
+        private final State current;
+
+        private Change(State previous, State current) {
+            this.previous = previous;
+            this.current = current;
+        }
+
+        /**
+         * @param userId l'identifiant de l'utilisateur
+         * @return le propriétaire de l'utilisateur avant le changement
+         */
+        public String previousOwnerOf(UUID userId) {
+            return previous.ownerOf(userId);
+        }
+
+        /**
+         * @param userId l'identifiant de l'utilisateur
+         * @return le propriétaire de l'utilisateur après le changement
+         */
+        public String ownerOf(UUID userId) {
+            return current.ownerOf(userId);
+        }
+    }
+
+    /**
+     * Composition immuable : les membres et l'anneau construit sur eux, lus ensemble.
+     */
+    private static final class State {
+        private final String selfId;
+        private final Map<String, String> members;
+        private final ConsistentHashRing ring;
+
+        private State(String selfId, Map<String, String> members) {
+            this.selfId = selfId;
+            this.members = Collections.unmodifiableMap(new LinkedHashMap<>(members));
+            this.ring = new ConsistentHashRing(this.members.keySet());
+        }
+
+        private boolean isClustered() {
+            return !(members.size() == 1 && members.containsKey(selfId));
+        }
+
+        private String ownerOf(UUID userId) {
+            return isClustered() ? ring.ownerOf(userId.toString()) : selfId;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Intercepteur qui transmet les requêtes portant sur un utilisateur au nœud qui le possède.
+ * Toute requête ayant un paramètre {@code userName} dont le propriétaire n'est pas le nœud
+ * courant est rejouée telle quelle sur le nœud propriétaire, et sa réponse est recopiée.
+ * Le propriétaire est déterminé par l'identifiant de l'utilisateur, retrouvé à partir de son nom ;
+ * un nom inconnu du nœud est traité localement.
+ * Les abonnements aux flux d'événements sont redirigés vers le propriétaire plutôt que relayés.
+ * L'en-tête {@value #FORWARDED_HEADER} empêche une requête d'être transmise deux fois
+ * pendant un changement de composition du cluster.
+ */
+public class ClusterRoutingInterceptor implements HandlerInterceptor {
+    private final Logger logger = LoggerFactory.getLogger(ClusterRoutingInterceptor.class);
+
+    /** En-tête ajouté aux requêtes transmises entre nœuds. */
+    public static final String FORWARDED_HEADER = "X-TourGuide-Forwarded";
+    /** En-tête indiquant le nœud ayant traité la requête. */
+    public static final String NODE_HEADER = "X-TourGuide-Node";
+
+    private static final List<String> COPIED_RESPONSE_HEADERS =
+            List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG, NODE_HEADER);
+
+    private final ClusterMembership membership;
+    private final Function<String, UUID> userIds;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    /**
+     * @param membership la composition du cluster
+     * @param userIds retrouve l'identifiant d'un utilisateur à partir de son nom, {@code null} s'il est inconnu
+     */
+    public ClusterRoutingInterceptor(ClusterMembership membership, Function<String, UUID> userIds) {
+        this.membership = membership;
+        this.userIds = userIds;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        String userName = request.getParameter("userName");
+        UUID userId = userName == null || request.getHeader(FORWARDED_HEADER) != null ? null : userIds.apply(userName);
+        if (userId == null || membership.isLocal(userId)) {
+            response.setHeader(NODE_HEADER, membership.getSelfId());
+            return true;
+        }
+        forward(membership.ownerOf(userId), request, response);
+        return false;
+    }
+
+    /**
+     * Rejoue la requête sur le nœud propriétaire et recopie sa réponse.
+     */
+    private void forward(String owner, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String baseUrl = owner != null ? membership.getBaseUrl(owner) : null;
+        if (baseUrl == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        String query = request.getQueryString();
+        URI uri = URI.create(baseUrl + request.getRequestURI() + (query != null ? "?" + query : ""));
+
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE)) {
+            // Un flux d'événements ne peut pas être relayé en une fois : le client est redirigé
+            response.setStatus(HttpServletResponse.SC_TEMPORARY_REDIRECT);
+            response.setHeader(HttpHeaders.LOCATION, uri.toString());
+            return;
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(30))
+                .header(FORWARDED_HEADER, membership.getSelfId())
+                .method(request.getMethod(), HttpRequest.BodyPublishers.ofByteArray(request.getInputStream().readAllBytes()));
+        copyRequestHeader(request, builder, HttpHeaders.ACCEPT);
+        copyRequestHeader(request, builder, HttpHeaders.CONTENT_TYPE);
+        copyRequestHeader(request, builder, HttpHeaders.IF_NONE_MATCH);
+
+        try {
+            HttpResponse<byte[]> forwarded = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+            response.setStatus(forwarded.statusCode());
+            for (String header : COPIED_RESPONSE_HEADERS) {
+                forwarded.headers().firstValue(header).ifPresent(value -> response.setHeader(header, value));
+            }
+            response.getOutputStream().write(forwarded.body());
+        } catch (IOException e) {
+            logger.error("Forwarding to node " + owner + " failed", e);
+            response.sendError(HttpServletResponse.SC_BAD_GATEWAY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private void copyRequestHeader(HttpServletRequest request, HttpRequest.Builder builder, String header) {
+        String value = request.getHeader(header);
+        if (value != null) {
+            builder.header(header, value);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Anneau de hachage cohérent immuable.
+ * Chaque nœud est placé sur l'anneau sous la forme de plusieurs nœuds virtuels,
+ * ce qui répartit les clés uniformément. Lorsqu'un nœud rejoint ou quitte le cluster,
+ * seules les clés des segments concernés changent de propriétaire (environ 1/N des clés).
+ */
+public class ConsistentHashRing {
+
+    /** Nombre de nœuds virtuels par nœud physique. */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final List<String> nodes;
+    private final long[] positions;
+    private final String[] owners;
+
+    /**
+     * Construit l'anneau avec le nombre de nœuds virtuels par défaut.
+     * @param nodes les identifiants des nœuds
+     */
+    public ConsistentHashRing(Collection<String> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Construit l'anneau.
+     * @param nodes les identifiants des nœuds
+     * @param virtualNodes le nombre de nœuds virtuels par nœud
+     */
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(nodes)));
+        int size = this.nodes.size() * virtualNodes;
+        long[][] entries = new long[size][2];
+        int i = 0;
+        for (int n = 0; n < this.nodes.size(); n++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                entries[i][0] = hash(this.nodes.get(n) + "#" + v);
+                entries[i][1] = n;
+                i++;
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+        this.positions = new long[size];
+        this.owners = new String[size];
+        for (int e = 0; e < size; e++) {
+            positions[e] = entries[e][0];
+            owners[e] = this.nodes.get((int) entries[e][1]);
+        }
+    }
+
+    /**
+     * @return les nœuds de l'anneau, triés
+     */
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Retourne le nœud propriétaire d'une clé : le premier nœud virtuel situé
+     * après la position de la clé sur l'anneau.
+     * @param key la clé à placer
+     * @return l'identifiant du nœud propriétaire, ou {@code null} si l'anneau est vide
+     */
+    public String ownerOf(String key) {
+        if (positions.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(positions, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == positions.length ? 0 : index];
+    }
+
+    /**
+     * Hachage 64 bits : FNV-1a suivi du mélange final de MurmurHash3.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
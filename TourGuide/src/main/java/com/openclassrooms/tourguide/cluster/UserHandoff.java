@@ -0,0 +1,127 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import com.openclassrooms.tourguide.service.CheckpointService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Remise des utilisateurs entre nœuds lors d'un changement de composition du cluster.
+ * Chaque nœud envoie au nouveau propriétaire l'état des utilisateurs qu'il possédait et qu'il perd
+ * (historique, récompenses, préférences), dans le format des points de reprise, par lots de
+ * {@value #USERS_PER_BATCH}. Le nouveau propriétaire remplace sa copie par celle reçue : son tracker
+ * reprend le suivi là où l'ancien propriétaire l'a laissé.
+ * Les envois sont asynchrones et authentifiés par le secret partagé du cluster.
+ */
+public class UserHandoff {
+    private final Logger logger = LoggerFactory.getLogger(UserHandoff.class);
+
+    /** En-tête portant le secret partagé du cluster. */
+    public static final String SECRET_HEADER = "X-TourGuide-Cluster-Secret";
+    /** Chemin de réception des utilisateurs remis. */
+    public static final String PATH = "/cluster/users";
+    /** Nombre d'utilisateurs par requête. */
+    static final int USERS_PER_BATCH = 10_000;
+
+    private final ClusterMembership membership;
+    private final TourGuideService tourGuideService;
+    private final CheckpointService checkpointService;
+    private final String secret;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    /**
+     * Crée la remise et l'abonne aux changements de composition.
+     * @param membership la composition du cluster
+     * @param tourGuideService le service détenant les utilisateurs
+     * @param checkpointService le service fournissant le format d'échange des utilisateurs
+     * @param secret le secret partagé du cluster
+     */
+    public UserHandoff(ClusterMembership membership, TourGuideService tourGuideService,
+                       CheckpointService checkpointService, String secret) {
+        this.membership = membership;
+        this.tourGuideService = tourGuideService;
+        this.checkpointService = checkpointService;
+        this.secret = secret;
+        membership.addMembershipListener(this::handOff);
+    }
+
+    /**
+     * Envoie à leur nouveau propriétaire les utilisateurs que ce nœud possédait avant le changement.
+     * @param change l'ancienne et la nouvelle composition
+     */
+    void handOff(ClusterMembership.Change change) {
+        String selfId = membership.getSelfId();
+        Map<String, List<User>> moved = new LinkedHashMap<>();
+        for (User user : tourGuideService.getAllUsers()) {
+            String owner = change.ownerOf(user.getUserId());
+            if (selfId.equals(change.previousOwnerOf(user.getUserId())) && !selfId.equals(owner)) {
+                moved.computeIfAbsent(owner, nodeId -> new ArrayList<>()).add(user);
+            }
+        }
+        moved.forEach((nodeId, users) -> {
+            logger.info("Handing off {} users to node {}", users.size(), nodeId);
+            for (int start = 0; start < users.size(); start += USERS_PER_BATCH) {
+                send(nodeId, users.subList(start, Math.min(users.size(), start + USERS_PER_BATCH)));
+            }
+        });
+    }
+
+    /**
+     * Remplace les utilisateurs locaux par ceux remis par un autre nœud.
+     * @param body le corps de la requête, au format des points de reprise
+     * @return le nombre d'utilisateurs reçus
+     * @throws IOException si le corps ne peut être lu
+     */
+    public int receive(InputStream body) throws IOException {
+        List<User> users = checkpointService.readUsers(body);
+        tourGuideService.restoreUsers(users);
+        return users.size();
+    }
+
+    private void send(String nodeId, List<User> users) {
+        String baseUrl = membership.getBaseUrl(nodeId);
+        if (baseUrl == null || baseUrl.isBlank()) {
+            logger.warn("No URL for node {}, {} users not handed off", nodeId, users.size());
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            checkpointService.writeUsers(bytes, users);
+        } catch (IOException e) {
+            logger.error("Encoding users for node " + nodeId + " failed", e);
+            return;
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + PATH))
+                .timeout(Duration.ofSeconds(30))
+                .header(SECRET_HEADER, secret)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(bytes.toByteArray()))
+                .build();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+            if (e != null) {
+                logger.error("Handing off " + users.size() + " users to node " + nodeId + " failed", e);
+            } else if (response.statusCode() != 200) {
+                logger.error("Node {} refused {} handed off users: HTTP {}", nodeId, users.size(), response.statusCode());
+            }
+        });
+    }
+}
@@ -0,0 +1,178 @@
+package com.openclassrooms.tourguide.diagnostics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Enregistrements Java Flight Recorder déclenchés à la demande, pour analyser un incident hors ligne
+ * sans attacher d'outil externe.
+ * Un seul enregistrement à la fois, borné en durée et en taille ; les événements TourGuide y sont
+ * toujours activés, en plus de la configuration JFR choisie ({@code default} ou {@code profile}).
+ * À l'arrêt, manuel ou à échéance, l'enregistrement est écrit dans le répertoire configuré, où il reste
+ * téléchargeable jusqu'au suivant. Sans répertoire, les enregistrements sont désactivés : ils contiennent
+ * les noms des utilisateurs et les piles des threads.
+ */
+public class DiagnosticsRecorder {
+
+    /** Configurations JFR acceptées. */
+    public static final List<String> SETTINGS = List.of("default", "profile");
+
+    private final Path directory;
+    private final Duration maxDuration;
+    private final long maxSizeBytes;
+    private Recording recording;
+    private Path file;
+
+    /**
+     * @param directory le répertoire des enregistrements, ou {@code null} pour les désactiver
+     * @param maxDuration la durée maximale d'un enregistrement
+     * @param maxSizeBytes la taille maximale d'un enregistrement ; les données les plus anciennes sont écartées au-delà
+     */
+    public DiagnosticsRecorder(Path directory, Duration maxDuration, long maxSizeBytes) {
+        this.directory = directory;
+        this.maxDuration = maxDuration;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * @return le répertoire des enregistrements, ou {@code null} s'ils sont désactivés
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Démarre un enregistrement, qui s'arrête seul à échéance.
+     * @param duration la durée demandée, ramenée à la durée maximale
+     * @param settings la configuration JFR, parmi {@link #SETTINGS}
+     * @return l'état de l'enregistrement
+     * @throws IllegalStateException si les enregistrements sont désactivés ou si un enregistrement est déjà en cours
+     * @throws IllegalArgumentException si la configuration est inconnue
+     * @throws IOException si le répertoire ne peut pas être créé
+     */
+    public synchronized Status start(Duration duration, String settings) throws IOException {
+        if (directory == null) {
+            throw new IllegalStateException("Recordings are disabled");
+        }
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("A recording is already running");
+        }
+        if (!SETTINGS.contains(settings)) {
+            throw new IllegalArgumentException("Unknown settings " + settings + ", expected one of " + SETTINGS);
+        }
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings);
+        } catch (ParseException e) {
+            throw new IllegalStateException("JFR configuration " + settings + " is invalid", e);
+        }
+        if (recording != null) {
+            recording.close();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(partialFile(recording));
+        }
+        Files.createDirectories(directory);
+
+        Recording next = new Recording(configuration);
+        next.setName("tourguide");
+        next.enable(TrackerCycleEvent.class);
+        next.enable(UserTrackingEvent.class);
+        next.enable(RewardEvaluationEvent.class);
+        next.enable(ExternalCallEvent.class);
+        next.setToDisk(true);
+        next.setMaxSize(maxSizeBytes);
+        next.setDuration(duration.compareTo(maxDuration) > 0 ? maxDuration : duration);
+        Path destination = directory.resolve("tourguide-" + next.getId() + ".jfr");
+        next.setDestination(destination);
+        next.start();
+        recording = next;
+        file = destination;
+        return status();
+    }
+
+    /**
+     * Arrête l'enregistrement en cours et l'écrit dans son fichier.
+     * @return l'état de l'enregistrement arrêté
+     * @throws IllegalStateException si aucun enregistrement n'est en cours
+     */
+    public synchronized Status stop() {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("No recording is running");
+        }
+        recording.stop();
+        return status();
+    }
+
+    /**
+     * @return l'état du dernier enregistrement, ou {@code null} s'il n'y en a pas eu
+     */
+    public synchronized Status status() {
+        if (recording == null) {
+            return null;
+        }
+        // Une fois arrêté, l'enregistrement est fermé par JFR : sa taille est celle du fichier écrit
+        long size = recording.getSize();
+        if (recording.getState() != RecordingState.RUNNING) {
+            try {
+                size = Files.exists(file) ? Files.size(file) : 0;
+            } catch (IOException e) {
+                size = 0;
+            }
+        }
+        return new Status(recording.getId(), recording.getState().name(), recording.getStartTime(),
+                recording.getDuration(), size, file.getFileName().toString());
+    }
+
+    /**
+     * Retourne le fichier du dernier enregistrement. S'il est encore en cours, les données
+     * enregistrées jusqu'ici sont copiées dans un fichier à part, sans l'interrompre.
+     * @return le fichier JFR, ou {@code null} s'il n'y a pas eu d'enregistrement
+     * @throws IOException si la copie échoue
+     */
+    public synchronized Path getFile() throws IOException {
+        if (recording == null) {
+            return null;
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            Path partial = partialFile(recording);
+            recording.dump(partial);
+            return partial;
+        }
+        return Files.exists(file) ? file : null;
+    }
+
+    private Path partialFile(Recording recording) {
+        return directory.resolve("tourguide-" + recording.getId() + "-partial.jfr");
+    }
+
+    /**
+     * Arrête et libère l'enregistrement en cours.
+     */
+    public synchronized void shutdown() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    /**
+     * État d'un enregistrement.
+     * @param id l'identifiant JFR de l'enregistrement
+     * @param state son état ({@code RUNNING}, puis {@code CLOSED} une fois écrit)
+     * @param startTime sa date de début, {@code null} s'il n'a pas démarré
+     * @param duration sa durée maximale
+     * @param sizeBytes la taille des données enregistrées, ou du fichier écrit
+     * @param file le nom du fichier téléchargeable
+     */
+    public record Status(long id, String state, Instant startTime, Duration duration, long sizeBytes, String file) {
+    }
+}
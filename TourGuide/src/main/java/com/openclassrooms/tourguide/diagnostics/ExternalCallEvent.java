@@ -0,0 +1,79 @@
+package com.openclassrooms.tourguide.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Événement JFR d'un appel à un service externe ({@code gpsUtil}, {@code rewardCentral}, {@code tripPricer}).
+ */
+@Name("com.openclassrooms.tourguide.ExternalCall")
+@Label("External Call")
+@Category({"TourGuide", "External Services"})
+@Description("Appel bloquant à un service externe")
+@StackTrace(false)
+public class ExternalCallEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(ExternalCallEvent.class);
+
+    /** Service GpsUtil. */
+    public static final String GPS_UTIL = "gpsUtil";
+    /** Service RewardCentral. */
+    public static final String REWARD_CENTRAL = "rewardCentral";
+    /** Service TripPricer. */
+    public static final String TRIP_PRICER = "tripPricer";
+
+    @Label("Service")
+    public String service;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Hedge")
+    @Description("Appel redondant lancé après le percentile de latence")
+    public boolean hedge;
+
+    /**
+     * Indique si l'événement est activé dans un enregistrement en cours, pour ne rien allouer sinon.
+     * @return {@code true} si l'événement est enregistré
+     */
+    public static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * Crée l'événement d'un appel et démarre sa mesure, seulement si un enregistrement l'active.
+     * @param service le service appelé
+     * @param operation la méthode appelée
+     * @return l'événement démarré, ou {@code null} s'il n'est pas enregistré
+     */
+    public static ExternalCallEvent start(String service, String operation) {
+        if (!isTypeEnabled()) {
+            return null;
+        }
+        ExternalCallEvent event = new ExternalCallEvent();
+        event.service = service;
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Termine la mesure de l'appel et enregistre l'événement s'il dépasse le seuil configuré.
+     * @param success {@code true} si l'appel a réussi
+     */
+    public void finish(boolean success) {
+        end();
+        if (shouldCommit()) {
+            this.success = success;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.openclassrooms.tourguide.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Événement JFR de l'évaluation des récompenses d'un utilisateur : la recherche des attractions
+ * à portée de ses positions, jusqu'au lancement des attributions.
+ */
+@Name("com.openclassrooms.tourguide.RewardEvaluation")
+@Label("Reward Evaluation")
+@Category({"TourGuide", "Rewards"})
+@Description("Évaluation de la proximité des positions d'un utilisateur aux attractions")
+@StackTrace(false)
+public class RewardEvaluationEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(RewardEvaluationEvent.class);
+
+    @Label("User Name")
+    public String userName;
+
+    @Label("Locations")
+    @Description("Positions évaluées")
+    public int locations;
+
+    @Label("Candidates")
+    @Description("Couples position/attraction à portée")
+    public int candidates;
+
+    @Label("Grants")
+    @Description("Attributions lancées")
+    public int grants;
+
+    /**
+     * Indique si l'événement est activé dans un enregistrement en cours, pour ne rien allouer sinon.
+     * @return {@code true} si l'événement est enregistré
+     */
+    public static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+}
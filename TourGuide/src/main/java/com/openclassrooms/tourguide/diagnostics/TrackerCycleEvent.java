@@ -0,0 +1,42 @@
+package com.openclassrooms.tourguide.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Événement JFR d'un cycle du tracker : son début, sa fin et le sort des utilisateurs suivis.
+ */
+@Name("com.openclassrooms.tourguide.TrackerCycle")
+@Label("Tracker Cycle")
+@Category({"TourGuide", "Tracker"})
+@Description("Un cycle de suivi, de la sélection des utilisateurs au traitement des retards")
+@StackTrace(false)
+public class TrackerCycleEvent extends Event {
+
+    @Label("Users")
+    @Description("Utilisateurs dont le suivi est lancé par ce cycle")
+    public int users;
+
+    @Label("Carried Over")
+    @Description("Suivis reportés du cycle précédent, encore en cours au début du cycle")
+    public int carriedOver;
+
+    @Label("Shed")
+    @Description("Utilisateurs écartés par le délestage")
+    public int shed;
+
+    @Label("Completed On Time")
+    @Description("Suivis terminés avant l'échéance")
+    public int completedOnTime;
+
+    @Label("Late")
+    @Description("Suivis encore en cours à l'échéance")
+    public int late;
+
+    @Label("Overrun Policy")
+    public String overrunPolicy;
+}
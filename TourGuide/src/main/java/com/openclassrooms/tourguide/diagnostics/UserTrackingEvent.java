@@ -0,0 +1,37 @@
+package com.openclassrooms.tourguide.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Événement JFR du suivi d'un utilisateur : de la demande de position à l'attribution de ses récompenses.
+ */
+@Name("com.openclassrooms.tourguide.UserTracking")
+@Label("User Tracking")
+@Category({"TourGuide", "Tracker"})
+@Description("Suivi d'un utilisateur, de la demande de position à l'attribution des récompenses")
+@StackTrace(false)
+public class UserTrackingEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(UserTrackingEvent.class);
+
+    @Label("User Name")
+    public String userName;
+
+    @Label("Outcome")
+    @Description("completed, failed ou cancelled")
+    public String outcome;
+
+    /**
+     * Indique si l'événement est activé dans un enregistrement en cours, pour ne rien allouer sinon.
+     * @return {@code true} si l'événement est enregistré
+     */
+    public static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+}
@@ -0,0 +1,46 @@
+package com.openclassrooms.tourguide.helper;
+
+import gpsUtil.location.Location;
+
+/**
+ * Zone rectangulaire en latitude et longitude, bornes incluses.
+ * Une zone dont la longitude minimale dépasse la maximale traverse l'antiméridien.
+ * @param minLatitude latitude minimale (degrés)
+ * @param maxLatitude latitude maximale (degrés)
+ * @param minLongitude longitude minimale (degrés)
+ * @param maxLongitude longitude maximale (degrés)
+ */
+public record BoundingBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+
+    /** Zone couvrant toute la surface du globe. */
+    public static final BoundingBox WORLD = new BoundingBox(-90, 90, -180, 180);
+
+    public BoundingBox {
+        if (minLatitude > maxLatitude) {
+            throw new IllegalArgumentException("minLatitude " + minLatitude + " > maxLatitude " + maxLatitude);
+        }
+    }
+
+    /**
+     * @param location une position
+     * @return {@code true} si la position est dans la zone
+     */
+    public boolean contains(Location location) {
+        return contains(location.latitude, location.longitude);
+    }
+
+    /**
+     * @param latitude la latitude d'un point
+     * @param longitude la longitude du point
+     * @return {@code true} si le point est dans la zone
+     */
+    public boolean contains(double latitude, double longitude) {
+        if (latitude < minLatitude || latitude > maxLatitude) {
+            return false;
+        }
+        if (minLongitude <= maxLongitude) {
+            return longitude >= minLongitude && longitude <= maxLongitude;
+        }
+        return longitude >= minLongitude || longitude <= maxLongitude;
+    }
+}
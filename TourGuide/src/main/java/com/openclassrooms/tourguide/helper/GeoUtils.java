@@ -0,0 +1,58 @@
+package com.openclassrooms.tourguide.helper;
+
+/**
+ * Fonctions géographiques partagées par les services.
+ * Les calculs travaillent directement sur des coordonnées en degrés afin
+ * d'éviter de créer des objets {@code Location} intermédiaires.
+ */
+public final class GeoUtils {
+
+    /** Nombre de miles terrestres dans un mille nautique. */
+    public static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+
+    /** Nombre de miles terrestres correspondant à un degré de latitude. */
+    public static final double MILES_PER_DEGREE_LATITUDE = 60 * STATUTE_MILES_PER_NAUTICAL_MILE;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * Calcule la distance orthodromique en miles entre deux points.
+     * @param lat1 latitude du premier point (degrés)
+     * @param lon1 longitude du premier point (degrés)
+     * @param lat2 latitude du second point (degrés)
+     * @param lon2 longitude du second point (degrés)
+     * @return la distance en miles
+     */
+    public static double distanceInMiles(double lat1, double lon1, double lat2, double lon2) {
+        double radLat1 = Math.toRadians(lat1);
+        double radLat2 = Math.toRadians(lat2);
+        double deltaLon = Math.toRadians(lon1 - lon2);
+
+        double cosAngle = Math.sin(radLat1) * Math.sin(radLat2)
+                + Math.cos(radLat1) * Math.cos(radLat2) * Math.cos(deltaLon);
+        // Les erreurs d'arrondi peuvent faire sortir le cosinus de [-1, 1] pour deux points identiques
+        double angle = Math.acos(Math.max(-1.0, Math.min(1.0, cosAngle)));
+
+        double nauticalMiles = 60 * Math.toDegrees(angle);
+        return STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
+    }
+
+    /**
+     * Calcule la même distance à partir de valeurs trigonométriques précalculées,
+     * pour comparer une position à de nombreux points fixes sans recalculer leurs sinus et cosinus.
+     * @param sinLat1 sinus de la latitude du premier point
+     * @param cosLat1 cosinus de la latitude du premier point
+     * @param radLon1 longitude du premier point (radians)
+     * @param sinLat2 sinus de la latitude du second point
+     * @param cosLat2 cosinus de la latitude du second point
+     * @param radLon2 longitude du second point (radians)
+     * @return la distance en miles
+     */
+    public static double distanceInMiles(double sinLat1, double cosLat1, double radLon1,
+                                         double sinLat2, double cosLat2, double radLon2) {
+        double cosAngle = sinLat1 * sinLat2 + cosLat1 * cosLat2 * Math.cos(radLon1 - radLon2);
+        double angle = Math.acos(Math.max(-1.0, Math.min(1.0, cosAngle)));
+        return STATUTE_MILES_PER_NAUTICAL_MILE * 60 * Math.toDegrees(angle);
+    }
+}
@@ -0,0 +1,108 @@
+package com.openclassrooms.tourguide.helper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+/**
+ * Encodeur d'une suite d'enregistrements écrits au fil de l'eau dans un flux de sortie.
+ * Deux formats sont proposés : NDJSON (un objet JSON par ligne) et séquence CBOR (RFC 8742,
+ * objets CBOR mis bout à bout). Aucun enregistrement n'est conservé : la mémoire utilisée
+ * ne dépend pas du nombre d'enregistrements, et une écriture bloque tant que le client
+ * n'a pas consommé les précédentes.
+ */
+public final class RecordStreamEncoder implements Closeable {
+
+    /** Type de contenu NDJSON. */
+    public static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    /** Type de contenu d'une séquence CBOR. */
+    public static final MediaType CBOR_SEQUENCE = MediaType.parseMediaType("application/cbor-seq");
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final ObjectMapper CBOR_MAPPER = new CBORMapper();
+
+    /** Nombre d'enregistrements écrits entre deux vidages du tampon. */
+    private static final int FLUSH_EVERY = 256;
+
+    private final JsonGenerator generator;
+    private final boolean lineDelimited;
+    private long count;
+
+    private RecordStreamEncoder(JsonGenerator generator, boolean lineDelimited) {
+        this.generator = generator;
+        this.lineDelimited = lineDelimited;
+    }
+
+    /**
+     * Choisit le format d'après les types acceptés par le client : séquence CBOR si elle
+     * (ou CBOR) est acceptée explicitement, NDJSON sinon.
+     * @param accept les valeurs de l'en-tête {@code Accept}, éventuellement {@code null}
+     * @return le type de contenu à produire
+     */
+    public static MediaType negotiate(String accept) {
+        if (accept != null) {
+            for (MediaType mediaType : MediaType.parseMediaTypes(accept)) {
+                if (CBOR_SEQUENCE.equalsTypeAndSubtype(mediaType)
+                        || MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(mediaType)) {
+                    return CBOR_SEQUENCE;
+                }
+            }
+        }
+        return NDJSON;
+    }
+
+    /**
+     * Ouvre un encodeur sur un flux.
+     * @param out le flux de sortie, qui n'est pas fermé par l'encodeur
+     * @param mediaType {@link #NDJSON} ou {@link #CBOR_SEQUENCE}
+     * @return l'encodeur
+     * @throws IOException si le générateur ne peut être créé
+     */
+    public static RecordStreamEncoder open(OutputStream out, MediaType mediaType) throws IOException {
+        boolean cbor = CBOR_SEQUENCE.equalsTypeAndSubtype(mediaType);
+        ObjectMapper mapper = cbor ? CBOR_MAPPER : JSON_MAPPER;
+        JsonGenerator generator = mapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (!cbor) {
+            // Pas de séparateur implicite entre les valeurs racines : on écrit nous-mêmes les fins de ligne.
+            generator.setRootValueSeparator(null);
+        }
+        return new RecordStreamEncoder(generator, !cbor);
+    }
+
+    /**
+     * Écrit un enregistrement.
+     * @param record l'enregistrement
+     * @throws IOException en cas d'échec d'écriture, par exemple si le client s'est déconnecté
+     */
+    public void write(Object record) throws IOException {
+        generator.writeObject(record);
+        if (lineDelimited) {
+            generator.writeRaw('\n');
+        }
+        if (++count % FLUSH_EVERY == 0) {
+            generator.flush();
+        }
+    }
+
+    /**
+     * @return le nombre d'enregistrements écrits
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Vide le tampon sans fermer le flux sous-jacent.
+     */
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
@@ -0,0 +1,193 @@
+package com.openclassrooms.tourguide.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+
+/**
+ * Catalogue des attractions partagé par les services.
+ * Le catalogue conserve un instantané immuable et versionné de la liste des
+ * attractions ainsi que des index qui en sont dérivés. Les lectures sont
+ * gratuites (simple lecture d'une référence) ; un rafraîchissement périodique
+ * en arrière-plan recharge la liste depuis {@link GpsUtil} et remplace
+ * l'instantané de manière atomique lorsqu'il a changé.
+ */
+public class AttractionCatalog {
+    private final Logger logger = LoggerFactory.getLogger(AttractionCatalog.class);
+
+    private final GpsUtil gpsUtil;
+    private final GpsUtilScheduler gpsUtilScheduler;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private ScheduledExecutorService refreshExecutor;
+
+    /**
+     * Construit le catalogue et charge immédiatement un premier instantané.
+     * Sans ordonnanceur, les chargements ne sont décomptés d'aucun budget.
+     * @param gpsUtil source des attractions
+     */
+    public AttractionCatalog(GpsUtil gpsUtil) {
+        this(gpsUtil, null);
+    }
+
+    /**
+     * Construit le catalogue et charge immédiatement un premier instantané.
+     * @param gpsUtil source des attractions
+     * @param gpsUtilScheduler l'ordonnanceur placé devant {@code gpsUtil}, dont le budget décompte les chargements
+     */
+    public AttractionCatalog(GpsUtil gpsUtil, GpsUtilScheduler gpsUtilScheduler) {
+        this.gpsUtil = gpsUtil;
+        this.gpsUtilScheduler = gpsUtilScheduler;
+        this.snapshot.set(new Snapshot(1, loadAttractions()));
+    }
+
+    /**
+     * Charge les attractions depuis GpsUtil, en décomptant l'appel du budget de l'ordonnanceur.
+     */
+    private List<Attraction> loadAttractions() {
+        if (gpsUtilScheduler != null) {
+            gpsUtilScheduler.acquirePermit();
+        }
+        return gpsUtil.getAttractions();
+    }
+
+    /**
+     * @return l'instantané courant du catalogue
+     */
+    public Snapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Recharge les attractions depuis {@link GpsUtil}.
+     * Les attractions inchangées (même nom et mêmes coordonnées) réutilisent l'instance
+     * de l'instantané précédent afin que leur {@code attractionId} reste stable ; si rien
+     * n'a changé, l'instantané courant est conservé.
+     * @return {@code true} si une nouvelle version a été publiée
+     */
+    public synchronized boolean refresh() {
+        Snapshot current = snapshot.get();
+        Map<String, Attraction> previous = new HashMap<>();
+        current.getAttractions().forEach(a -> previous.put(a.attractionName, a));
+
+        List<Attraction> loaded = loadAttractions();
+        List<Attraction> merged = new ArrayList<>(loaded.size());
+        boolean changed = loaded.size() != previous.size();
+        for (Attraction attraction : loaded) {
+            Attraction known = previous.get(attraction.attractionName);
+            if (known != null && known.latitude == attraction.latitude && known.longitude == attraction.longitude) {
+                merged.add(known);
+            } else {
+                merged.add(attraction);
+                changed = true;
+            }
+        }
+
+        if (!changed) {
+            return false;
+        }
+        Snapshot next = new Snapshot(current.getVersion() + 1, merged);
+        snapshot.set(next);
+        logger.debug("Attraction catalog refreshed to version {} ({} attractions)", next.getVersion(), merged.size());
+        return true;
+    }
+
+    /**
+     * Démarre le rafraîchissement périodique du catalogue dans un thread dédié.
+     * @param period intervalle entre deux rafraîchissements
+     */
+    public synchronized void startRefreshing(Duration period) {
+        if (refreshExecutor != null) {
+            return;
+        }
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attraction-catalog-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (Exception e) {
+                logger.error("Attraction catalog refresh failed", e);
+            }
+        }, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Arrête le rafraîchissement périodique.
+     */
+    public synchronized void stopRefreshing() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            refreshExecutor = null;
+        }
+    }
+
+    /**
+     * Instantané immuable du catalogue : la liste des attractions, sa version
+     * et les index dérivés (index spatial, matrice des distances), construits une seule fois au chargement.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final Instant loadedAt = Instant.now();
+        private final List<Attraction> attractions;
+        private final AttractionIndex index;
+        private final AttractionDistanceMatrix distanceMatrix;
+
+        Snapshot(long version, List<Attraction> attractions) {
+            this.version = version;
+            this.attractions = Collections.unmodifiableList(new ArrayList<>(attractions));
+            this.index = new AttractionIndex(this.attractions);
+            this.distanceMatrix = new AttractionDistanceMatrix(this.attractions);
+        }
+
+        /**
+         * @return le numéro de version, incrémenté à chaque changement du catalogue
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return la date de chargement de l'instantané
+         */
+        public Instant getLoadedAt() {
+            return loadedAt;
+        }
+
+        /**
+         * @return la liste non modifiable des attractions
+         */
+        public List<Attraction> getAttractions() {
+            return attractions;
+        }
+
+        /**
+         * @return l'index spatial des attractions de cet instantané
+         */
+        public AttractionIndex getIndex() {
+            return index;
+        }
+
+        /**
+         * @return la matrice des distances entre les attractions de cet instantané
+         */
+        public AttractionDistanceMatrix getDistanceMatrix() {
+            return distanceMatrix;
+        }
+    }
+}
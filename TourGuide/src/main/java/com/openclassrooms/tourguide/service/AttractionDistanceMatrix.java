@@ -0,0 +1,74 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gpsUtil.location.Attraction;
+
+import com.openclassrooms.tourguide.helper.GeoUtils;
+
+/**
+ * Matrice immuable des distances entre attractions, calculée une fois par instantané du catalogue.
+ * Seul le triangle supérieur est conservé, en {@code float} rangés à la suite : n(n-1)/2 valeurs
+ * de 4 octets, lues sans aucun calcul trigonométrique. Les attractions sont désignées par leur
+ * position dans la liste de l'instantané.
+ */
+public class AttractionDistanceMatrix {
+
+    private final int size;
+    private final float[] distances;
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    /**
+     * Calcule les distances entre toutes les attractions.
+     * @param attractions les attractions, dans l'ordre de l'instantané
+     */
+    public AttractionDistanceMatrix(List<Attraction> attractions) {
+        this.size = attractions.size();
+        this.distances = new float[size * (size - 1) / 2];
+        for (int i = 0; i < size; i++) {
+            Attraction from = attractions.get(i);
+            positions.putIfAbsent(from.attractionName, i);
+            for (int j = i + 1; j < size; j++) {
+                Attraction to = attractions.get(j);
+                distances[offset(i, j)] = (float) GeoUtils.distanceInMiles(from.latitude, from.longitude,
+                        to.latitude, to.longitude);
+            }
+        }
+    }
+
+    /**
+     * @return le nombre d'attractions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param from la position de la première attraction
+     * @param to la position de la seconde attraction
+     * @return la distance entre les deux, en miles
+     */
+    public double distance(int from, int to) {
+        if (from == to) {
+            return 0;
+        }
+        return from < to ? distances[offset(from, to)] : distances[offset(to, from)];
+    }
+
+    /**
+     * @param attractionName le nom d'une attraction
+     * @return sa position dans l'instantané, ou -1 si elle n'y figure pas
+     */
+    public int indexOf(String attractionName) {
+        return positions.getOrDefault(attractionName, -1);
+    }
+
+    /**
+     * Position dans le tableau du couple (i, j), avec i &lt; j : les lignes du triangle sont rangées à la suite.
+     */
+    private int offset(int i, int j) {
+        return i * (2 * size - i - 1) / 2 + (j - i - 1);
+    }
+}
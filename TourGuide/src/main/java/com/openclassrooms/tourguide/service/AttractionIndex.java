@@ -0,0 +1,250 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+import com.openclassrooms.tourguide.helper.GeoUtils;
+
+/**
+ * Index spatial immuable des attractions.
+ * Les attractions sont réparties dans une grille de cellules de un degré
+ * de côté. Une recherche par rayon ne parcourt que les cellules couvertes
+ * par la boîte englobante du cercle recherché, ce qui évite de trier tout
+ * le catalogue lorsque le rayon est petit.
+ * Les coordonnées sont rangées dans des tableaux de primitives, avec le sinus et le cosinus
+ * de chaque latitude calculés au chargement : comparer une position à une attraction
+ * n'alloue rien.
+ */
+public class AttractionIndex {
+
+    /** Taille d'une cellule de la grille, en degrés. */
+    private static final double CELL_SIZE_DEGREES = 1.0;
+    private static final int LONGITUDE_CELLS = (int) (360 / CELL_SIZE_DEGREES);
+
+    private final List<Attraction> attractions;
+    private final double[] sinLatitudes;
+    private final double[] cosLatitudes;
+    private final double[] radLongitudes;
+    /** Clés des cellules occupées, triées. */
+    private final int[] cellKeys;
+    /** Positions dans le catalogue des attractions de chaque cellule, dans l'ordre de {@link #cellKeys}. */
+    private final int[][] cellMembers;
+
+    /**
+     * Construit l'index à partir d'une liste d'attractions.
+     * @param attractions les attractions à indexer
+     */
+    public AttractionIndex(List<Attraction> attractions) {
+        this.attractions = Collections.unmodifiableList(new ArrayList<>(attractions));
+        int size = this.attractions.size();
+        this.sinLatitudes = new double[size];
+        this.cosLatitudes = new double[size];
+        this.radLongitudes = new double[size];
+        TreeMap<Integer, List<Integer>> cells = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            Attraction attraction = this.attractions.get(i);
+            double radLatitude = Math.toRadians(attraction.latitude);
+            sinLatitudes[i] = Math.sin(radLatitude);
+            cosLatitudes[i] = Math.cos(radLatitude);
+            radLongitudes[i] = Math.toRadians(attraction.longitude);
+            int key = cellKey(latitudeCell(attraction.latitude), longitudeCell(attraction.longitude));
+            cells.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+        }
+        this.cellKeys = cells.keySet().stream().mapToInt(Integer::intValue).toArray();
+        this.cellMembers = cells.values().stream()
+                .map(members -> members.stream().mapToInt(Integer::intValue).toArray())
+                .toArray(int[][]::new);
+    }
+
+    /**
+     * @return toutes les attractions indexées, dans l'ordre du catalogue
+     */
+    public List<Attraction> getAttractions() {
+        return attractions;
+    }
+
+    /**
+     * @return le nombre d'attractions indexées
+     */
+    public int size() {
+        return attractions.size();
+    }
+
+    /**
+     * @param index la position de l'attraction dans le catalogue
+     * @return l'attraction
+     */
+    public Attraction getAttraction(int index) {
+        return attractions.get(index);
+    }
+
+    /**
+     * Retourne les {@code limit} attractions les plus proches, sans limite de distance.
+     * @param location position de référence
+     * @param limit nombre maximal d'attractions retournées
+     * @return les attractions triées par distance croissante
+     */
+    public List<Attraction> findNearest(Location location, int limit) {
+        return findWithinRadius(location, Double.POSITIVE_INFINITY, limit);
+    }
+
+    /**
+     * Retourne les attractions situées à moins de {@code radiusMiles} de la position,
+     * triées par distance croissante et limitées aux {@code limit} premières.
+     * Seul le résultat est alloué : une recherche sans résultat n'alloue rien.
+     * @param location position de référence
+     * @param radiusMiles rayon de recherche en miles
+     * @param limit nombre maximal d'attractions retournées
+     * @return les attractions trouvées
+     */
+    public List<Attraction> findWithinRadius(Location location, double radiusMiles, int limit) {
+        int count = limit > 0 ? scan(location.latitude, location.longitude, radiusMiles, null, null) : 0;
+        if (count == 0) {
+            return List.of();
+        }
+        int[] nearest = new int[Math.min(limit, count)];
+        int found = scan(location.latitude, location.longitude, radiusMiles, nearest, new double[nearest.length]);
+
+        Attraction[] result = new Attraction[found];
+        for (int i = 0; i < found; i++) {
+            result[i] = attractions.get(nearest[i]);
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Indique si au moins une attraction se trouve à moins de {@code radiusMiles} de la position.
+     * @param location position de référence
+     * @param radiusMiles rayon de recherche en miles
+     * @return {@code true} si une attraction est dans le rayon
+     */
+    public boolean anyWithinRadius(Location location, double radiusMiles) {
+        return scan(location.latitude, location.longitude, radiusMiles, null, null) > 0;
+    }
+
+    /**
+     * Range dans {@code indices} la position dans le catalogue des attractions situées à moins
+     * de {@code radiusMiles}, sans ordre particulier. Le tableau est fourni par l'appelant, qui peut
+     * le réutiliser d'une recherche à l'autre : la recherche n'alloue rien.
+     * @param location position de référence
+     * @param radiusMiles rayon de recherche en miles
+     * @param indices tableau d'au moins {@link #size()} éléments recevant les positions
+     * @return le nombre de positions rangées
+     */
+    public int collectWithinRadius(Location location, double radiusMiles, int[] indices) {
+        return scan(location.latitude, location.longitude, radiusMiles, indices, null);
+    }
+
+    /**
+     * Parcourt les attractions des cellules couvertes par la boîte englobante du cercle.
+     * Si la boîte couvre plus de cellules qu'il n'y en a d'occupées, tout le catalogue est parcouru.
+     * @param indices reçoit les positions des attractions dans le rayon, ou {@code null} pour les compter seulement
+     * @param distances si fourni, seules les {@code indices.length} plus proches sont gardées, triées par distance
+     * @return le nombre de positions comptées ou rangées
+     */
+    private int scan(double latitude, double longitude, double radiusMiles, int[] indices, double[] distances) {
+        double radLatitude = Math.toRadians(latitude);
+        double sinLatitude = Math.sin(radLatitude);
+        double cosLatitude = Math.cos(radLatitude);
+        double radLongitude = Math.toRadians(longitude);
+
+        double radiusDegrees = radiusMiles / GeoUtils.MILES_PER_DEGREE_LATITUDE;
+        double minLatitude = latitude - radiusDegrees;
+        double maxLatitude = latitude + radiusDegrees;
+        boolean scanAll = minLatitude <= -90 || maxLatitude >= 90;
+
+        int minLatCell = 0;
+        int maxLatCell = -1;
+        int minLonCell = 0;
+        int maxLonCell = -1;
+        if (!scanAll) {
+            double maxAbsLatitude = Math.max(Math.abs(minLatitude), Math.abs(maxLatitude));
+            double longitudeDegrees = radiusDegrees / Math.cos(Math.toRadians(maxAbsLatitude));
+            minLatCell = latitudeCell(minLatitude);
+            maxLatCell = latitudeCell(maxLatitude);
+            minLonCell = (int) Math.floor((longitude - longitudeDegrees) / CELL_SIZE_DEGREES);
+            maxLonCell = (int) Math.floor((longitude + longitudeDegrees) / CELL_SIZE_DEGREES);
+            long lonCells = (long) maxLonCell - minLonCell + 1;
+            // Au-delà d'un tour complet, une même cellule serait visitée deux fois
+            scanAll = longitudeDegrees >= 180 || lonCells >= LONGITUDE_CELLS
+                    || (maxLatCell - minLatCell + 1) * lonCells > cellKeys.length;
+        }
+
+        int count = 0;
+        if (scanAll) {
+            for (int i = 0; i < radLongitudes.length; i++) {
+                double distance = distanceInMiles(i, sinLatitude, cosLatitude, radLongitude);
+                if (distance <= radiusMiles) {
+                    count = accept(i, distance, count, indices, distances);
+                }
+            }
+            return count;
+        }
+        for (int latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+            for (int lonCell = minLonCell; lonCell <= maxLonCell; lonCell++) {
+                int cell = Arrays.binarySearch(cellKeys, cellKey(latCell, Math.floorMod(lonCell, LONGITUDE_CELLS)));
+                if (cell < 0) {
+                    continue;
+                }
+                for (int i : cellMembers[cell]) {
+                    double distance = distanceInMiles(i, sinLatitude, cosLatitude, radLongitude);
+                    if (distance <= radiusMiles) {
+                        count = accept(i, distance, count, indices, distances);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Retient une attraction dans le rayon : la compte, l'ajoute, ou l'insère parmi les plus proches
+     * (tampon trié borné, stable à distance égale).
+     * @return le nouveau nombre de positions comptées ou rangées
+     */
+    private static int accept(int index, double distance, int found, int[] indices, double[] distances) {
+        if (indices == null) {
+            return found + 1;
+        }
+        if (distances == null) {
+            indices[found] = index;
+            return found + 1;
+        }
+        int capacity = indices.length;
+        if (found == capacity && distance >= distances[capacity - 1]) {
+            return found;
+        }
+        int position = found < capacity ? found++ : capacity - 1;
+        while (position > 0 && distances[position - 1] > distance) {
+            indices[position] = indices[position - 1];
+            distances[position] = distances[position - 1];
+            position--;
+        }
+        indices[position] = index;
+        distances[position] = distance;
+        return found;
+    }
+
+    private double distanceInMiles(int index, double sinLatitude, double cosLatitude, double radLongitude) {
+        return GeoUtils.distanceInMiles(sinLatitude, cosLatitude, radLongitude,
+                sinLatitudes[index], cosLatitudes[index], radLongitudes[index]);
+    }
+
+    private static int latitudeCell(double latitude) {
+        return (int) Math.floor(latitude / CELL_SIZE_DEGREES);
+    }
+
+    private static int longitudeCell(double longitude) {
+        return Math.floorMod((int) Math.floor(longitude / CELL_SIZE_DEGREES), LONGITUDE_CELLS);
+    }
+
+    private static int cellKey(int latCell, int lonCell) {
+        return latCell * LONGITUDE_CELLS + lonCell;
+    }
+}
@@ -0,0 +1,492 @@
+package com.openclassrooms.tourguide.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Points de reprise de l'état des utilisateurs (profil, préférences, historique et récompenses).
+ * Un point de reprise est une coupure temporelle : seules les positions visitées et les récompenses
+ * attribuées avant son début sont écrites. Il se lit sur les instantanés copiés à l'écriture de chaque
+ * utilisateur, sans verrou : le suivi continue pendant l'écriture.
+ * Les utilisateurs sont répartis en parties écrites en parallèle, chacune dans un fichier binaire
+ * compressé en gzip ; le répertoire n'apparaît sous son nom définitif qu'une fois complet.
+ * La restauration lit les parties en parallèle.
+ */
+public class CheckpointService {
+    private final Logger logger = LoggerFactory.getLogger(CheckpointService.class);
+
+    /** Signature des fichiers de partie. */
+    static final int MAGIC = 0x54474332;
+    private static final String PREFIX = "checkpoint-";
+    private static final String MANIFEST = "checkpoint.properties";
+
+    private final TourGuideService tourGuideService;
+    private final RewardsService rewardsService;
+    private final ExecutorService io;
+    private final Path directory;
+    private final Duration interval;
+    private final int usersPerPart;
+    private final int retained;
+    private final boolean restoreOnStartup;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Report lastCheckpoint;
+    private volatile Report lastRestore;
+
+    /**
+     * @param tourGuideService le service dont les utilisateurs sont sauvegardés
+     * @param rewardsService le service fournissant le catalogue, pour relier les récompenses aux attractions
+     * @param io le pool exécutant l'écriture et la lecture des parties
+     * @param directory le répertoire des points de reprise, ou {@code null} pour désactiver les points périodiques
+     * @param interval l'intervalle entre deux points de reprise
+     * @param usersPerPart le nombre d'utilisateurs par fichier
+     * @param retained le nombre de points de reprise conservés
+     * @param restoreOnStartup restaurer le point de reprise le plus récent au démarrage
+     */
+    public CheckpointService(TourGuideService tourGuideService, RewardsService rewardsService, ExecutorService io,
+                             Path directory, Duration interval, int usersPerPart, int retained, boolean restoreOnStartup) {
+        this.tourGuideService = tourGuideService;
+        this.rewardsService = rewardsService;
+        this.io = io;
+        this.directory = directory;
+        this.interval = interval;
+        this.usersPerPart = usersPerPart;
+        this.retained = retained;
+        this.restoreOnStartup = restoreOnStartup;
+    }
+
+    /**
+     * Restaure le dernier point de reprise si demandé, puis planifie les points périodiques.
+     */
+    public void start() {
+        if (directory == null) {
+            return;
+        }
+        if (restoreOnStartup) {
+            try {
+                Optional<Path> latest = latestCheckpoint();
+                if (latest.isPresent()) {
+                    restore(latest.get());
+                }
+            } catch (IOException | UncheckedIOException e) {
+                logger.error("Checkpoint restore failed, starting without it", e);
+            }
+        }
+        long periodMillis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (IOException | RuntimeException e) {
+                logger.error("Checkpoint failed", e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Arrête les points de reprise périodiques.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Écrit un point de reprise dans le répertoire configuré.
+     * @return le bilan de l'écriture
+     * @throws IOException si l'écriture échoue
+     */
+    public Report checkpoint() throws IOException {
+        if (directory == null) {
+            throw new IllegalStateException("No checkpoint directory configured");
+        }
+        return checkpoint(directory);
+    }
+
+    /**
+     * Écrit un point de reprise.
+     * @param parent le répertoire dans lequel créer le point de reprise
+     * @return le bilan de l'écriture
+     * @throws IOException si l'écriture échoue
+     */
+    public synchronized Report checkpoint(Path parent) throws IOException {
+        StopWatch stopWatch = StopWatch.createStarted();
+        long cutoff = System.currentTimeMillis();
+        List<User> users = tourGuideService.getAllUsers();
+
+        Path target = parent.resolve(PREFIX + cutoff);
+        Path temporary = parent.resolve(PREFIX + cutoff + ".tmp");
+        Files.createDirectories(temporary);
+
+        List<CompletableFuture<long[]>> parts = new ArrayList<>();
+        for (int start = 0, part = 0; start < users.size(); start += usersPerPart, part++) {
+            List<User> slice = users.subList(start, Math.min(users.size(), start + usersPerPart));
+            Path file = temporary.resolve(partName(part));
+            parts.add(CompletableFuture.supplyAsync(() -> writePart(file, slice, cutoff), io));
+        }
+        long locations = 0;
+        long rewards = 0;
+        try {
+            for (CompletableFuture<long[]> part : parts) {
+                long[] counts = part.join();
+                locations += counts[0];
+                rewards += counts[1];
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException ioException) {
+                throw ioException.getCause();
+            }
+            throw e;
+        }
+
+        Properties manifest = new Properties();
+        manifest.setProperty("cutoff", Long.toString(cutoff));
+        manifest.setProperty("users", Integer.toString(users.size()));
+        manifest.setProperty("parts", Integer.toString(parts.size()));
+        try (OutputStream out = Files.newOutputStream(temporary.resolve(MANIFEST))) {
+            manifest.store(out, "TourGuide checkpoint");
+        }
+        long bytes = sizeOf(temporary);
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        deleteOldCheckpoints(parent);
+
+        stopWatch.stop();
+        Report report = Report.of(target, users.size(), locations, rewards, bytes, stopWatch.getTime());
+        lastCheckpoint = report;
+        logger.info("Checkpoint written: {}", report);
+        return report;
+    }
+
+    /**
+     * Restaure les utilisateurs d'un point de reprise ; ils remplacent les utilisateurs de même nom.
+     * @param checkpoint le répertoire du point de reprise
+     * @return le bilan de la lecture
+     * @throws IOException si la lecture échoue
+     */
+    public Report restore(Path checkpoint) throws IOException {
+        StopWatch stopWatch = StopWatch.createStarted();
+        Properties manifest = new Properties();
+        try (InputStream in = Files.newInputStream(checkpoint.resolve(MANIFEST))) {
+            manifest.load(in);
+        }
+        int partCount = Integer.parseInt(manifest.getProperty("parts"));
+        Map<String, Attraction> attractions = attractionsByName();
+
+        List<CompletableFuture<List<User>>> parts = new ArrayList<>();
+        for (int part = 0; part < partCount; part++) {
+            Path file = checkpoint.resolve(partName(part));
+            parts.add(CompletableFuture.supplyAsync(() -> readPart(file, attractions), io));
+        }
+        int users = 0;
+        long locations = 0;
+        long rewards = 0;
+        try {
+            for (CompletableFuture<List<User>> part : parts) {
+                List<User> restored = part.join();
+                tourGuideService.restoreUsers(restored);
+                users += restored.size();
+                for (User user : restored) {
+                    locations += user.getLocationHistory().size();
+                    rewards += user.getUserRewards().size();
+                }
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException ioException) {
+                throw ioException.getCause();
+            }
+            throw e;
+        }
+
+        stopWatch.stop();
+        Report report = Report.of(checkpoint, users, locations, rewards, sizeOf(checkpoint), stopWatch.getTime());
+        lastRestore = report;
+        logger.info("Checkpoint restored: {}", report);
+        return report;
+    }
+
+    /**
+     * @return le point de reprise complet le plus récent du répertoire configuré
+     * @throws IOException si le répertoire ne peut être lu
+     */
+    public Optional<Path> latestCheckpoint() throws IOException {
+        return directory == null ? Optional.empty() : checkpoints(directory).stream().reduce((first, second) -> second);
+    }
+
+    /** @return le répertoire des points de reprise, ou {@code null} s'ils sont désactivés */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /** @return le bilan du dernier point de reprise écrit, ou {@code null} */
+    public Report getLastCheckpoint() {
+        return lastCheckpoint;
+    }
+
+    /** @return le bilan de la dernière restauration, ou {@code null} */
+    public Report getLastRestore() {
+        return lastRestore;
+    }
+
+    /**
+     * Écrit des utilisateurs dans le format d'une partie, compressé en gzip ; sert aussi à remettre
+     * des utilisateurs à un autre nœud du cluster.
+     * @param out le flux de destination, laissé ouvert
+     * @param users les utilisateurs
+     * @throws IOException si l'écriture échoue
+     */
+    public void writeUsers(OutputStream out, List<User> users) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(gzip, 64 * 1024));
+        writeUsers(data, users, System.currentTimeMillis());
+        data.flush();
+        gzip.finish();
+    }
+
+    /**
+     * Lit des utilisateurs écrits par {@link #writeUsers(OutputStream, List)}.
+     * @param in le flux source
+     * @return les utilisateurs lus, reliés au catalogue courant
+     * @throws IOException si la lecture échoue ou si le flux n'est pas dans le bon format
+     */
+    public List<User> readUsers(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in, 64 * 1024), 64 * 1024));
+        return readUsers(data, attractionsByName(), "stream");
+    }
+
+    private Map<String, Attraction> attractionsByName() {
+        Map<String, Attraction> attractions = new HashMap<>();
+        for (Attraction attraction : rewardsService.getAttractionIndex().getAttractions()) {
+            attractions.put(attraction.attractionName, attraction);
+        }
+        return attractions;
+    }
+
+    private long[] writePart(Path file, List<User> users, long cutoff) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(file), 64 * 1024), 64 * 1024))) {
+            return writeUsers(out, users, cutoff);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long[] writeUsers(DataOutputStream out, List<User> users, long cutoff) throws IOException {
+        long locations = 0;
+        long rewards = 0;
+        out.writeInt(MAGIC);
+        out.writeInt(users.size());
+        for (User user : users) {
+            out.writeLong(user.getUserId().getMostSignificantBits());
+            out.writeLong(user.getUserId().getLeastSignificantBits());
+            out.writeUTF(user.getUserName());
+            out.writeUTF(nullToEmpty(user.getPhoneNumber()));
+            out.writeUTF(nullToEmpty(user.getEmailAddress()));
+            out.writeLong(user.getLatestLocationTimestamp() == null ? -1 : user.getLatestLocationTimestamp().getTime());
+            UserPreferences preferences = user.getUserPreferences();
+            out.writeInt(preferences.getAttractionProximity());
+            out.writeInt(preferences.getTripDuration());
+            out.writeInt(preferences.getTicketQuantity());
+            out.writeInt(preferences.getNumberOfAdults());
+            out.writeInt(preferences.getNumberOfChildren());
+
+            // Vue de l'instantané courant, limitée aux positions antérieures à la coupure, sans copie
+            List<VisitedLocation> history = user.getLocationHistory()
+                    .find(Long.MIN_VALUE, cutoff + 1, Integer.MAX_VALUE).locations();
+            out.writeInt(history.size());
+            for (VisitedLocation visitedLocation : history) {
+                writeLocation(out, visitedLocation);
+            }
+            locations += history.size();
+
+            List<UserReward> userRewards = user.getUserRewards().stream()
+                    .filter(userReward -> userReward.getGrantedAt() <= cutoff)
+                    .toList();
+            out.writeInt(userRewards.size());
+            for (UserReward userReward : userRewards) {
+                Attraction attraction = userReward.attraction;
+                out.writeUTF(attraction.attractionName);
+                out.writeUTF(attraction.city);
+                out.writeUTF(attraction.state);
+                out.writeDouble(attraction.latitude);
+                out.writeDouble(attraction.longitude);
+                writeLocation(out, userReward.visitedLocation);
+                out.writeInt(userReward.getRewardPoints());
+                out.writeLong(userReward.getGrantedAt());
+            }
+            rewards += userRewards.size();
+        }
+        return new long[] { locations, rewards };
+    }
+
+    private List<User> readPart(Path file, Map<String, Attraction> attractions) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file), 64 * 1024), 64 * 1024))) {
+            return readUsers(in, attractions, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<User> readUsers(DataInputStream in, Map<String, Attraction> attractions, Object source)
+            throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a checkpoint part: " + source);
+        }
+        int count = in.readInt();
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UUID userId = new UUID(in.readLong(), in.readLong());
+            User user = new User(userId, in.readUTF(), in.readUTF(), in.readUTF());
+            long latestLocationTimestamp = in.readLong();
+            if (latestLocationTimestamp >= 0) {
+                user.setLatestLocationTimestamp(new Date(latestLocationTimestamp));
+            }
+            UserPreferences preferences = new UserPreferences();
+            preferences.setAttractionProximity(in.readInt());
+            preferences.setTripDuration(in.readInt());
+            preferences.setTicketQuantity(in.readInt());
+            preferences.setNumberOfAdults(in.readInt());
+            preferences.setNumberOfChildren(in.readInt());
+            user.setUserPreferences(preferences);
+
+            int historySize = in.readInt();
+            List<VisitedLocation> history = new ArrayList<>(historySize);
+            for (int j = 0; j < historySize; j++) {
+                history.add(readLocation(in, userId));
+            }
+            user.addAllToVisitedLocations(history);
+            int rewardCount = in.readInt();
+            for (int j = 0; j < rewardCount; j++) {
+                String attractionName = in.readUTF();
+                String city = in.readUTF();
+                String state = in.readUTF();
+                double latitude = in.readDouble();
+                double longitude = in.readDouble();
+                // Les récompenses sont reliées à l'attraction du catalogue courant, dont l'identifiant sert aux caches
+                Attraction attraction = attractions.getOrDefault(attractionName,
+                        new Attraction(attractionName, city, state, latitude, longitude));
+                user.addUserReward(new UserReward(readLocation(in, userId), attraction, in.readInt(), in.readLong()));
+            }
+            users.add(user);
+        }
+        return users;
+    }
+
+    private static void writeLocation(DataOutputStream out, VisitedLocation visitedLocation) throws IOException {
+        out.writeDouble(visitedLocation.location.latitude);
+        out.writeDouble(visitedLocation.location.longitude);
+        out.writeLong(visitedLocation.timeVisited.getTime());
+    }
+
+    private static VisitedLocation readLocation(DataInputStream in, UUID userId) throws IOException {
+        Location location = new Location(in.readDouble(), in.readDouble());
+        return new VisitedLocation(userId, location, new Date(in.readLong()));
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String partName(int part) {
+        return String.format("part-%05d.bin.gz", part);
+    }
+
+    /** Points de reprise complets d'un répertoire, du plus ancien au plus récent. */
+    private static List<Path> checkpoints(Path parent) throws IOException {
+        if (!Files.isDirectory(parent)) {
+            return List.of();
+        }
+        try (Stream<Path> entries = Files.list(parent)) {
+            return entries
+                    .filter(path -> path.getFileName().toString().matches(PREFIX + "\\d+"))
+                    .filter(path -> Files.exists(path.resolve(MANIFEST)))
+                    .sorted(Comparator.comparingLong(path -> Long.parseLong(path.getFileName().toString().substring(PREFIX.length()))))
+                    .toList();
+        }
+    }
+
+    private void deleteOldCheckpoints(Path parent) throws IOException {
+        List<Path> checkpoints = checkpoints(parent);
+        for (Path old : checkpoints.subList(0, Math.max(0, checkpoints.size() - retained))) {
+            try (Stream<Path> files = Files.list(old)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(old);
+        }
+    }
+
+    private static long sizeOf(Path checkpoint) throws IOException {
+        try (Stream<Path> files = Files.list(checkpoint)) {
+            long bytes = 0;
+            for (Path file : files.toList()) {
+                bytes += Files.size(file);
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Bilan d'une écriture ou d'une restauration.
+     * @param path le répertoire du point de reprise
+     * @param users le nombre d'utilisateurs
+     * @param locations le nombre de positions
+     * @param rewards le nombre de récompenses
+     * @param bytes la taille compressée, en octets
+     * @param millis la durée, en millisecondes
+     * @param usersPerSecond le débit en utilisateurs par seconde
+     * @param megabytesPerSecond le débit en mégaoctets compressés par seconde
+     */
+    public record Report(String path, int users, long locations, long rewards, long bytes, long millis,
+                         double usersPerSecond, double megabytesPerSecond) {
+
+        static Report of(Path path, int users, long locations, long rewards, long bytes, long millis) {
+            double seconds = Math.max(1, millis) / 1000.0;
+            return new Report(path.toString(), users, locations, rewards, bytes, millis,
+                    users / seconds, bytes / (1024.0 * 1024.0) / seconds);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.diagnostics.ExternalCallEvent;
+
+/**
+ * Ordonnanceur placé devant {@link GpsUtil}.
+ * GpsUtil applique un limiteur de débit (1000 appels par seconde) commun à tous ses appels,
+ * y compris {@link GpsUtil#getAttractions()}. Chaque ordonnanceur tient ce budget pour son
+ * instance de GpsUtil : ses créneaux d'appel y sont réservés, et les autres appels à cette
+ * instance y sont décomptés par {@link #acquirePermit()}.
+ * L'ordonnanceur répartit les demandes dans
+ * deux files de priorité :
+ *   <li>{@link Lane#INTERACTIVE} pour les requêtes des utilisateurs de l'API, toujours servies en premier ;
+ *   <li>{@link Lane#BACKGROUND} pour le suivi périodique du {@code Tracker}, qui utilise le budget restant.
+ * Les workers délivrent les permis à un rythme ne dépassant pas celui du limiteur, afin
+ * que les threads ne restent pas bloqués dans la bibliothèque : une demande interactive
+ * arrivée pendant un cycle du tracker passe devant les milliers d'appels en attente.
+ */
+public class GpsUtilScheduler {
+    private final Logger logger = LoggerFactory.getLogger(GpsUtilScheduler.class);
+
+    /** Débit du limiteur statique de GpsUtil, en appels par seconde. */
+    public static final double GPS_UTIL_PERMITS_PER_SECOND = 1000;
+    private static final long GPS_UTIL_PERMIT_INTERVAL_NANOS =
+            (long) (TimeUnit.SECONDS.toNanos(1) / GPS_UTIL_PERMITS_PER_SECOND);
+
+    /**
+     * Files de priorité de l'ordonnanceur.
+     */
+    public enum Lane {
+        /** Requêtes déclenchées par un utilisateur de l'API. */
+        INTERACTIVE,
+        /** Suivi en arrière-plan effectué par le tracker. */
+        BACKGROUND
+    }
+
+    private final GpsUtil gpsUtil;
+    private final long permitIntervalNanos;
+    private long nextPermitNanos = System.nanoTime();
+    /** Prochain créneau libre du budget de GpsUtil, commun aux workers et aux autres appels. */
+    private long gpsUtilNextPermitNanos = System.nanoTime();
+    private final Object gpsUtilBudgetLock = new Object();
+
+    private final Queue<Request> interactiveQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Request> backgroundQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger interactiveDepth = new AtomicInteger();
+    private final AtomicInteger backgroundDepth = new AtomicInteger();
+    private final Semaphore pending = new Semaphore(0);
+    private final LongAdder interactiveCompleted = new LongAdder();
+    private final LongAdder backgroundCompleted = new LongAdder();
+    private final Thread[] workers;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private volatile boolean stopped = false;
+
+    /**
+     * Crée un ordonnanceur calé sur le débit du limiteur de GpsUtil (1000 appels par seconde).
+     * @param gpsUtil le service GPS à appeler
+     */
+    public GpsUtilScheduler(GpsUtil gpsUtil) {
+        this(gpsUtil, 1000, 100);
+    }
+
+    /**
+     * Crée un ordonnanceur.
+     * @param gpsUtil le service GPS à appeler
+     * @param permitsPerSecond le nombre d'appels par seconde délivrés par cet ordonnanceur ; le budget
+     *                         de GpsUtil reste respecté quelle que soit la valeur
+     * @param workerCount le nombre de threads exécutant les appels ; chaque appel GpsUtil dure
+     *                    jusqu'à 100 ms, il en faut donc assez pour consommer le débit autorisé
+     */
+    public GpsUtilScheduler(GpsUtil gpsUtil, double permitsPerSecond, int workerCount) {
+        this.gpsUtil = gpsUtil;
+        this.permitIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::runWorker, "gps-scheduler-" + (i + 1));
+            workers[i].setDaemon(true);
+        }
+    }
+
+    /**
+     * Demande la position d'un utilisateur dans la file indiquée.
+     * @param userId l'identifiant de l'utilisateur
+     * @param lane la file de priorité
+     * @return un futur complété par la position retournée par GpsUtil
+     */
+    public CompletableFuture<VisitedLocation> getUserLocation(UUID userId, Lane lane) {
+        Request request = new Request(userId, lane);
+        startWorkers();
+        if (stopped) {
+            request.future.completeExceptionally(new CancellationException("GpsUtilScheduler is stopped"));
+            return request.future;
+        }
+        if (lane == Lane.INTERACTIVE) {
+            interactiveDepth.incrementAndGet();
+            interactiveQueue.add(request);
+        } else {
+            backgroundDepth.incrementAndGet();
+            backgroundQueue.add(request);
+        }
+        pending.release();
+        return request.future;
+    }
+
+    /**
+     * Démarre les workers lors de la première demande.
+     */
+    private void startWorkers() {
+        if (started.compareAndSet(false, true)) {
+            for (Thread worker : workers) {
+                worker.start();
+            }
+        }
+    }
+
+    /**
+     * Arrête les workers et annule les demandes encore en attente.
+     */
+    public void shutdown() {
+        stopped = true;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        cancelAll(interactiveQueue);
+        cancelAll(backgroundQueue);
+    }
+
+    /** @return le nombre de demandes interactives en attente */
+    public int getInteractiveQueueDepth() {
+        return interactiveDepth.get();
+    }
+
+    /** @return le nombre de demandes du tracker en attente */
+    public int getBackgroundQueueDepth() {
+        return backgroundDepth.get();
+    }
+
+    /** @return le nombre de demandes interactives servies */
+    public long getInteractiveCompletedCount() {
+        return interactiveCompleted.sum();
+    }
+
+    /** @return le nombre de demandes du tracker servies */
+    public long getBackgroundCompletedCount() {
+        return backgroundCompleted.sum();
+    }
+
+    /**
+     * Boucle d'un worker : attendre une demande, obtenir un permis, puis servir
+     * la demande la plus prioritaire disponible à cet instant.
+     */
+    private void runWorker() {
+        while (!stopped) {
+            try {
+                pending.acquire();
+                awaitPermit();
+            } catch (InterruptedException e) {
+                break;
+            }
+            Request request = nextRequest();
+            if (request == null) {
+                // Files vidées par shutdown()
+                continue;
+            }
+            ExternalCallEvent event = ExternalCallEvent.start(ExternalCallEvent.GPS_UTIL, "getUserLocation");
+            try {
+                VisitedLocation visitedLocation = gpsUtil.getUserLocation(request.userId);
+                if (event != null) {
+                    event.finish(true);
+                }
+                // Compté avant la complétion pour être visible de l'appelant
+                (request.lane == Lane.INTERACTIVE ? interactiveCompleted : backgroundCompleted).increment();
+                request.future.complete(visitedLocation);
+            } catch (RuntimeException e) {
+                if (event != null) {
+                    event.finish(false);
+                }
+                logger.error("GpsUtil call failed for user " + request.userId, e);
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Retire la demande la plus prioritaire encore attendue. Les demandes annulées par leur
+     * appelant sont écartées sans consommer de créneau d'appel.
+     */
+    private Request nextRequest() {
+        while (true) {
+            Request request = interactiveQueue.poll();
+            if (request != null) {
+                interactiveDepth.decrementAndGet();
+            } else {
+                request = backgroundQueue.poll();
+                if (request == null) {
+                    return null;
+                }
+                backgroundDepth.decrementAndGet();
+            }
+            if (!request.future.isDone()) {
+                return request;
+            }
+            // La demande écartée avait libéré un jeton : il est repris pour garder le compte juste
+            pending.tryAcquire();
+        }
+    }
+
+    /**
+     * Réserve le prochain créneau d'appel de l'ordonnanceur, puis celui du budget de GpsUtil, et attend qu'il arrive.
+     */
+    private void awaitPermit() throws InterruptedException {
+        long permitAt;
+        synchronized (this) {
+            permitAt = Math.max(System.nanoTime(), nextPermitNanos);
+            nextPermitNanos = permitAt + permitIntervalNanos;
+        }
+        sleepUntil(reserveGpsUtilPermit(permitAt));
+    }
+
+    /**
+     * Attend un créneau du budget de GpsUtil avant un appel fait hors ordonnanceur,
+     * comme {@link GpsUtil#getAttractions()}, afin qu'il soit décompté du débit de l'ordonnanceur.
+     */
+    public void acquirePermit() {
+        try {
+            sleepUntil(reserveGpsUtilPermit(System.nanoTime()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Réserve le prochain créneau libre du budget de GpsUtil, au plus tôt à {@code notBeforeNanos}.
+     * @return la date du créneau réservé, en nanosecondes
+     */
+    private long reserveGpsUtilPermit(long notBeforeNanos) {
+        synchronized (gpsUtilBudgetLock) {
+            long permitAt = Math.max(notBeforeNanos, gpsUtilNextPermitNanos);
+            gpsUtilNextPermitNanos = permitAt + GPS_UTIL_PERMIT_INTERVAL_NANOS;
+            return permitAt;
+        }
+    }
+
+    private static void sleepUntil(long nanos) throws InterruptedException {
+        long waitNanos = nanos - System.nanoTime();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private void cancelAll(Queue<Request> queue) {
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.future.cancel(false);
+        }
+    }
+
+    /**
+     * Demande de localisation en attente.
+     */
+    private static final class Request {
+        private final UUID userId;
+        private final Lane lane;
+        private final CompletableFuture<VisitedLocation> future = new CompletableFuture<>();
+
+        Request(UUID userId, Lane lane) {
+            this.userId = userId;
+            this.lane = lane;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Génération des utilisateurs internes du mode test.
+ * Les utilisateurs sont générés par blocs en parallèle. Chaque utilisateur tire ses valeurs
+ * d'un {@link SplittableRandom} dérivé de la graine et de son numéro : la population est
+ * identique d'une exécution à l'autre pour une même graine et une même date de départ,
+ * quel que soit l'ordre d'exécution des blocs.
+ * En mode arrière-plan, le constructeur de {@link TourGuideService} n'attend pas la fin de
+ * la génération : l'application répond pendant que la population se remplit.
+ */
+public class InternalUserGenerator {
+
+    /** Graine utilisée par défaut. */
+    public static final long DEFAULT_SEED = 20_240_501L;
+
+    private static final int CHUNK_SIZE = 5_000;
+    private static final int HISTORY_SIZE = 3;
+
+    private final long seed;
+    private final boolean background;
+
+    /**
+     * @param seed la graine de la population
+     * @param background générer la population sans bloquer le démarrage
+     */
+    public InternalUserGenerator(long seed, boolean background) {
+        this.seed = seed;
+        this.background = background;
+    }
+
+    /**
+     * @return un générateur de graine {@link #DEFAULT_SEED}, bloquant
+     */
+    public static InternalUserGenerator defaults() {
+        return new InternalUserGenerator(DEFAULT_SEED, false);
+    }
+
+    /** @return {@code true} si la génération ne bloque pas le démarrage */
+    public boolean isBackground() {
+        return background;
+    }
+
+    /**
+     * Génère les utilisateurs {@code internalUser0} à {@code internalUser<count-1>} par blocs.
+     * @param count le nombre d'utilisateurs
+     * @param executor le pool exécutant les blocs
+     * @param sink reçoit chaque bloc généré ; appelé en parallèle
+     * @return un futur complété par le bilan une fois tous les blocs transmis
+     */
+    public CompletableFuture<Report> generate(int count, Executor executor, Consumer<List<User>> sink) {
+        long startNanos = System.nanoTime();
+        long nowMillis = System.currentTimeMillis();
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int start = 0; start < count; start += CHUNK_SIZE) {
+            int from = start;
+            int to = Math.min(count, start + CHUNK_SIZE);
+            chunks.add(CompletableFuture.runAsync(() -> {
+                List<User> users = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    users.add(generateUser(i, nowMillis));
+                }
+                sink.accept(users);
+            }, executor));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> Report.of(count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+    }
+
+    /**
+     * Génère l'utilisateur d'un numéro donné, avec un historique de 3 positions
+     * dans les 30 jours précédant {@code nowMillis}.
+     * @param index le numéro de l'utilisateur
+     * @param nowMillis la date de référence
+     * @return l'utilisateur
+     */
+    User generateUser(int index, long nowMillis) {
+        SplittableRandom random = new SplittableRandom(mix(seed, index));
+        // Identifiant de version 4 tiré du générateur, sans passer par SecureRandom
+        long mostSignificantBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSignificantBits = (random.nextLong() & ~(0x3L << 62)) | (0x2L << 62);
+        UUID userId = new UUID(mostSignificantBits, leastSignificantBits);
+
+        String userName = "internalUser" + index;
+        User user = new User(userId, userName, "000", userName + "@tourGuide.com");
+        List<VisitedLocation> history = new ArrayList<>(HISTORY_SIZE);
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            Location location = new Location(-85.05112878 + random.nextDouble() * 170.10225756,
+                    -180 + random.nextDouble() * 360);
+            history.add(new VisitedLocation(userId, location,
+                    new Date(nowMillis - TimeUnit.DAYS.toMillis(random.nextInt(30)))));
+        }
+        user.addAllToVisitedLocations(history);
+        return user;
+    }
+
+    /** Dérive une graine indépendante par utilisateur (finaliseur de MurmurHash3). */
+    private static long mix(long seed, long index) {
+        long z = seed ^ (index * 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * Bilan d'une génération.
+     * @param users le nombre d'utilisateurs générés
+     * @param millis la durée, en millisecondes
+     * @param usersPerSecond le débit en utilisateurs par seconde
+     */
+    public record Report(int users, long millis, double usersPerSecond) {
+
+        static Report of(int users, long millis) {
+            return new Report(users, millis, users / (Math.max(1, millis) / 1000.0));
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+import com.openclassrooms.tourguide.helper.GeoUtils;
+
+/**
+ * Planification d'un itinéraire de visite des attractions.
+ * L'ordre de visite part de la position de l'utilisateur : un trajet glouton vers l'attraction
+ * non visitée la plus proche, amélioré par 2-opt (inversion de portions du trajet tant que cela
+ * le raccourcit). Les distances entre attractions sont lues dans la matrice de l'instantané du
+ * catalogue ; seules celles depuis la position de départ sont calculées à la demande.
+ * Le trajet est ensuite réparti sur la durée du séjour, au plus {@code attractionsPerDay} par jour.
+ */
+public class ItineraryPlanner {
+
+    /** Nombre maximal de passes d'amélioration 2-opt. */
+    private static final int MAX_TWO_OPT_PASSES = 50;
+
+    private final AttractionCatalog attractionCatalog;
+    private final int attractionsPerDay;
+
+    /**
+     * @param attractionCatalog le catalogue dont l'instantané fournit attractions et distances
+     * @param attractionsPerDay le nombre maximal d'attractions visitées par jour
+     */
+    public ItineraryPlanner(AttractionCatalog attractionCatalog, int attractionsPerDay) {
+        this.attractionCatalog = attractionCatalog;
+        this.attractionsPerDay = attractionsPerDay;
+    }
+
+    /**
+     * @return le nombre maximal d'attractions visitées par jour
+     */
+    public int getAttractionsPerDay() {
+        return attractionsPerDay;
+    }
+
+    /**
+     * Planifie la visite des attractions les plus proches, autant que le séjour le permet.
+     * @param start la position de départ
+     * @param tripDuration la durée du séjour, en jours
+     * @return l'itinéraire
+     */
+    public Itinerary plan(Location start, int tripDuration) {
+        AttractionCatalog.Snapshot snapshot = attractionCatalog.getSnapshot();
+        int capacity = capacity(tripDuration);
+        List<Attraction> nearest = snapshot.getIndex().findNearest(start, capacity);
+        int[] stops = new int[nearest.size()];
+        for (int i = 0; i < stops.length; i++) {
+            stops[i] = snapshot.getDistanceMatrix().indexOf(nearest.get(i).attractionName);
+        }
+        return plan(snapshot, start, tripDuration, stops);
+    }
+
+    /**
+     * Planifie la visite des attractions choisies par l'utilisateur.
+     * @param start la position de départ
+     * @param tripDuration la durée du séjour, en jours
+     * @param attractionNames les attractions à visiter ; les doublons sont ignorés
+     * @return l'itinéraire
+     * @throws IllegalArgumentException si une attraction est inconnue ou si elles ne tiennent pas dans le séjour
+     */
+    public Itinerary plan(Location start, int tripDuration, List<String> attractionNames) {
+        AttractionCatalog.Snapshot snapshot = attractionCatalog.getSnapshot();
+        LinkedHashSet<String> names = new LinkedHashSet<>(attractionNames);
+        int capacity = capacity(tripDuration);
+        if (names.size() > capacity) {
+            throw new IllegalArgumentException("At most " + capacity + " attractions fit in a "
+                    + tripDuration + "-day trip, got " + names.size());
+        }
+        int[] stops = new int[names.size()];
+        int i = 0;
+        for (String name : names) {
+            int index = snapshot.getDistanceMatrix().indexOf(name);
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown attraction " + name);
+            }
+            stops[i++] = index;
+        }
+        return plan(snapshot, start, tripDuration, stops);
+    }
+
+    private int capacity(int tripDuration) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) Math.max(1, tripDuration) * attractionsPerDay);
+    }
+
+    private Itinerary plan(AttractionCatalog.Snapshot snapshot, Location start, int tripDuration, int[] stops) {
+        AttractionDistanceMatrix matrix = snapshot.getDistanceMatrix();
+        double[] fromStart = new double[matrix.size()];
+        for (int stop : stops) {
+            Attraction attraction = snapshot.getAttractions().get(stop);
+            fromStart[stop] = GeoUtils.distanceInMiles(start.latitude, start.longitude,
+                    attraction.latitude, attraction.longitude);
+        }
+        int[] route = nearestNeighbour(matrix, fromStart, stops);
+        twoOpt(matrix, fromStart, route);
+        return split(snapshot, matrix, fromStart, route, Math.max(1, tripDuration));
+    }
+
+    /**
+     * Trajet glouton : depuis le départ, toujours vers l'attraction restante la plus proche.
+     */
+    private static int[] nearestNeighbour(AttractionDistanceMatrix matrix, double[] fromStart, int[] stops) {
+        int[] route = stops.clone();
+        for (int position = 0; position < route.length; position++) {
+            int best = position;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            for (int candidate = position; candidate < route.length; candidate++) {
+                double distance = position == 0 ? fromStart[route[candidate]]
+                        : matrix.distance(route[position - 1], route[candidate]);
+                if (distance < bestDistance) {
+                    best = candidate;
+                    bestDistance = distance;
+                }
+            }
+            int swap = route[position];
+            route[position] = route[best];
+            route[best] = swap;
+        }
+        return route;
+    }
+
+    /**
+     * Amélioration 2-opt d'un trajet ouvert au départ fixe : la portion {@code [i, j]} est inversée
+     * lorsque cela raccourcit le trajet. La dernière attraction n'ayant pas de successeur, seule
+     * l'arête d'entrée compte quand la portion va jusqu'au bout.
+     */
+    private static void twoOpt(AttractionDistanceMatrix matrix, double[] fromStart, int[] route) {
+        boolean improved = true;
+        for (int pass = 0; improved && pass < MAX_TWO_OPT_PASSES; pass++) {
+            improved = false;
+            for (int i = 0; i < route.length - 1; i++) {
+                for (int j = i + 1; j < route.length; j++) {
+                    double before = edge(matrix, fromStart, route, i - 1, route[i]);
+                    double after = edge(matrix, fromStart, route, i - 1, route[j]);
+                    if (j + 1 < route.length) {
+                        before += matrix.distance(route[j], route[j + 1]);
+                        after += matrix.distance(route[i], route[j + 1]);
+                    }
+                    if (after < before - 1e-9) {
+                        reverse(route, i, j);
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Distance entre l'étape {@code previous} du trajet (-1 pour le départ) et une attraction.
+     */
+    private static double edge(AttractionDistanceMatrix matrix, double[] fromStart, int[] route, int previous, int to) {
+        return previous < 0 ? fromStart[to] : matrix.distance(route[previous], to);
+    }
+
+    private static void reverse(int[] route, int from, int to) {
+        while (from < to) {
+            int swap = route[from];
+            route[from++] = route[to];
+            route[to--] = swap;
+        }
+    }
+
+    /**
+     * Répartit le trajet en journées consécutives aussi égales que possible.
+     */
+    private Itinerary split(AttractionCatalog.Snapshot snapshot, AttractionDistanceMatrix matrix, double[] fromStart,
+                            int[] route, int tripDuration) {
+        int dayCount = Math.min(tripDuration, route.length);
+        List<Day> days = new ArrayList<>(dayCount);
+        double totalMiles = 0;
+        int position = 0;
+        for (int day = 0; day < dayCount; day++) {
+            int dayStops = route.length / dayCount + (day < route.length % dayCount ? 1 : 0);
+            List<Stop> stops = new ArrayList<>(dayStops);
+            double dayMiles = 0;
+            for (int k = 0; k < dayStops; k++, position++) {
+                double miles = edge(matrix, fromStart, route, position - 1, route[position]);
+                stops.add(new Stop(snapshot.getAttractions().get(route[position]), miles));
+                dayMiles += miles;
+            }
+            days.add(new Day(day + 1, stops, dayMiles));
+            totalMiles += dayMiles;
+        }
+        return new Itinerary(tripDuration, totalMiles, days);
+    }
+
+    /**
+     * Itinéraire planifié.
+     * @param tripDuration la durée du séjour, en jours
+     * @param totalMiles la distance totale parcourue depuis le départ, en miles
+     * @param days les journées ayant au moins une visite, dans l'ordre
+     */
+    public record Itinerary(int tripDuration, double totalMiles, List<Day> days) {
+    }
+
+    /**
+     * Journée de visites.
+     * @param day le numéro du jour, à partir de 1
+     * @param stops les attractions visitées, dans l'ordre
+     * @param miles la distance parcourue ce jour-là, en miles
+     */
+    public record Day(int day, List<Stop> stops, double miles) {
+    }
+
+    /**
+     * Étape de l'itinéraire.
+     * @param attraction l'attraction visitée
+     * @param milesFromPrevious la distance depuis l'étape précédente, ou depuis le départ pour la première
+     */
+    public record Stop(Attraction attraction, double milesFromPrevious) {
+    }
+}
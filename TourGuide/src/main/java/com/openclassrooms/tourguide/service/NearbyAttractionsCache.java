@@ -0,0 +1,213 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+import com.openclassrooms.tourguide.helper.GeoUtils;
+
+/**
+ * Cache des candidats de {@code /getNearbyAttractions} indexé par cellule de position.
+ * La position de l'utilisateur est quantifiée sur une grille (0,01 degré par défaut,
+ * soit moins d'un mile) ; la clé comprend aussi les entrées propres à l'utilisateur
+ * qui influencent le résultat : son rayon de proximité et le nombre d'attractions demandé.
+ * Une entrée ne contient pas le résultat d'un utilisateur mais un sur-ensemble valable pour
+ * toute position de la cellule (voir {@link #findCandidates}) : chaque requête le classe
+ * depuis sa position exacte, et obtient le même résultat que sans cache.
+ * Chaque entrée mémorise la version du catalogue et des points de récompense avec
+ * lesquels elle a été calculée ; elle est ignorée dès que l'une de ces versions change.
+ * Le cache est découpé en segments LRU bornés pour limiter la contention.
+ */
+public class NearbyAttractionsCache {
+
+    private static final int SEGMENTS = 16;
+    /** Marge absorbant les erreurs d'arrondi des distances, en miles. */
+    private static final double EPSILON_MILES = 1e-3;
+
+    private final double cellSizeDegrees;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Crée un cache de 100 000 entrées, par cellules de 0,01 degré.
+     */
+    public NearbyAttractionsCache() {
+        this(100_000, 0.01);
+    }
+
+    /**
+     * @param maxEntries le nombre maximal d'entrées conservées
+     * @param cellSizeDegrees la taille d'une cellule de quantification, en degrés
+     */
+    public NearbyAttractionsCache(int maxEntries, double cellSizeDegrees) {
+        this.cellSizeDegrees = cellSizeDegrees;
+        int segmentCapacity = Math.max(1, maxEntries / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * Construit la clé de cache d'une requête.
+     * @param location la position de l'utilisateur
+     * @param proximity le rayon de proximité de l'utilisateur, en miles
+     * @param limit le nombre maximal d'attractions demandé
+     * @return la clé de la cellule
+     */
+    public Key keyFor(Location location, int proximity, int limit) {
+        return new Key((long) Math.floor(location.latitude / cellSizeDegrees),
+                (long) Math.floor(location.longitude / cellSizeDegrees), proximity, limit);
+    }
+
+    /**
+     * Sélectionne les candidats d'une cellule : toutes les attractions qui peuvent figurer dans le
+     * résultat d'une position quelconque de la cellule. Pour une position à au plus {@code h} miles du
+     * centre (la demi-diagonale), la {@code limit}-ième attraction la plus proche est à au plus
+     * {@code d + h}, où {@code d} est la distance de la {@code limit}-ième depuis le centre ; toute
+     * attraction retenue est donc à au plus {@code d + 2h} du centre, et à au plus {@code proximity + h}.
+     * @param index l'index des attractions de l'instantané courant
+     * @param key la clé de la cellule
+     * @return les candidats, triés par distance au centre de la cellule
+     */
+    public List<Attraction> findCandidates(AttractionIndex index, Key key) {
+        if (key.limit() <= 0) {
+            return List.of();
+        }
+        Location center = new Location((key.latitudeCell() + 0.5) * cellSizeDegrees,
+                (key.longitudeCell() + 0.5) * cellSizeDegrees);
+        double halfDiagonal = halfDiagonalMiles(key, center);
+        List<Attraction> nearest = index.findNearest(center, key.limit());
+        double radius = (double) key.proximity() + halfDiagonal;
+        if (nearest.size() == key.limit()) {
+            Attraction last = nearest.get(nearest.size() - 1);
+            double limitDistance = GeoUtils.distanceInMiles(center.latitude, center.longitude,
+                    last.latitude, last.longitude);
+            radius = Math.min(radius, limitDistance + 2 * halfDiagonal);
+        }
+        return index.findWithinRadius(center, radius + EPSILON_MILES, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Distance du centre au coin le plus éloigné de la cellule : en longitude, la cellule est
+     * symétrique, et le coin le plus proche du pôle ou de l'équateur peut être le plus éloigné.
+     */
+    private double halfDiagonalMiles(Key key, Location center) {
+        double south = key.latitudeCell() * cellSizeDegrees;
+        double west = key.longitudeCell() * cellSizeDegrees;
+        return Math.max(
+                GeoUtils.distanceInMiles(center.latitude, center.longitude, south, west),
+                GeoUtils.distanceInMiles(center.latitude, center.longitude, south + cellSizeDegrees, west));
+    }
+
+    /**
+     * Recherche une entrée encore valide pour les versions courantes.
+     * @param key la clé de la cellule
+     * @param catalogVersion la version courante du catalogue
+     * @param rewardPointsVersion la version courante des points de récompense
+     * @return l'entrée, ou {@code null} si absente ou périmée
+     */
+    public Entry get(Key key, long catalogVersion, long rewardPointsVersion) {
+        Entry entry = segmentFor(key).get(key);
+        if (entry != null && entry.catalogVersion == catalogVersion && entry.rewardPointsVersion == rewardPointsVersion) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Enregistre le résultat calculé pour une cellule.
+     * @param key la clé de la cellule
+     * @param entry le résultat
+     */
+    public void put(Key key, Entry entry) {
+        segmentFor(key).put(key, entry);
+    }
+
+    /** @return le nombre de requêtes servies depuis le cache */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /** @return le nombre de requêtes recalculées */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private Segment segmentFor(Key key) {
+        return segments[Math.floorMod(key.hashCode(), SEGMENTS)];
+    }
+
+    /**
+     * Clé d'une cellule de position pour des préférences données.
+     */
+    public record Key(long latitudeCell, long longitudeCell, int proximity, int limit) {
+    }
+
+    /**
+     * Candidats mis en cache : les attractions d'une cellule et leurs points de récompense,
+     * avec les versions des données sources.
+     */
+    public static final class Entry {
+        private final long catalogVersion;
+        private final long rewardPointsVersion;
+        private final List<Attraction> attractions;
+        private final int[] rewardPoints;
+
+        /**
+         * @param catalogVersion la version du catalogue utilisée
+         * @param rewardPointsVersion la version des points de récompense utilisée
+         * @param attractions les candidats de la cellule
+         * @param rewardPoints les points de chaque attraction, dans le même ordre
+         */
+        public Entry(long catalogVersion, long rewardPointsVersion, List<Attraction> attractions, int[] rewardPoints) {
+            this.catalogVersion = catalogVersion;
+            this.rewardPointsVersion = rewardPointsVersion;
+            this.attractions = List.copyOf(attractions);
+            this.rewardPoints = rewardPoints.clone();
+        }
+
+        /** @return les candidats de la cellule */
+        public List<Attraction> getAttractions() {
+            return attractions;
+        }
+
+        /**
+         * @param index la position de l'attraction dans {@link #getAttractions()}
+         * @return ses points de récompense
+         */
+        public int getRewardPoints(int index) {
+            return rewardPoints[index];
+        }
+    }
+
+    /**
+     * Segment LRU borné, protégé par son propre verrou.
+     */
+    private static final class Segment {
+        private final Map<Key, Entry> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized Entry get(Key key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(Key key, Entry entry) {
+            entries.put(key, entry);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.openclassrooms.tourguide.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import rewardCentral.RewardCentral;
+
+import com.openclassrooms.tourguide.diagnostics.ExternalCallEvent;
+
+/**
+ * Client de {@link RewardCentral} destiné à maîtriser la latence de queue.
+ * Chaque appel est borné par un délai (deadline) :
+ *   <li>si la réponse tarde au-delà d'un percentile de la latence observée,
+ *   une requête dupliquée (hedge) est envoyée et la première réponse gagne ;
+ *   <li>si le délai est dépassé, la dernière valeur connue pour l'attraction est retournée.
+ * Sans valeur connue, l'appel attend la première réponse disponible.
+ * La valeur de repli est celle de l'attraction, quel que soit l'utilisateur pour lequel elle a été
+ * obtenue : c'est une approximation à l'échelle de l'attraction, comme le cache des points de
+ * {@link RewardsService}, qui partage déjà les points d'une attraction entre tous les utilisateurs.
+ * Ce cache redemande les points d'une attraction à leur expiration : le repli borne alors la durée
+ * de ces rafraîchissements.
+ * Un seul minuteur est armé à la fois par appel, et il est annulé dès la réponse.
+ * Des compteurs permettent de suivre le nombre de hedges et leur taux de victoire.
+ */
+public class RewardCentralClient {
+
+    /** Nombre minimal d'échantillons avant d'utiliser le percentile observé. */
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    /** Nombre de threads du pool par défaut. */
+    private static final int DEFAULT_THREADS = 64;
+    /** Nombre d'appels en attente dans le pool par défaut, au-delà duquel les appels sont rejetés. */
+    private static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    private final RewardCentral rewardCentral;
+    private final Executor executor;
+    private final Duration defaultDeadline;
+    private final double hedgePercentile;
+    private final LatencyWindow latencies = new LatencyWindow(256);
+    /** Dernière valeur obtenue par attraction, tous utilisateurs confondus. */
+    private final Map<UUID, Integer> lastValues = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder deadlineFallbacks = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Crée un client avec une deadline de 800 ms et un hedge au 90e percentile.
+     * @param rewardCentral le service RewardCentral à appeler
+     */
+    public RewardCentralClient(RewardCentral rewardCentral) {
+        this(rewardCentral, Duration.ofMillis(800), 0.9);
+    }
+
+    /**
+     * Crée un client utilisant un pool de threads dédié aux appels RewardCentral, borné en threads
+     * et en file d'attente : au-delà, les appels sont rejetés et traités comme des échecs.
+     * @param rewardCentral le service RewardCentral à appeler
+     * @param defaultDeadline la deadline appliquée par défaut à chaque appel
+     * @param hedgePercentile le percentile de latence (entre 0 et 1) au-delà duquel un hedge est envoyé
+     */
+    public RewardCentralClient(RewardCentral rewardCentral, Duration defaultDeadline, double hedgePercentile) {
+        this(rewardCentral, defaultExecutor(), defaultDeadline, hedgePercentile);
+    }
+
+    /**
+     * Crée un client entièrement paramétré.
+     * @param rewardCentral le service RewardCentral à appeler
+     * @param executor l'exécuteur des appels bloquants vers RewardCentral
+     * @param defaultDeadline la deadline appliquée par défaut à chaque appel
+     * @param hedgePercentile le percentile de latence (entre 0 et 1) au-delà duquel un hedge est envoyé
+     */
+    public RewardCentralClient(RewardCentral rewardCentral, Executor executor,
+                               Duration defaultDeadline, double hedgePercentile) {
+        this.rewardCentral = rewardCentral;
+        this.executor = executor;
+        this.defaultDeadline = defaultDeadline;
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * Récupère les points d'une attraction avec la deadline par défaut.
+     * @param attractionId l'identifiant de l'attraction
+     * @param userId l'identifiant de l'utilisateur
+     * @return le nombre de points de récompense
+     */
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        return getAttractionRewardPointsAsync(attractionId, userId, defaultDeadline).join();
+    }
+
+    /**
+     * Récupère de manière asynchrone les points d'une attraction.
+     * @param attractionId l'identifiant de l'attraction
+     * @param userId l'identifiant de l'utilisateur
+     * @param deadline délai au-delà duquel la dernière valeur connue est retournée
+     * @return un futur complété par la première réponse, ou par la valeur de repli
+     */
+    public CompletableFuture<Integer> getAttractionRewardPointsAsync(UUID attractionId, UUID userId, Duration deadline) {
+        calls.increment();
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        call(attractionId, userId, result, false);
+
+        long deadlineNanos = deadline.toNanos();
+        long hedgeDelayNanos = hedgeDelayNanos(deadlineNanos);
+        if (hedgeDelayNanos < deadlineNanos) {
+            // La deadline n'est armée qu'une fois le hedge envoyé, pour le temps restant
+            onTimeout(result, hedgeDelayNanos, () -> {
+                hedges.increment();
+                call(attractionId, userId, result, true);
+                onTimeout(result, deadlineNanos - hedgeDelayNanos, () -> fallBack(attractionId, result));
+            });
+        } else {
+            onTimeout(result, deadlineNanos, () -> fallBack(attractionId, result));
+        }
+        return result;
+    }
+
+    /**
+     * Exécute {@code action} sur le pool si {@code result} n'est pas complété dans le délai.
+     * Le minuteur de {@code completeOnTimeout} est annulé dès que {@code result} est complété.
+     */
+    private void onTimeout(CompletableFuture<Integer> result, long delayNanos, Runnable action) {
+        result.thenApply(points -> Boolean.FALSE)
+                .completeOnTimeout(Boolean.TRUE, delayNanos, TimeUnit.NANOSECONDS)
+                .thenAccept(expired -> {
+                    if (expired && !result.isDone()) {
+                        try {
+                            executor.execute(action);
+                        } catch (RejectedExecutionException e) {
+                            // Pool saturé : l'action ne fait que planifier ou compléter, elle peut s'exécuter ici
+                            action.run();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Complète l'appel avec la dernière valeur connue pour l'attraction, s'il y en a une.
+     */
+    private void fallBack(UUID attractionId, CompletableFuture<Integer> result) {
+        Integer fallback = lastValues.get(attractionId);
+        // Le compteur est incrémenté avant la complétion pour être visible de l'appelant
+        if (fallback != null && !result.isDone()) {
+            deadlineFallbacks.increment();
+            if (!result.complete(fallback)) {
+                deadlineFallbacks.decrement();
+            }
+        }
+    }
+
+    private void call(UUID attractionId, UUID userId, CompletableFuture<Integer> result, boolean hedge) {
+        try {
+            executor.execute(() -> invoke(attractionId, userId, result, hedge));
+        } catch (RejectedExecutionException e) {
+            fail(attractionId, result, e);
+        }
+    }
+
+    private void invoke(UUID attractionId, UUID userId, CompletableFuture<Integer> result, boolean hedge) {
+        if (result.isDone()) {
+            return;
+        }
+        long start = System.nanoTime();
+        ExternalCallEvent event = ExternalCallEvent.start(ExternalCallEvent.REWARD_CENTRAL, "getAttractionRewardPoints");
+        if (event != null) {
+            event.hedge = hedge;
+        }
+        try {
+            int points = rewardCentral.getAttractionRewardPoints(attractionId, userId);
+            if (event != null) {
+                event.finish(true);
+            }
+            latencies.record(System.nanoTime() - start);
+            lastValues.put(attractionId, points);
+            if (hedge) {
+                hedgeWins.increment();
+            }
+            if (!result.complete(points) && hedge) {
+                hedgeWins.decrement();
+            }
+        } catch (RuntimeException e) {
+            if (event != null) {
+                event.finish(false);
+            }
+            fail(attractionId, result, e);
+        }
+    }
+
+    /**
+     * Termine un appel en échec avec la dernière valeur connue, ou en erreur à défaut.
+     */
+    private void fail(UUID attractionId, CompletableFuture<Integer> result, RuntimeException e) {
+        failures.increment();
+        Integer fallback = lastValues.get(attractionId);
+        if (fallback != null) {
+            result.complete(fallback);
+        } else {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Délai avant l'envoi d'un hedge : le percentile configuré de la latence observée,
+     * ou la moitié de la deadline tant que les échantillons sont insuffisants.
+     */
+    private long hedgeDelayNanos(long deadlineNanos) {
+        long percentile = latencies.percentile(hedgePercentile, MIN_LATENCY_SAMPLES);
+        return percentile < 0 ? deadlineNanos / 2 : percentile;
+    }
+
+    /** @return la deadline appliquée par défaut à chaque appel */
+    public Duration getDefaultDeadline() {
+        return defaultDeadline;
+    }
+
+    /** @return le nombre total d'appels demandés */
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /** @return le nombre de requêtes dupliquées envoyées */
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    /** @return le nombre de requêtes dupliquées ayant répondu les premières */
+    public long getHedgeWinCount() {
+        return hedgeWins.sum();
+    }
+
+    /** @return le nombre d'appels terminés par la valeur de repli après la deadline */
+    public long getDeadlineFallbackCount() {
+        return deadlineFallbacks.sum();
+    }
+
+    /** @return le nombre d'appels en erreur ou rejetés par le pool */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    private static Executor defaultExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(DEFAULT_QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "reward-central-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Fenêtre glissante des dernières latences observées, en nanosecondes.
+     * Le percentile n'est recalculé (copie et tri de la fenêtre) que toutes les
+     * {@value #RECOMPUTE_EVERY} mesures ; entre-temps, l'estimation précédente est lue sans verrou.
+     */
+    private static final class LatencyWindow {
+        private static final int RECOMPUTE_EVERY = 32;
+
+        private final long[] samples;
+        private int count;
+        private int next;
+        private volatile long recorded;
+        private volatile Estimate estimate;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            recorded++;
+        }
+
+        /**
+         * @return le percentile demandé, ou -1 si moins de {@code minSamples} échantillons
+         */
+        long percentile(double percentile, int minSamples) {
+            Estimate current = estimate;
+            if (current != null && current.percentile() == percentile
+                    && recorded - current.recorded() < RECOMPUTE_EVERY) {
+                return current.nanos();
+            }
+            return recompute(percentile, minSamples);
+        }
+
+        private synchronized long recompute(double percentile, int minSamples) {
+            if (count < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile * count) - 1;
+            long nanos = sorted[Math.max(0, Math.min(rank, count - 1))];
+            estimate = new Estimate(percentile, nanos, recorded);
+            return nanos;
+        }
+
+        /**
+         * Percentile calculé après {@code recorded} mesures.
+         */
+        private record Estimate(double percentile, long nanos, long recorded) {
+        }
+    }
+}
@@ -1,16 +1,19 @@
 package com.openclassrooms.tourguide.service;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
-
-import org.springframework.stereotype.Service;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.diagnostics.RewardEvaluationEvent;
+import com.openclassrooms.tourguide.helper.GeoUtils;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 
@@ -21,32 +24,83 @@ import com.openclassrooms.tourguide.user.UserReward;
  * attribue des points de récompense via l'API RewardCentral.
 
  * Il contient des optimisations telles que :
- * Un cache pour les points des attractions afin de réduire les appels coûteux.
+ * Un catalogue d'attractions partagé, lu sans appel à GpsUtil.
+ * Un cache pour les points des attractions afin de réduire les appels coûteux ; chaque valeur a une durée
+ * de vie, au-delà de laquelle RewardCentral est rappelé, avec repli sur la dernière valeur à la deadline.
  * Le traitement parallèle pour le calcul des récompenses sur plusieurs attractions.
  */
-@Service
 public class RewardsService {
-    private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
-
     private int defaultProximityBuffer = 10;
     private int proximityBuffer = defaultProximityBuffer;
     private int attractionProximityRange = 200;
 
-    private final GpsUtil gpsUtil;
-    private final RewardCentral rewardsCentral;
-    private final List<Attraction> attractions;
-    private final Map<UUID, Integer> rewardCache = new ConcurrentHashMap<>();
+    private final AttractionCatalog attractionCatalog;
+    private final RewardCentralClient rewardCentralClient;
+    /** Durée de vie par défaut des points en cache. */
+    public static final Duration DEFAULT_POINTS_TTL = Duration.ofMinutes(10);
+
+    private final Map<UUID, CachedPoints> rewardCache = new ConcurrentHashMap<>();
+    private final long pointsTtlNanos;
+    /** Appels RewardCentral en cours, par attraction, partagés entre les demandeurs simultanés. */
+    private final Map<UUID, CompletableFuture<Integer>> pendingRewardPoints = new ConcurrentHashMap<>();
+    private final AtomicLong rewardPointsVersion = new AtomicLong();
 
     /**
      * Constructeur du service de récompenses
+     * Un catalogue d'attractions et un client RewardCentral propres au service
+     * sont créés à partir des paramètres.
      * @param gpsUtil Service pour récupérer les données GPS.
      * @param rewardCentral Service centralisé pour obtenir les points de récompense.
      */
     public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
-        this.gpsUtil = gpsUtil;
-        this.rewardsCentral = rewardCentral;
-        // Cache permanent des attractions pour éviter de les recalculer
-        this.attractions = gpsUtil.getAttractions();
+        this(new AttractionCatalog(gpsUtil), new RewardCentralClient(rewardCentral));
+    }
+
+    /**
+     * Constructeur du service de récompenses à partir de composants partagés,
+     * les points restant en cache {@link #DEFAULT_POINTS_TTL}
+     * @param attractionCatalog Catalogue des attractions.
+     * @param rewardCentralClient Client RewardCentral borné par deadline.
+     */
+    public RewardsService(AttractionCatalog attractionCatalog, RewardCentralClient rewardCentralClient) {
+        this(attractionCatalog, rewardCentralClient, DEFAULT_POINTS_TTL);
+    }
+
+    /**
+     * Constructeur du service de récompenses à partir de composants partagés
+     * @param attractionCatalog Catalogue des attractions.
+     * @param rewardCentralClient Client RewardCentral borné par deadline.
+     * @param pointsTtl Durée de vie des points en cache ; une valeur expirée est redemandée à RewardCentral.
+     */
+    public RewardsService(AttractionCatalog attractionCatalog, RewardCentralClient rewardCentralClient,
+                          Duration pointsTtl) {
+        this.attractionCatalog = attractionCatalog;
+        this.rewardCentralClient = rewardCentralClient;
+        this.pointsTtlNanos = pointsTtl.toNanos();
+    }
+
+    /**
+     * Retourne le client RewardCentral utilisé par le service.
+     * @return le client RewardCentral
+     */
+    public RewardCentralClient getRewardCentralClient() {
+        return rewardCentralClient;
+    }
+
+    /**
+     * Retourne le catalogue d'attractions utilisé par le service.
+     * @return le catalogue des attractions
+     */
+    public AttractionCatalog getAttractionCatalog() {
+        return attractionCatalog;
+    }
+
+    /**
+     * Retourne l'index spatial de l'instantané courant du catalogue d'attractions.
+     * @return l'index des attractions
+     */
+    public AttractionIndex getAttractionIndex() {
+        return attractionCatalog.getSnapshot().getIndex();
     }
 
     /**
@@ -70,27 +124,87 @@ public class RewardsService {
      * Pour chaque position visitée par l'utilisateur, ce service vérifie si elle se situe à
      * proximité d'une attraction et attribue des points si aucune récompense n'a déjà été accordée
      * @param user L'utilisateur pour lequel calculer les récompenses.
+     * @return Les récompenses effectivement attribuées par cet appel.
      */
-    public void calculateRewards(User user) {
+    public List<UserReward> calculateRewards(User user) {
+        return calculateRewardsAsync(user).join();
+    }
+
+    /**
+     * Calcule les récompenses d'un utilisateur sans attendre RewardCentral.
+     * L'évaluation de la proximité se fait dans le thread appelant ; les points manquants sont
+     * demandés en parallèle sur le pool d'entrée-sortie du client RewardCentral, et chaque
+     * récompense est attribuée dès que ses points sont connus.
+     * Aucun verrou n'est pris : si plusieurs calculs concurrents visent la même attraction,
+     * {@link User#addUserReward(UserReward)} n'en retient qu'un.
+     * @param user L'utilisateur pour lequel calculer les récompenses.
+     * @return Un futur complété par les récompenses effectivement attribuées par cet appel.
+     */
+    public CompletableFuture<List<UserReward>> calculateRewardsAsync(User user) {
+        RewardEvaluationEvent event = RewardEvaluationEvent.isTypeEnabled() ? new RewardEvaluationEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        int evaluated = 0;
         List<VisitedLocation> userLocations = user.getVisitedLocations();
+        // Un seul instantané du catalogue pour toute l'évaluation
+        AttractionIndex index = getAttractionIndex();
+        // Tampon des attractions à portée, réutilisé pour chaque position : l'évaluation n'alloue
+        // rien par couple position/attraction, seules les attributions le font
+        int[] candidates = new int[index.size()];
 
-        // Ensemble des attractions déjà récompensées pour l'utilisateur
-        Set<String> rewardedAttractions = user.getUserRewards().stream()
-                .map(r -> r.attraction.attractionName)
-                .collect(Collectors.toSet());
-
-        for (VisitedLocation visitedLocation : userLocations) {
-            attractions.parallelStream().forEach(attraction -> {
-                if (!rewardedAttractions.contains(attraction.attractionName) &&
-                        nearAttraction(visitedLocation, attraction)) {
-                    int points = getRewardPoints(attraction, user);
-                    synchronized (user) {
-                        user.addUserReward(new UserReward(visitedLocation, attraction, points));
-                        rewardedAttractions.add(attraction.attractionName);
-                    }
+        // Attractions dont l'attribution est déjà lancée par cet appel
+        Set<String> pendingAttractions = null;
+        List<CompletableFuture<UserReward>> grants = null;
+        for (int l = 0; l < userLocations.size(); l++) {
+            VisitedLocation visitedLocation = userLocations.get(l);
+            // Seules les attractions des cellules proches de la position sont évaluées
+            int count = index.collectWithinRadius(visitedLocation.location, proximityBuffer, candidates);
+            evaluated += count;
+            for (int c = 0; c < count; c++) {
+                Attraction attraction = index.getAttraction(candidates[c]);
+                if (user.hasUserReward(attraction.attractionName)) {
+                    continue;
                 }
-            });
+                if (pendingAttractions == null) {
+                    pendingAttractions = new HashSet<>();
+                    grants = new ArrayList<>();
+                }
+                if (pendingAttractions.add(attraction.attractionName)) {
+                    grants.add(grant(user, visitedLocation, attraction));
+                }
+            }
+        }
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.userName = user.getUserName();
+                event.locations = userLocations.size();
+                event.candidates = evaluated;
+                event.grants = grants == null ? 0 : grants.size();
+                event.commit();
+            }
+        }
+        if (grants == null) {
+            return CompletableFuture.completedFuture(List.of());
         }
+        List<CompletableFuture<UserReward>> granted = grants;
+        return CompletableFuture.allOf(granted.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> granted.stream()
+                        .map(CompletableFuture::join)
+                        .filter(Objects::nonNull)
+                        .toList());
+    }
+
+    /**
+     * Attribue une récompense dès que les points de l'attraction sont connus.
+     * @return Un futur complété par la récompense, ou par {@code null} si un appel concurrent l'a attribuée avant
+     */
+    private CompletableFuture<UserReward> grant(User user, VisitedLocation visitedLocation, Attraction attraction) {
+        return getRewardPointsAsync(attraction, user.getUserId()).thenApply(points -> {
+            UserReward userReward = new UserReward(visitedLocation, attraction, points);
+            return user.addUserReward(userReward) ? userReward : null;
+        });
     }
 
     /**
@@ -104,28 +218,89 @@ public class RewardsService {
     }
 
     /**
-     * Vérifie si une position visitée est proche d'une attraction.
-     * @param visitedLocation Localisation visitée par l'utilisateur
-     * @param attraction Attraction à vérifier
-     * @return {@code true} si la distance est inférieure ou égale au buffer défini
+     * Retourne les attractions dont le buffer de proximité contient la position.
+     * @param location La position
+     * @return les attractions à portée, de la plus proche à la plus éloignée
      */
-    private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-        if (proximityBuffer == Integer.MAX_VALUE) {
-            return true;
-        }
-        return getDistance(attraction, visitedLocation.location) <= proximityBuffer;
+    public List<Attraction> getAttractionsInProximity(Location location) {
+        return getAttractionIndex().findWithinRadius(location, proximityBuffer, Integer.MAX_VALUE);
     }
 
     /**
-     * Récupère les points de récompense pour une attraction donnée
-     * Utilise un cache pour éviter les appels multiples au service externe RewardCentral
+     * Vérifie si une position se trouve dans le buffer de proximité d'au moins une attraction,
+     * c'est-à-dire si elle peut donner lieu à une récompense.
+     * @param location La position à vérifier
+     * @return {@code true} si une attraction est à portée
+     */
+    public boolean isNearAnyAttraction(Location location) {
+        return getAttractionIndex().anyWithinRadius(location, proximityBuffer);
+    }
+
+    /**
+     * Récupère de manière asynchrone les points de récompense d'une attraction, depuis le cache
+     * ou via le client RewardCentral en cas d'absence ou d'expiration.
+     * Les demandes simultanées pour une même attraction partagent un seul appel ; lors d'un
+     * rafraîchissement, le client se replie à la deadline sur la dernière valeur obtenue.
      * @param attraction L'attraction ciblée
-     * @param user L'utilisateur concerné
-     * @return Le nombre de points de récompense attribués
+     * @param userId L'identifiant de l'utilisateur concerné
+     * @return Un futur complété par le nombre de points
      */
-    private int getRewardPoints(Attraction attraction, User user) {
-        return rewardCache.computeIfAbsent(attraction.attractionId,
-                id -> rewardsCentral.getAttractionRewardPoints(id, user.getUserId()));
+    public CompletableFuture<Integer> getRewardPointsAsync(Attraction attraction, UUID userId) {
+        CachedPoints cached = rewardCache.get(attraction.attractionId);
+        if (cached != null && System.nanoTime() - cached.fetchedAtNanos() < pointsTtlNanos) {
+            return CompletableFuture.completedFuture(cached.points());
+        }
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+        CompletableFuture<Integer> inFlight = pendingRewardPoints.putIfAbsent(attraction.attractionId, pending);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        rewardCentralClient
+                .getAttractionRewardPointsAsync(attraction.attractionId, userId, rewardCentralClient.getDefaultDeadline())
+                .thenApply(points -> {
+                    CachedPoints previous = rewardCache.put(attraction.attractionId,
+                            new CachedPoints(points, System.nanoTime()));
+                    if (previous == null || previous.points() != points) {
+                        rewardPointsVersion.incrementAndGet();
+                    }
+                    return points;
+                })
+                .whenComplete((points, error) -> {
+                    // Retiré avant d'être complété : un nouveau demandeur trouve alors la valeur en cache
+                    pendingRewardPoints.remove(attraction.attractionId, pending);
+                    if (error != null) {
+                        pending.completeExceptionally(error);
+                    } else {
+                        pending.complete(points);
+                    }
+                });
+        return pending;
+    }
+
+    /**
+     * Retourne la version des données de points de récompense, incrémentée à chaque valeur en cache nouvelle ou modifiée.
+     * Permet aux caches dérivés de détecter qu'ils sont périmés.
+     * @return la version courante
+     */
+    public long getRewardPointsVersion() {
+        return rewardPointsVersion.get();
+    }
+
+    /**
+     * Précharge en parallèle le cache des points de récompense pour toutes les attractions du catalogue.
+     * @param executor l'exécuteur borné sur lequel les appels à RewardCentral sont lancés
+     * @return le nombre d'attractions dont les points sont en cache
+     */
+    public int prefetchRewardPoints(Executor executor) {
+        // Le cache est indépendant de l'utilisateur : un identifiant quelconque suffit
+        UUID warmUpUserId = UUID.randomUUID();
+        List<Attraction> catalog = attractionCatalog.getSnapshot().getAttractions();
+        CompletableFuture<?>[] prefetches = catalog.stream()
+                .map(attraction -> CompletableFuture.runAsync(
+                        () -> getRewardPointsAsync(attraction, warmUpUserId).join(), executor))
+                .toArray(CompletableFuture<?>[]::new);
+        CompletableFuture.allOf(prefetches).join();
+        return catalog.size();
     }
 
     /**
@@ -135,15 +310,14 @@ public class RewardsService {
      * @return La distance en miles.
      */
     public double getDistance(Location loc1, Location loc2) {
-        double lat1 = Math.toRadians(loc1.latitude);
-        double lon1 = Math.toRadians(loc1.longitude);
-        double lat2 = Math.toRadians(loc2.latitude);
-        double lon2 = Math.toRadians(loc2.longitude);
-
-        double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2)
-                + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
+        return GeoUtils.distanceInMiles(loc1.latitude, loc1.longitude, loc2.latitude, loc2.longitude);
+    }
 
-        double nauticalMiles = 60 * Math.toDegrees(angle);
-        return STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
+    /**
+     * Points d'une attraction en cache.
+     * @param points les points
+     * @param fetchedAtNanos l'instant de leur obtention, selon {@link System#nanoTime()}
+     */
+    private record CachedPoints(int points, long fetchedAtNanos) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,117 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pools de threads dédiés à chaque étage du traitement, à la place du pool commun.
+ * <ul>
+ *   <li>{@code io} : appels bloquants aux services externes (RewardCentral). File bornée : une fois pleine,
+ *   la tâche est rejetée sans bloquer le déposant, qui peut être une minuterie (hedges, deadlines) ;
+ *   {@link RewardCentralClient} traite un appel rejeté comme un échec et se replie sur la dernière valeur connue.</li>
+ *   <li>{@code cpu} : enregistrement des positions et évaluation de la proximité des attractions.
+ *   File bornée : une fois pleine, la tâche s'exécute dans le thread appelant, ce qui ralentit
+ *   le producteur au lieu d'accumuler du travail.</li>
+ *   <li>{@code tracker} : la boucle du tracker, un seul thread ; sa file ne reçoit que les boucles en attente.</li>
+ * </ul>
+ * La profondeur de chaque file et le nombre de tâches rejetées sont exposés pour suivre la contre-pression.
+ */
+public class TourGuideExecutors {
+
+    private final ThreadPoolExecutor io;
+    private final ThreadPoolExecutor cpu;
+    private final ThreadPoolExecutor tracker;
+    private final LongAdder rejected = new LongAdder();
+
+    /** Nombre de boucles de tracker pouvant attendre le thread du pool. */
+    private static final int TRACKER_QUEUE_CAPACITY = 16;
+
+    /**
+     * Crée des pools de 64 threads d'entrée-sortie et d'un thread de calcul par cœur, avec des files de 10 000 tâches.
+     */
+    public TourGuideExecutors() {
+        this(64, 10_000, Runtime.getRuntime().availableProcessors(), 10_000);
+    }
+
+    /**
+     * @param ioThreads le nombre de threads pour les appels aux services externes
+     * @param ioQueueCapacity la taille de la file du pool d'entrée-sortie, au-delà de laquelle les tâches sont rejetées
+     * @param cpuThreads le nombre de threads de calcul
+     * @param cpuQueueCapacity la taille de la file du pool de calcul
+     */
+    public TourGuideExecutors(int ioThreads, int ioQueueCapacity, int cpuThreads, int cpuQueueCapacity) {
+        this.io = new ThreadPoolExecutor(ioThreads, ioThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(ioQueueCapacity), daemonThreads("tourguide-io-"), this::reject);
+        this.io.allowCoreThreadTimeOut(true);
+        this.cpu = new ThreadPoolExecutor(cpuThreads, cpuThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(cpuQueueCapacity), daemonThreads("tourguide-cpu-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.cpu.allowCoreThreadTimeOut(true);
+        this.tracker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(TRACKER_QUEUE_CAPACITY), daemonThreads("tourguide-tracker-"), this::reject);
+    }
+
+    /** @return le pool des appels bloquants aux services externes */
+    public ExecutorService io() {
+        return io;
+    }
+
+    /** @return le pool de calcul */
+    public ExecutorService cpu() {
+        return cpu;
+    }
+
+    /** @return le pool exécutant la boucle du tracker */
+    public ExecutorService tracker() {
+        return tracker;
+    }
+
+    /** @return le nombre de tâches en attente dans la file du pool d'entrée-sortie */
+    public int getIoQueueDepth() {
+        return io.getQueue().size();
+    }
+
+    /** @return le nombre de tâches en attente dans la file du pool de calcul */
+    public int getCpuQueueDepth() {
+        return cpu.getQueue().size();
+    }
+
+    /** @return le nombre de boucles en attente dans la file du pool du tracker */
+    public int getTrackerQueueDepth() {
+        return tracker.getQueue().size();
+    }
+
+    /** @return le nombre de tâches rejetées par les pools d'entrée-sortie et du tracker, files pleines */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Arrête les trois pools.
+     */
+    public void shutdown() {
+        tracker.shutdownNow();
+        cpu.shutdown();
+        io.shutdown();
+    }
+
+    private void reject(Runnable task, ThreadPoolExecutor executor) {
+        rejected.increment();
+        throw new RejectedExecutionException("Queue full (" + executor.getQueue().size() + " tasks) or pool shut down");
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,18 +1,27 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.NearbyAttractionDTO;
+import com.openclassrooms.tourguide.cluster.ClusterMembership;
+import com.openclassrooms.tourguide.diagnostics.ExternalCallEvent;
+import com.openclassrooms.tourguide.diagnostics.UserTrackingEvent;
+import com.openclassrooms.tourguide.helper.BoundingBox;
+import com.openclassrooms.tourguide.helper.GeoUtils;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
 import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.user.LocationHistory;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
@@ -20,7 +29,6 @@ import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 
-import rewardCentral.RewardCentral;
 import tripPricer.Provider;
 import tripPricer.TripPricer;
 
@@ -30,38 +38,83 @@ import tripPricer.TripPricer;
  * et de la génération d'offres de voyages personnalisées
  */
 @Service
-public class TourGuideService {
+public class TourGuideService implements AutoCloseable {
     private Logger logger = LoggerFactory.getLogger(TourGuideService.class);
 
-    private final GpsUtil gpsUtil;
+    private final GpsUtilScheduler gpsUtilScheduler;
     private final RewardsService rewardsService;
+    private final ClusterMembership clusterMembership;
+    private final UserUpdatePublisher userUpdatePublisher;
+    private final TrajectoryCompressor trajectoryCompressor;
+    private final VisitAggregates visitAggregates;
+    private final TourGuideExecutors executors;
+    /** Cache par cellule de 0,01 degré, borné à 100 000 entrées. */
+    private final NearbyAttractionsCache nearbyAttractionsCache;
     private final TripPricer tripPricer = new TripPricer();
-    private final RewardCentral rewardCentral = new RewardCentral();
 
     public final Tracker tracker;
     boolean testMode = true;
+    /** Vrai si l'ordonnanceur, les pools et le diffuseur ont été créés par ce service, qui doit alors les arrêter. */
+    private boolean ownsComponents = false;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final Thread shutdownHook = new Thread(this::close, "tourguide-shutdown");
+    private CompletableFuture<InternalUserGenerator.Report> internalUsersGeneration =
+            CompletableFuture.completedFuture(InternalUserGenerator.Report.of(0, 0));
 
     private static final String tripPricerApiKey = "test-server-api-key";
-    private final Map<String, User> internalUserMap = new HashMap<>();
+    private final Map<String, User> internalUserMap = new ConcurrentHashMap<>();
 
     /**
      * Constructeur du service TourGuide.
+     * Un ordonnanceur GpsUtil, des pools de threads et un diffuseur propres au service sont créés ;
+     * {@link #close()} les arrête.
      * @param gpsUtil Service de localisation GPS.
      * @param rewardsService Service de calcul des récompenses.
      */
     public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
-        this.gpsUtil = gpsUtil;
+        this(new GpsUtilScheduler(gpsUtil), rewardsService, ClusterMembership.standalone(), new UserUpdatePublisher(),
+                new TourGuideExecutors(), Tracker.Settings.DEFAULT, TrajectoryCompressor.disabled(rewardsService),
+                new VisitAggregates(), new NearbyAttractionsCache(), InternalUserGenerator.defaults());
+        ownsComponents = true;
+    }
+
+    /**
+     * Constructeur du service TourGuide à partir de composants partagés.
+     * @param gpsUtilScheduler Ordonnanceur des appels de localisation GPS.
+     * @param rewardsService Service de calcul des récompenses.
+     * @param clusterMembership Composition du cluster, qui détermine les utilisateurs suivis par ce nœud.
+     * @param userUpdatePublisher Diffuseur des nouvelles positions et récompenses aux abonnés.
+     * @param executors Pools de threads du calcul et de la boucle du tracker.
+     * @param trackerSettings Période, échéance et traitement des retards du tracker.
+     * @param trajectoryCompressor Compression de l'historique des positions.
+     * @param visitAggregates Agrégats de fréquentation tenus à jour au fil du suivi.
+     * @param nearbyAttractionsCache Cache des attractions proches par cellule de position.
+     * @param internalUserGenerator Génération des utilisateurs internes du mode test.
+     */
+    @Autowired
+    public TourGuideService(GpsUtilScheduler gpsUtilScheduler, RewardsService rewardsService,
+                            ClusterMembership clusterMembership, UserUpdatePublisher userUpdatePublisher,
+                            TourGuideExecutors executors, Tracker.Settings trackerSettings,
+                            TrajectoryCompressor trajectoryCompressor, VisitAggregates visitAggregates,
+                            NearbyAttractionsCache nearbyAttractionsCache, InternalUserGenerator internalUserGenerator) {
+        this.gpsUtilScheduler = gpsUtilScheduler;
         this.rewardsService = rewardsService;
+        this.clusterMembership = clusterMembership;
+        this.userUpdatePublisher = userUpdatePublisher;
+        this.executors = executors;
+        this.trajectoryCompressor = trajectoryCompressor;
+        this.visitAggregates = visitAggregates;
+        this.nearbyAttractionsCache = nearbyAttractionsCache;
+        clusterMembership.addMembershipListener(change ->
+                logger.info("Partition rebalanced: tracking {} of {} users", getTrackedUsers().size(), internalUserMap.size()));
 
         Locale.setDefault(Locale.US);
 
         if (testMode) {
             logger.info("TestMode enabled");
-            logger.debug("Initializing users");
-            initializeInternalUsers();
-            logger.debug("Finished initializing users");
+            initializeInternalUsers(internalUserGenerator);
         }
-        tracker = new Tracker(this);
+        tracker = new Tracker(this, executors.tracker(), trackerSettings);
         addShutDownHook();
     }
 
@@ -69,11 +122,11 @@ public class TourGuideService {
 
     /**
      * Récupère la liste des récompenses obtenues par un utilisateur
+     * Lecture seule : les récompenses sont calculées par le suivi, seul à les modifier.
      * @param user L'utilisateur cible
      * @return La liste des {@link UserReward} de l'utilisateur
      */
     public List<UserReward> getUserRewards(User user) {
-        rewardsService.calculateRewards(user);
         return user.getUserRewards();
     }
 
@@ -88,6 +141,65 @@ public class TourGuideService {
                 user.getLastVisitedLocation() : trackUserLocation(user);
     }
 
+    /**
+     * Récupère les positions d'un utilisateur sur une période, page par page
+     * La recherche se fait par dichotomie dans l'historique trié, sans parcourir ni copier les autres positions.
+     * @param user L'utilisateur cible
+     * @param from Début de la période, inclus
+     * @param skip Nombre de positions datées de {@code from} déjà lues
+     * @param to Fin de la période, exclue
+     * @param limit Nombre maximal de positions de la page
+     * @return La page commençant au curseur ({@code from}, {@code skip})
+     */
+    public LocationHistory.Page getLocationHistory(User user, Instant from, int skip, Instant to, int limit) {
+        return user.getLocationHistory().find(from.toEpochMilli(), skip, to.toEpochMilli(), limit);
+    }
+
+    /**
+     * Récupère de manière asynchrone la dernière position connue d'un utilisateur
+     * Si aucune position n'est enregistrée, une nouvelle localisation est demandée via la file interactive.
+     * @param user L'utilisateur dont la position est demandée
+     * @return Un futur complété par la dernière localisation visitée
+     */
+    public CompletableFuture<VisitedLocation> getUserLocationAsync(User user) {
+        List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+        if (!visitedLocations.isEmpty()) {
+            return CompletableFuture.completedFuture(visitedLocations.get(visitedLocations.size() - 1));
+        }
+        return gpsUtilScheduler.getUserLocation(user.getUserId(), GpsUtilScheduler.Lane.INTERACTIVE)
+                .thenComposeAsync(visitedLocation -> recordUserLocation(user, visitedLocation), executors.cpu());
+    }
+
+    /**
+     * Récupère la dernière position de plusieurs utilisateurs ; les positions manquantes sont demandées simultanément.
+     * @param users Les utilisateurs concernés
+     * @return La dernière localisation de chaque utilisateur, dans l'ordre de la liste
+     */
+    public Map<User, VisitedLocation> getUserLocations(List<User> users) {
+        Map<User, CompletableFuture<VisitedLocation>> futures = new LinkedHashMap<>();
+        for (User user : users) {
+            futures.put(user, getUserLocationAsync(user));
+        }
+        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+
+        Map<User, VisitedLocation> locations = new LinkedHashMap<>();
+        futures.forEach((user, future) -> locations.put(user, future.join()));
+        return locations;
+    }
+
+    /**
+     * Récupère les récompenses de plusieurs utilisateurs, telles que calculées par le suivi.
+     * @param users Les utilisateurs concernés
+     * @return Les récompenses de chaque utilisateur, dans l'ordre de la liste
+     */
+    public Map<User, List<UserReward>> getUserRewards(List<User> users) {
+        Map<User, List<UserReward>> rewards = new LinkedHashMap<>();
+        for (User user : users) {
+            rewards.put(user, user.getUserRewards());
+        }
+        return rewards;
+    }
+
     /**
      * Recherche un utilisateur par son nom.
      * @param userName Nom de l'utilisateur.
@@ -104,6 +216,46 @@ public class TourGuideService {
         return new ArrayList<>(internalUserMap.values());
     }
 
+    /**
+     * Retourne les utilisateurs de la partition de ce nœud, seuls suivis par son tracker.
+     */
+    public List<User> getTrackedUsers() {
+        if (!clusterMembership.isClustered()) {
+            return getAllUsers();
+        }
+        List<User> users = new ArrayList<>();
+        for (User user : internalUserMap.values()) {
+            if (clusterMembership.isLocal(user.getUserId())) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Parcourt la dernière position connue de chaque utilisateur de la partition de ce nœud.
+     * Le registre est parcouru directement, sans copie : un utilisateur ajouté pendant le parcours
+     * peut être vu ou non, et la mémoire utilisée ne dépend pas du nombre d'utilisateurs.
+     * @param boundingBox La zone dans laquelle les positions doivent se trouver.
+     * @param consumer Reçoit chaque position retenue, dans le fil d'exécution de l'appelant.
+     */
+    public void forEachCurrentLocation(BoundingBox boundingBox, Consumer<VisitedLocation> consumer) {
+        boolean clustered = clusterMembership.isClustered();
+        for (User user : internalUserMap.values()) {
+            if (clustered && !clusterMembership.isLocal(user.getUserId())) {
+                continue;
+            }
+            List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+            if (visitedLocations.isEmpty()) {
+                continue;
+            }
+            VisitedLocation visitedLocation = visitedLocations.get(visitedLocations.size() - 1);
+            if (boundingBox.contains(visitedLocation.location)) {
+                consumer.accept(visitedLocation);
+            }
+        }
+    }
+
     /**
      * Ajoute un utilisateur au système.
      */
@@ -111,6 +263,33 @@ public class TourGuideService {
         internalUserMap.putIfAbsent(user.getUserName(), user);
     }
 
+    /**
+     * Ajoute des utilisateurs au système ; ceux dont le nom est déjà enregistré sont ignorés.
+     * Chaque insertion est une opération atomique de la table, sans verrou global.
+     * @param users Les utilisateurs à ajouter
+     * @return Le nombre d'utilisateurs ajoutés
+     */
+    public int addUsers(List<User> users) {
+        int added = 0;
+        for (User user : users) {
+            if (internalUserMap.putIfAbsent(user.getUserName(), user) == null) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Restaure des utilisateurs depuis un point de reprise ; ils remplacent les utilisateurs de même nom.
+     * @param users Les utilisateurs restaurés
+     */
+    public void restoreUsers(List<User> users) {
+        for (User user : users) {
+            internalUserMap.put(user.getUserName(), user);
+            trajectoryCompressor.forget(user.getUserId());
+        }
+    }
+
     /**
      * Calcule et retourne les offres de voyage personnalisées pour un utilisateur
      * @param user L'utilisateur cible
@@ -121,14 +300,26 @@ public class TourGuideService {
                 .mapToInt(UserReward::getRewardPoints)
                 .sum();
 
-        List<Provider> providers = tripPricer.getPrice(
-                tripPricerApiKey,
-                user.getUserId(),
-                user.getUserPreferences().getNumberOfAdults(),
-                user.getUserPreferences().getNumberOfChildren(),
-                user.getUserPreferences().getTripDuration(),
-                cumulativeRewardPoints
-        );
+        ExternalCallEvent event = ExternalCallEvent.start(ExternalCallEvent.TRIP_PRICER, "getPrice");
+        List<Provider> providers;
+        try {
+            providers = tripPricer.getPrice(
+                    tripPricerApiKey,
+                    user.getUserId(),
+                    user.getUserPreferences().getNumberOfAdults(),
+                    user.getUserPreferences().getNumberOfChildren(),
+                    user.getUserPreferences().getTripDuration(),
+                    cumulativeRewardPoints
+            );
+        } catch (RuntimeException e) {
+            if (event != null) {
+                event.finish(false);
+            }
+            throw e;
+        }
+        if (event != null) {
+            event.finish(true);
+        }
 
         user.setTripDeals(providers);
         return providers;
@@ -136,14 +327,92 @@ public class TourGuideService {
 
     /**
      * Suit la position actuelle d'un utilisateur et met à jour ses récompenses
+     * La demande passe par la file interactive de l'ordonnanceur GpsUtil.
      * @param user L'utilisateur à suivre
      * @return La nouvelle localisation visitée
      */
     public VisitedLocation trackUserLocation(User user) {
-        VisitedLocation visitedLocation = gpsUtil.getUserLocation(user.getUserId());
-        user.addToVisitedLocations(visitedLocation);
-        rewardsService.calculateRewards(user);
-        return visitedLocation;
+        VisitedLocation visitedLocation = gpsUtilScheduler
+                .getUserLocation(user.getUserId(), GpsUtilScheduler.Lane.INTERACTIVE).join();
+        return recordUserLocation(user, visitedLocation).join();
+    }
+
+    /**
+     * Suit de manière asynchrone la position d'un utilisateur pour le compte du tracker
+     * La demande passe par la file de fond de l'ordonnanceur GpsUtil, servie après les requêtes interactives ;
+     * la position est ensuite enregistrée sur le pool de calcul.
+     * @param user L'utilisateur à suivre
+     * @return Un futur complété par la nouvelle localisation, une fois les récompenses mises à jour ;
+     * l'annuler retire la demande de la file si elle n'a pas encore été servie
+     */
+    public CompletableFuture<VisitedLocation> trackUserLocationAsync(User user) {
+        // Créé seulement pendant un enregistrement JFR qui l'active : le suivi n'alloue rien de plus sinon
+        UserTrackingEvent event = UserTrackingEvent.isTypeEnabled() ? new UserTrackingEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        CompletableFuture<VisitedLocation> location =
+                gpsUtilScheduler.getUserLocation(user.getUserId(), GpsUtilScheduler.Lane.BACKGROUND);
+        CompletableFuture<VisitedLocation> tracking =
+                location.thenComposeAsync(visitedLocation -> recordUserLocation(user, visitedLocation), executors.cpu());
+        tracking.whenComplete((visitedLocation, e) -> {
+            if (tracking.isCancelled()) {
+                location.cancel(false);
+            }
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.userName = user.getUserName();
+                    event.outcome = e == null ? "completed" : tracking.isCancelled() ? "cancelled" : "failed";
+                    event.commit();
+                }
+            }
+        });
+        return tracking;
+    }
+
+    /**
+     * Enregistre une nouvelle position, recalcule les récompenses de l'utilisateur
+     * et publie les changements aux abonnés.
+     * @return Un futur complété par la position une fois les récompenses attribuées
+     */
+    private CompletableFuture<VisitedLocation> recordUserLocation(User user, VisitedLocation visitedLocation) {
+        trajectoryCompressor.append(user, visitedLocation);
+        visitAggregates.recordVisit(visitedLocation, rewardsService.getAttractionsInProximity(visitedLocation.location));
+        userUpdatePublisher.publishLocation(user, visitedLocation);
+
+        return rewardsService.calculateRewardsAsync(user).thenApply(newRewards -> {
+            // Seules les récompenses gagnées par cet appel sont publiées, même si un autre calcul concurrent en attribue
+            if (!newRewards.isEmpty()) {
+                visitAggregates.recordRewards(newRewards);
+                userUpdatePublisher.publishRewards(user, newRewards);
+            }
+            return visitedLocation;
+        });
+    }
+
+    /**
+     * Retourne les agrégats de fréquentation.
+     * @return les agrégats
+     */
+    public VisitAggregates getVisitAggregates() {
+        return visitAggregates;
+    }
+
+    /**
+     * Retourne le compresseur de l'historique des positions.
+     * @return le compresseur
+     */
+    public TrajectoryCompressor getTrajectoryCompressor() {
+        return trajectoryCompressor;
+    }
+
+    /**
+     * Retourne le diffuseur des mises à jour utilisateur.
+     * @return le diffuseur
+     */
+    public UserUpdatePublisher getUserUpdatePublisher() {
+        return userUpdatePublisher;
     }
 
     /**
@@ -152,11 +421,136 @@ public class TourGuideService {
      * @return Une liste des attractions les plus proches.
      */
     public List<Attraction> getNearByAttractions(VisitedLocation visitedLocation) {
-        return gpsUtil.getAttractions().stream()
-                .sorted(Comparator.comparingDouble(
-                        a -> getDistance(visitedLocation.location, a)))
-                .limit(5)
-                .collect(Collectors.toList());
+        return rewardsService.getAttractionIndex().findNearest(visitedLocation.location, 5);
+    }
+
+    /**
+     * Récupère les attractions les plus proches en respectant la préférence
+     * {@link com.openclassrooms.tourguide.user.UserPreferences#getAttractionProximity()} de l'utilisateur.
+     * Seules les attractions situées dans ce rayon sont retournées, au plus {@code limit}.
+     * @param user L'utilisateur dont les préférences sont appliquées.
+     * @param visitedLocation Localisation de départ.
+     * @param limit Nombre maximal d'attractions retournées.
+     * @return Les attractions triées par distance croissante.
+     */
+    public List<Attraction> getNearByAttractions(User user, VisitedLocation visitedLocation, int limit) {
+        return getNearByAttractions(rewardsService.getAttractionIndex(), user, visitedLocation.location, limit);
+    }
+
+    private List<Attraction> getNearByAttractions(AttractionIndex index, User user, Location location, int limit) {
+        int proximity = user.getUserPreferences().getAttractionProximity();
+        if (proximity == Integer.MAX_VALUE) {
+            return index.findNearest(location, limit);
+        }
+        return index.findWithinRadius(location, proximity, limit);
+    }
+
+    /**
+     * Construit la réponse de {@code /getNearbyAttractions} : les attractions les plus proches dans le rayon
+     * de l'utilisateur, avec leur distance et leurs points de récompense.
+     * Les candidats de la cellule de position et leurs points sont mis en cache ; ils sont classés depuis
+     * la position exacte à chaque requête, qui obtient ainsi le même résultat que sans cache.
+     * @param user L'utilisateur concerné.
+     * @param visitedLocation Localisation de l'utilisateur.
+     * @param limit Nombre maximal d'attractions retournées.
+     * @return Les attractions proches, triées par distance croissante.
+     */
+    public List<NearbyAttractionDTO> getNearbyAttractionDTOs(User user, VisitedLocation visitedLocation, int limit) {
+        Location location = visitedLocation.location;
+        int proximity = user.getUserPreferences().getAttractionProximity();
+        AttractionCatalog.Snapshot snapshot = rewardsService.getAttractionCatalog().getSnapshot();
+        long rewardPointsVersion = rewardsService.getRewardPointsVersion();
+
+        NearbyAttractionsCache.Key key = nearbyAttractionsCache.keyFor(location, proximity, limit);
+        NearbyAttractionsCache.Entry entry = nearbyAttractionsCache.get(key, snapshot.getVersion(), rewardPointsVersion);
+        if (entry == null) {
+            List<Attraction> attractions = nearbyAttractionsCache.findCandidates(snapshot.getIndex(), key);
+            int[] rewardPoints = getRewardPoints(attractions, user);
+            // Les points obtenus sont désormais en cache et ne changent plus : l'entrée est valable
+            // pour la version courante, même si ce calcul vient de l'incrémenter.
+            entry = new NearbyAttractionsCache.Entry(snapshot.getVersion(), rewardsService.getRewardPointsVersion(),
+                    attractions, rewardPoints);
+            nearbyAttractionsCache.put(key, entry);
+        }
+        return toNearbyAttractionDTOs(location, proximity, limit, entry);
+    }
+
+    /**
+     * Construit les réponses de {@code /getNearbyAttractions} pour plusieurs utilisateurs à la fois.
+     * Toutes les réponses sont calculées sur le même instantané du catalogue ; les points des attractions
+     * absentes du cache sont demandés une seule fois chacune, tous en même temps.
+     * @param users Les utilisateurs concernés.
+     * @param limit Nombre maximal d'attractions par utilisateur.
+     * @return Les attractions proches de chaque utilisateur, dans l'ordre de la liste.
+     */
+    public Map<User, List<NearbyAttractionDTO>> getNearbyAttractionDTOs(List<User> users, int limit) {
+        Map<User, VisitedLocation> locations = getUserLocations(users);
+        AttractionCatalog.Snapshot snapshot = rewardsService.getAttractionCatalog().getSnapshot();
+        long rewardPointsVersion = rewardsService.getRewardPointsVersion();
+
+        Map<User, NearbyAttractionsCache.Entry> entries = new HashMap<>();
+        Map<User, List<Attraction>> misses = new HashMap<>();
+        Map<UUID, CompletableFuture<Integer>> rewardPoints = new HashMap<>();
+        for (User user : users) {
+            Location location = locations.get(user).location;
+            int proximity = user.getUserPreferences().getAttractionProximity();
+            NearbyAttractionsCache.Key key = nearbyAttractionsCache.keyFor(location, proximity, limit);
+            NearbyAttractionsCache.Entry entry = nearbyAttractionsCache.get(key, snapshot.getVersion(), rewardPointsVersion);
+            if (entry != null) {
+                entries.put(user, entry);
+                continue;
+            }
+            List<Attraction> attractions = nearbyAttractionsCache.findCandidates(snapshot.getIndex(), key);
+            misses.put(user, attractions);
+            for (Attraction attraction : attractions) {
+                rewardPoints.computeIfAbsent(attraction.attractionId,
+                        id -> rewardsService.getRewardPointsAsync(attraction, user.getUserId()));
+            }
+        }
+        CompletableFuture.allOf(rewardPoints.values().toArray(new CompletableFuture<?>[0])).join();
+
+        long resolvedVersion = rewardsService.getRewardPointsVersion();
+        misses.forEach((user, attractions) -> {
+            int[] points = attractions.stream().mapToInt(a -> rewardPoints.get(a.attractionId).join()).toArray();
+            NearbyAttractionsCache.Entry entry = new NearbyAttractionsCache.Entry(snapshot.getVersion(),
+                    resolvedVersion, attractions, points);
+            nearbyAttractionsCache.put(nearbyAttractionsCache.keyFor(locations.get(user).location,
+                    user.getUserPreferences().getAttractionProximity(), limit), entry);
+            entries.put(user, entry);
+        });
+
+        Map<User, List<NearbyAttractionDTO>> result = new LinkedHashMap<>();
+        for (User user : users) {
+            result.put(user, toNearbyAttractionDTOs(locations.get(user).location,
+                    user.getUserPreferences().getAttractionProximity(), limit, entries.get(user)));
+        }
+        return result;
+    }
+
+    /**
+     * Classe les candidats depuis la position exacte : seules les {@code limit} plus proches dans le rayon sont gardées.
+     */
+    private List<NearbyAttractionDTO> toNearbyAttractionDTOs(Location location, int proximity, int limit,
+                                                             NearbyAttractionsCache.Entry entry) {
+        List<NearbyAttractionDTO> result = new ArrayList<>(entry.getAttractions().size());
+        for (int i = 0; i < entry.getAttractions().size(); i++) {
+            Attraction attraction = entry.getAttractions().get(i);
+            double distance = getDistance(location, attraction);
+            if (distance <= proximity) {
+                result.add(new NearbyAttractionDTO(attraction.attractionName, attraction.latitude,
+                        attraction.longitude, location.latitude, location.longitude, distance, entry.getRewardPoints(i)));
+            }
+        }
+        result.sort(Comparator.comparingDouble(dto -> dto.distanceInMiles));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * Retourne le cache des réponses de {@code /getNearbyAttractions}.
+     * @return le cache par cellule de position
+     */
+    public NearbyAttractionsCache getNearbyAttractionsCache() {
+        return nearbyAttractionsCache;
     }
 
     /**
@@ -166,16 +560,7 @@ public class TourGuideService {
      * @return La distance en miles
      */
     public double getDistance(Location loc1, Location loc2) {
-        double lat1 = Math.toRadians(loc1.latitude);
-        double lon1 = Math.toRadians(loc1.longitude);
-        double lat2 = Math.toRadians(loc2.latitude);
-        double lon2 = Math.toRadians(loc2.longitude);
-
-        double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2)
-                + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
-
-        double nauticalMiles = 60 * Math.toDegrees(angle);
-        return 1.15077945 * nauticalMiles; // conversion en miles
+        return GeoUtils.distanceInMiles(loc1.latitude, loc1.longitude, loc2.latitude, loc2.longitude);
     }
 
     /**
@@ -185,7 +570,7 @@ public class TourGuideService {
      * @return La distance en miles.
      */
     public double getDistance(Location loc, Attraction attraction) {
-        return getDistance(loc, new Location(attraction.latitude, attraction.longitude));
+        return GeoUtils.distanceInMiles(loc.latitude, loc.longitude, attraction.latitude, attraction.longitude);
     }
 
     /**
@@ -195,66 +580,88 @@ public class TourGuideService {
      * @return Le nombre de points de récompense.
      */
     public int getRewardPoints(Attraction attraction, User user) {
-        return rewardCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+        return rewardsService.getRewardPointsAsync(attraction, user.getUserId()).join();
     }
 
-    /* ================== Internal/test methods ================== */
-
     /**
-     * Ajoute un hook pour arrêter proprement le tracker lors de l'arrêt de l'application.
+     * Récupère en parallèle les points de récompense de plusieurs attractions.
+     * Les points absents du cache sont demandés simultanément et chaque appel est borné par la
+     * deadline du client, de sorte que le temps de réponse est celui de l'appel le plus lent, et non leur somme.
+     * @param attractions Les attractions ciblées.
+     * @param user L'utilisateur concerné.
+     * @return Les points de récompense, dans l'ordre des attractions.
      */
-    private void addShutDownHook() {
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> tracker.stopTracking()));
+    public int[] getRewardPoints(List<Attraction> attractions, User user) {
+        List<CompletableFuture<Integer>> futures = new ArrayList<>(attractions.size());
+        for (Attraction attraction : attractions) {
+            futures.add(rewardsService.getRewardPointsAsync(attraction, user.getUserId()));
+        }
+        int[] points = new int[futures.size()];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = futures.get(i).join();
+        }
+        return points;
     }
 
-    /**
-     * Initialise des utilisateurs internes pour les tests de performance.
-     */
-    private void initializeInternalUsers() {
-        IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
-            String userName = "internalUser" + i;
-            User user = new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com");
-            generateUserLocationHistory(user);
-            internalUserMap.put(userName, user);
-        });
-        logger.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
-    }
+    /* ================== Internal/test methods ================== */
 
     /**
-     * Génère un historique aléatoire de 3 positions pour un utilisateur.
+     * Ajoute un hook pour arrêter proprement le service lors de l'arrêt de l'application.
      */
-    private void generateUserLocationHistory(User user) {
-        IntStream.range(0, 3).forEach(i -> user.addToVisitedLocations(
-                new VisitedLocation(
-                        user.getUserId(),
-                        new Location(generateRandomLatitude(), generateRandomLongitude()),
-                        getRandomTime()
-                )
-        ));
+    private void addShutDownHook() {
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
     }
 
     /**
-     * Génère une longitude aléatoire
-     * @return Une valeur comprise entre -180 et 180
+     * Arrête le tracker, puis l'ordonnanceur GpsUtil, les pools de threads et le diffuseur
+     * s'ils ont été créés par ce service ; les composants injectés sont arrêtés par leur propriétaire.
+     * Appelé par Spring à la fermeture du contexte, ou par le hook d'arrêt de la JVM.
      */
-    private double generateRandomLongitude() {
-        return -180 + new Random().nextDouble() * 360;
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        tracker.stopTracking();
+        if (ownsComponents) {
+            gpsUtilScheduler.shutdown();
+            userUpdatePublisher.shutdown();
+            executors.shutdown();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Arrêt de la JVM en cours : le hook est celui qui s'exécute
+        }
     }
 
     /**
-     * Génère une latitude aléatoire
-     * @return Une valeur comprise entre -85.05112878 et 85.05112878
+     * Initialise des utilisateurs internes pour les tests de performance.
+     * La génération se fait en parallèle sur le pool de calcul ; en mode arrière-plan,
+     * le constructeur n'attend pas sa fin.
      */
-    private double generateRandomLatitude() {
-        return -85.05112878 + new Random().nextDouble() * 170.10225756;
+    private void initializeInternalUsers(InternalUserGenerator generator) {
+        int count = InternalTestHelper.getInternalUserNumber();
+        logger.debug("Initializing users");
+        internalUsersGeneration = generator.generate(count, executors.cpu(), this::addUsers)
+                .whenComplete((report, e) -> {
+                    if (e != null) {
+                        logger.error("Internal user generation failed", e);
+                    } else {
+                        logger.info("Created {} internal test users in {} ms ({} users/s)",
+                                report.users(), report.millis(), Math.round(report.usersPerSecond()));
+                    }
+                });
+        if (!generator.isBackground()) {
+            internalUsersGeneration.join();
+        }
     }
 
     /**
-     * Génère une date aléatoire dans les 30 derniers jours
-     * @return Une date générée aléatoirement
+     * Retourne la génération des utilisateurs internes, éventuellement encore en cours.
+     * @return un futur complété par le bilan de la génération
      */
-    private Date getRandomTime() {
-        LocalDateTime localDateTime = LocalDateTime.now().minusDays(new Random().nextInt(30));
-        return Date.from(localDateTime.toInstant(ZoneOffset.UTC));
+    public CompletableFuture<InternalUserGenerator.Report> getInternalUsersGeneration() {
+        return internalUsersGeneration;
     }
-}
\ No newline at end of file
+}
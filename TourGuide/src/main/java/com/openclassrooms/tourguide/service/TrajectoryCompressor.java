@@ -0,0 +1,214 @@
+package com.openclassrooms.tourguide.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.openclassrooms.tourguide.helper.GeoUtils;
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Compression en ligne de l'historique des positions (fenêtre glissante de Douglas-Peucker).
+ * La dernière position de l'historique reste provisoire : lorsqu'une nouvelle position arrive,
+ * elle la remplace si le segment entre la dernière position conservée et la nouvelle passe à moins
+ * de la tolérance de toutes les positions remplacées depuis. Un utilisateur immobile ou en ligne
+ * droite n'accumule ainsi que les extrémités de sa trajectoire.
+ * Les positions proches d'une attraction, qui servent à l'attribution des récompenses,
+ * sont toujours conservées telles quelles.
+ * La fenêtre d'un utilisateur est oubliée lorsqu'il est remplacé (restauration, remise par un autre
+ * nœud) ou lorsqu'il n'a reçu aucune position depuis {@code windowIdle} : la position provisoire
+ * suivante est alors conservée et devient un nouvel ancrage.
+ */
+public class TrajectoryCompressor {
+
+    private final RewardsService rewardsService;
+    private final double toleranceMiles;
+    private final int maxWindow;
+    private final long windowIdleNanos;
+    private final AtomicLong lastSweepNanos = new AtomicLong(System.nanoTime());
+    /** Positions remplacées depuis la dernière position conservée, par utilisateur. */
+    private final Map<UUID, Window> windows = new ConcurrentHashMap<>();
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder replaced = new LongAdder();
+
+    /**
+     * @param rewardsService le service indiquant les positions proches d'une attraction
+     * @param toleranceMiles l'écart maximal toléré entre une position retirée et la trajectoire conservée,
+     *                       en miles ; 0 désactive la compression
+     * @param maxWindow le nombre maximal de positions remplacées d'affilée, au-delà duquel la position
+     *                  provisoire est conservée
+     */
+    public TrajectoryCompressor(RewardsService rewardsService, double toleranceMiles, int maxWindow) {
+        this(rewardsService, toleranceMiles, maxWindow, Duration.ofHours(1));
+    }
+
+    /**
+     * @param rewardsService le service indiquant les positions proches d'une attraction
+     * @param toleranceMiles l'écart maximal toléré entre une position retirée et la trajectoire conservée,
+     *                       en miles ; 0 désactive la compression
+     * @param maxWindow le nombre maximal de positions remplacées d'affilée, au-delà duquel la position
+     *                  provisoire est conservée
+     * @param windowIdle la durée sans nouvelle position au-delà de laquelle la fenêtre d'un utilisateur est oubliée
+     */
+    public TrajectoryCompressor(RewardsService rewardsService, double toleranceMiles, int maxWindow,
+                                Duration windowIdle) {
+        this.rewardsService = rewardsService;
+        this.toleranceMiles = toleranceMiles;
+        this.maxWindow = maxWindow;
+        this.windowIdleNanos = windowIdle.toNanos();
+    }
+
+    /**
+     * Crée un compresseur inactif : toutes les positions sont conservées.
+     * @param rewardsService le service de récompenses
+     * @return le compresseur
+     */
+    public static TrajectoryCompressor disabled(RewardsService rewardsService) {
+        return new TrajectoryCompressor(rewardsService, 0, 0);
+    }
+
+    /**
+     * Ajoute une position à l'historique de l'utilisateur, en remplaçant la position provisoire
+     * si elle se trouve sur la trajectoire.
+     * @param user l'utilisateur
+     * @param visitedLocation sa nouvelle position
+     */
+    public void append(User user, VisitedLocation visitedLocation) {
+        if (toleranceMiles <= 0) {
+            user.addToVisitedLocations(visitedLocation);
+            appended.increment();
+            return;
+        }
+        long now = System.nanoTime();
+        evictIdleWindows(now);
+        while (!append(user, visitedLocation, windows.computeIfAbsent(user.getUserId(), id -> new Window()), now)) {
+            // Fenêtre oubliée entre sa lecture et son verrouillage : une nouvelle est créée
+        }
+    }
+
+    /**
+     * @return {@code false} si la fenêtre a été oubliée entre-temps, sans rien ajouter
+     */
+    private boolean append(User user, VisitedLocation visitedLocation, Window window, long now) {
+        synchronized (window) {
+            if (window.evicted) {
+                return false;
+            }
+            window.lastUsedNanos = now;
+            List<VisitedLocation> history = user.getVisitedLocations();
+            int size = history.size();
+            // Une fenêtre neuve ignore les positions déjà remplacées : la position provisoire est conservée
+            if (window.anchored && size >= 2 && window.dropped.size() < maxWindow) {
+                Location anchor = history.get(size - 2).location;
+                Location floating = history.get(size - 1).location;
+                if (!rewardsService.isNearAnyAttraction(floating)
+                        && withinTolerance(anchor, visitedLocation.location, floating, window.dropped)) {
+                    window.dropped.add(floating);
+                    user.replaceLastVisitedLocation(visitedLocation);
+                    replaced.increment();
+                    return true;
+                }
+            }
+            // La position provisoire est conservée et devient le nouvel ancrage
+            window.dropped.clear();
+            window.anchored = true;
+            user.addToVisitedLocations(visitedLocation);
+            appended.increment();
+            return true;
+        }
+    }
+
+    /**
+     * Oublie la fenêtre d'un utilisateur, dont l'historique vient d'être remplacé.
+     * @param userId l'identifiant de l'utilisateur
+     */
+    public void forget(UUID userId) {
+        Window window = windows.remove(userId);
+        if (window != null) {
+            synchronized (window) {
+                window.evicted = true;
+            }
+        }
+    }
+
+    /**
+     * Oublie les fenêtres inactives depuis {@code windowIdle} ; le parcours a lieu au plus une fois par période.
+     */
+    private void evictIdleWindows(long now) {
+        long lastSweep = lastSweepNanos.get();
+        if (now - lastSweep < windowIdleNanos || !lastSweepNanos.compareAndSet(lastSweep, now)) {
+            return;
+        }
+        windows.forEach((userId, window) -> {
+            synchronized (window) {
+                if (now - window.lastUsedNanos >= windowIdleNanos) {
+                    window.evicted = true;
+                    windows.remove(userId, window);
+                }
+            }
+        });
+    }
+
+    private boolean withinTolerance(Location anchor, Location next, Location floating, List<Location> dropped) {
+        if (crossTrackMiles(anchor, next, floating) > toleranceMiles) {
+            return false;
+        }
+        for (Location location : dropped) {
+            if (crossTrackMiles(anchor, next, location) > toleranceMiles) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Distance en miles d'un point au segment [from, to], sur une projection plane locale
+     * centrée sur {@code from}, suffisante aux distances d'une tolérance.
+     */
+    static double crossTrackMiles(Location from, Location to, Location point) {
+        double milesPerDegreeLongitude = GeoUtils.MILES_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(from.latitude));
+        double segmentX = (to.longitude - from.longitude) * milesPerDegreeLongitude;
+        double segmentY = (to.latitude - from.latitude) * GeoUtils.MILES_PER_DEGREE_LATITUDE;
+        double pointX = (point.longitude - from.longitude) * milesPerDegreeLongitude;
+        double pointY = (point.latitude - from.latitude) * GeoUtils.MILES_PER_DEGREE_LATITUDE;
+
+        double lengthSquared = segmentX * segmentX + segmentY * segmentY;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, (pointX * segmentX + pointY * segmentY) / lengthSquared));
+        return Math.hypot(pointX - t * segmentX, pointY - t * segmentY);
+    }
+
+    /** @return la tolérance en miles, 0 si la compression est désactivée */
+    public double getToleranceMiles() {
+        return toleranceMiles;
+    }
+
+    /** @return le nombre d'utilisateurs dont la fenêtre est conservée */
+    public int getWindowCount() {
+        return windows.size();
+    }
+
+    /** @return le nombre de positions ajoutées à l'historique */
+    public long getAppendedCount() {
+        return appended.sum();
+    }
+
+    /** @return le nombre de positions ayant remplacé la position provisoire */
+    public long getReplacedCount() {
+        return replaced.sum();
+    }
+
+    private static final class Window {
+        private final List<Location> dropped = new ArrayList<>();
+        private long lastUsedNanos;
+        private boolean anchored;
+        private boolean evicted;
+    }
+}
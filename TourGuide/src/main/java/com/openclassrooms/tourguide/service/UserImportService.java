@@ -0,0 +1,317 @@
+package com.openclassrooms.tourguide.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Import en masse d'utilisateurs depuis un fichier local CSV ou NDJSON.
+ * Le fichier est lu ligne à ligne par un seul thread, qui découpe les lignes en blocs ;
+ * chaque bloc est analysé sur le pool de calcul puis inséré dans le registre par
+ * {@link TourGuideService#addUsers(List)}, sans verrou par utilisateur. Le pool de calcul
+ * étant borné, un analyseur en retard ralentit la lecture au lieu d'accumuler des blocs.
+ * Une ligne invalide est rejetée sans interrompre l'import ; un utilisateur déjà présent est conservé.
+ *
+ * CSV : une ligne d'en-tête nomme les colonnes, seule {@code userName} est obligatoire.
+ * Colonnes reconnues : {@code userName, userId, phoneNumber, emailAddress, attractionProximity,
+ * tripDuration, ticketQuantity, numberOfAdults, numberOfChildren, locations}. La colonne
+ * {@code locations} contient des positions {@code latitude;longitude;millisecondes} séparées par {@code |}.
+ * Les champs peuvent être entre guillemets doubles.
+ *
+ * NDJSON : un objet par ligne, avec les mêmes champs au premier niveau ou dans {@code preferences},
+ * et {@code locations} en tableau d'objets {@code {latitude, longitude, timeVisited}}.
+ */
+public class UserImportService {
+    private final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    /** Format du fichier importé. */
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * Déduit le format de l'extension du fichier.
+         * @param file le fichier
+         * @return {@link #NDJSON} pour {@code .ndjson} et {@code .jsonl}, {@link #CSV} sinon
+         */
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            return name.endsWith(".ndjson") || name.endsWith(".jsonl") ? NDJSON : CSV;
+        }
+    }
+
+    private final TourGuideService tourGuideService;
+    private final ExecutorService cpu;
+    private final int chunkSize;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param tourGuideService le service dont le registre reçoit les utilisateurs
+     * @param cpu le pool analysant les blocs
+     * @param chunkSize le nombre de lignes par bloc
+     */
+    public UserImportService(TourGuideService tourGuideService, ExecutorService cpu, int chunkSize) {
+        this.tourGuideService = tourGuideService;
+        this.cpu = cpu;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Importe les utilisateurs d'un fichier.
+     * @param file le fichier
+     * @param format son format
+     * @return le bilan de l'import
+     * @throws IOException si le fichier ne peut être lu
+     * @throws IllegalArgumentException si l'en-tête CSV n'a pas de colonne {@code userName}
+     */
+    public Report importUsers(Path file, Format format) throws IOException {
+        StopWatch stopWatch = StopWatch.createStarted();
+        Counters counters = new Counters();
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, Integer> columns = null;
+            long lineNumber = 0;
+            if (format == Format.CSV) {
+                String header = reader.readLine();
+                lineNumber++;
+                if (header == null) {
+                    return counters.report(stopWatch);
+                }
+                columns = csvColumns(header);
+            }
+            List<String> lines = new ArrayList<>(chunkSize);
+            long firstLine = lineNumber + 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lines.isEmpty()) {
+                    firstLine = lineNumber;
+                }
+                lines.add(line);
+                if (lines.size() == chunkSize) {
+                    chunks.add(submit(lines, firstLine, format, columns, counters));
+                    lines = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!lines.isEmpty()) {
+                chunks.add(submit(lines, firstLine, format, columns, counters));
+            }
+        }
+        CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).join();
+
+        Report report = counters.report(stopWatch);
+        logger.info("Imported {}: {}", file, report);
+        return report;
+    }
+
+    private CompletableFuture<Void> submit(List<String> lines, long firstLine, Format format,
+                                           Map<String, Integer> columns, Counters counters) {
+        return CompletableFuture.runAsync(() -> {
+            List<User> users = new ArrayList<>(lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                if (line.isBlank()) {
+                    continue;
+                }
+                counters.rows.increment();
+                try {
+                    users.add(format == Format.CSV ? parseCsv(line, columns) : parseJson(line));
+                } catch (RuntimeException | IOException e) {
+                    counters.reject(firstLine + i, e);
+                }
+            }
+            int added = tourGuideService.addUsers(users);
+            counters.imported.add(added);
+            counters.duplicates.add(users.size() - added);
+        }, cpu);
+    }
+
+    private static Map<String, Integer> csvColumns(String header) {
+        List<String> names = splitCsv(header);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim(), i);
+        }
+        if (!columns.containsKey("userName")) {
+            throw new IllegalArgumentException("CSV header must contain a userName column: " + header);
+        }
+        return columns;
+    }
+
+    private static User parseCsv(String line, Map<String, Integer> columns) {
+        List<String> fields = splitCsv(line);
+        Map<String, String> values = new HashMap<>();
+        columns.forEach((name, index) -> {
+            if (index < fields.size() && !fields.get(index).isEmpty()) {
+                values.put(name, fields.get(index));
+            }
+        });
+        User user = newUser(values.get("userName"), values.get("userId"),
+                values.get("phoneNumber"), values.get("emailAddress"));
+        UserPreferences preferences = user.getUserPreferences();
+        preferences.setAttractionProximity(intValue(values.get("attractionProximity"), preferences.getAttractionProximity()));
+        preferences.setTripDuration(intValue(values.get("tripDuration"), preferences.getTripDuration()));
+        preferences.setTicketQuantity(intValue(values.get("ticketQuantity"), preferences.getTicketQuantity()));
+        preferences.setNumberOfAdults(intValue(values.get("numberOfAdults"), preferences.getNumberOfAdults()));
+        preferences.setNumberOfChildren(intValue(values.get("numberOfChildren"), preferences.getNumberOfChildren()));
+
+        String locations = values.get("locations");
+        if (locations != null) {
+            List<VisitedLocation> history = new ArrayList<>();
+            for (String location : locations.split("\\|")) {
+                String[] parts = location.split(";");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Invalid location: " + location);
+                }
+                history.add(new VisitedLocation(user.getUserId(),
+                        new Location(Double.parseDouble(parts[0]), Double.parseDouble(parts[1])),
+                        new Date(Long.parseLong(parts[2]))));
+            }
+            user.addAllToVisitedLocations(history);
+        }
+        return user;
+    }
+
+    private User parseJson(String line) throws IOException {
+        JsonNode node = objectMapper.readTree(line);
+        User user = newUser(text(node, "userName"), text(node, "userId"),
+                text(node, "phoneNumber"), text(node, "emailAddress"));
+        JsonNode preferencesNode = node.has("preferences") ? node.get("preferences") : node;
+        UserPreferences preferences = user.getUserPreferences();
+        preferences.setAttractionProximity(preferencesNode.path("attractionProximity").asInt(preferences.getAttractionProximity()));
+        preferences.setTripDuration(preferencesNode.path("tripDuration").asInt(preferences.getTripDuration()));
+        preferences.setTicketQuantity(preferencesNode.path("ticketQuantity").asInt(preferences.getTicketQuantity()));
+        preferences.setNumberOfAdults(preferencesNode.path("numberOfAdults").asInt(preferences.getNumberOfAdults()));
+        preferences.setNumberOfChildren(preferencesNode.path("numberOfChildren").asInt(preferences.getNumberOfChildren()));
+
+        JsonNode locations = node.path("locations");
+        if (locations.isArray()) {
+            List<VisitedLocation> history = new ArrayList<>(locations.size());
+            for (JsonNode location : locations) {
+                if (!location.has("latitude") || !location.has("longitude") || !location.has("timeVisited")) {
+                    throw new IllegalArgumentException("Invalid location: " + location);
+                }
+                history.add(new VisitedLocation(user.getUserId(),
+                        new Location(location.get("latitude").asDouble(), location.get("longitude").asDouble()),
+                        new Date(location.get("timeVisited").asLong())));
+            }
+            user.addAllToVisitedLocations(history);
+        }
+        return user;
+    }
+
+    private static User newUser(String userName, String userId, String phoneNumber, String emailAddress) {
+        if (userName == null || userName.isBlank()) {
+            throw new IllegalArgumentException("Missing userName");
+        }
+        return new User(userId == null ? UUID.randomUUID() : UUID.fromString(userId), userName,
+                phoneNumber, emailAddress);
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static int intValue(String value, int defaultValue) {
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Découpe une ligne CSV ; un champ entre guillemets peut contenir des virgules,
+     * un guillemet y est doublé.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Bilan d'un import.
+     * @param rows le nombre de lignes de données lues
+     * @param imported le nombre d'utilisateurs ajoutés
+     * @param duplicates le nombre d'utilisateurs ignorés car déjà présents
+     * @param rejected le nombre de lignes invalides
+     * @param millis la durée, en millisecondes
+     * @param rowsPerSecond le débit en lignes par seconde
+     * @param errors les premières erreurs, avec leur numéro de ligne
+     */
+    public record Report(long rows, long imported, long duplicates, long rejected, long millis,
+                         double rowsPerSecond, List<String> errors) {
+    }
+
+    private static final class Counters {
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder imported = new LongAdder();
+        private final LongAdder duplicates = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final AtomicInteger reportedErrors = new AtomicInteger();
+        private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+
+        void reject(long lineNumber, Exception e) {
+            rejected.increment();
+            if (reportedErrors.incrementAndGet() <= MAX_REPORTED_ERRORS) {
+                errors.add("line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+
+        Report report(StopWatch stopWatch) {
+            stopWatch.stop();
+            long millis = stopWatch.getTime();
+            long rowCount = rows.sum();
+            return new Report(rowCount, imported.sum(), duplicates.sum(), rejected.sum(), millis,
+                    rowCount / (Math.max(1, millis) / 1000.0), List.copyOf(errors));
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.openclassrooms.tourguide.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.openclassrooms.tourguide.UserLocationDTO;
+import com.openclassrooms.tourguide.UserRewardDTO;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Diffusion des mises à jour de position et de récompenses aux clients abonnés (Server-Sent Events).
+ * Le pipeline de suivi publie chaque nouvelle position et chaque nouvelle récompense ; chaque abonné
+ * dispose d'un tampon borné vidé par un thread d'envoi. Lorsqu'un abonné lent laisse son tampon se
+ * remplir, les événements les plus anciens sont abandonnés : le suivi n'attend jamais un client.
+ */
+public class UserUpdatePublisher {
+
+    /** Nom des événements de position. */
+    public static final String LOCATION_EVENT = "location";
+    /** Nom des événements de récompense. */
+    public static final String REWARD_EVENT = "reward";
+
+    private final int bufferSize;
+    private final Duration timeout;
+    private final ExecutorService senders;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Crée un diffuseur avec un tampon de 256 événements par abonné et des abonnements de 30 minutes.
+     */
+    public UserUpdatePublisher() {
+        this(256, Duration.ofMinutes(30));
+    }
+
+    /**
+     * @param bufferSize le nombre maximal d'événements en attente par abonné
+     * @param timeout la durée d'un abonnement, après laquelle le client doit se réabonner
+     */
+    public UserUpdatePublisher(int bufferSize, Duration timeout) {
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        AtomicInteger counter = new AtomicInteger();
+        this.senders = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "user-updates-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Abonne un client aux mises à jour d'un utilisateur, ou de tous les utilisateurs.
+     * @param userName le nom de l'utilisateur suivi, ou {@code null} pour tous
+     * @return l'émetteur SSE à renvoyer au client
+     */
+    public SseEmitter subscribe(String userName) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(userName, emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        try {
+            // Envoyé dès l'ouverture : le client reçoit les en-têtes sans attendre le premier événement
+            emitter.send(SseEmitter.event().comment("subscribed"));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    /**
+     * Publie une nouvelle position.
+     * @param user l'utilisateur
+     * @param visitedLocation sa nouvelle position
+     */
+    public void publishLocation(User user, VisitedLocation visitedLocation) {
+        if (!subscribers.isEmpty()) {
+            publish(user.getUserName(), LOCATION_EVENT, UserLocationDTO.from(visitedLocation));
+        }
+    }
+
+    /**
+     * Publie les récompenses nouvellement attribuées, un événement par récompense.
+     * @param user l'utilisateur
+     * @param newRewards ses nouvelles récompenses
+     */
+    public void publishRewards(User user, List<UserReward> newRewards) {
+        if (!subscribers.isEmpty()) {
+            for (UserReward userReward : newRewards) {
+                publish(user.getUserName(), REWARD_EVENT, UserRewardDTO.from(userReward));
+            }
+        }
+    }
+
+    private void publish(String userName, String eventName, Object data) {
+        Event event = new Event(sequence.incrementAndGet(), eventName, data);
+        published.increment();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.userName == null || subscriber.userName.equals(userName)) {
+                subscriber.offer(event);
+            }
+        }
+    }
+
+    /** @return le nombre d'abonnés connectés */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /** @return le nombre d'événements publiés */
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    /** @return le nombre d'événements abandonnés faute de place dans le tampon d'un abonné */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Termine tous les abonnements et arrête les threads d'envoi.
+     */
+    public void shutdown() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+            subscriber.close();
+        }
+        senders.shutdownNow();
+    }
+
+    private record Event(long id, String name, Object data) {
+    }
+
+    /**
+     * Abonné : un tampon borné et au plus une tâche d'envoi en cours.
+     */
+    private final class Subscriber {
+        private final String userName;
+        private final SseEmitter emitter;
+        private final ArrayDeque<Event> buffer = new ArrayDeque<>();
+        private boolean sending;
+        private boolean closed;
+
+        Subscriber(String userName, SseEmitter emitter) {
+            this.userName = userName;
+            this.emitter = emitter;
+        }
+
+        void offer(Event event) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (buffer.size() == bufferSize) {
+                    buffer.pollFirst();
+                    dropped.increment();
+                }
+                buffer.addLast(event);
+                if (sending) {
+                    return;
+                }
+                sending = true;
+            }
+            senders.execute(this::send);
+        }
+
+        private void send() {
+            while (true) {
+                Event event;
+                synchronized (this) {
+                    event = buffer.pollFirst();
+                    if (event == null) {
+                        sending = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(event.id()))
+                            .name(event.name())
+                            .data(event.data()));
+                } catch (IOException | IllegalStateException e) {
+                    // Client déconnecté ou abonnement terminé
+                    close();
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                buffer.clear();
+            }
+            subscribers.remove(this);
+        }
+    }
+}
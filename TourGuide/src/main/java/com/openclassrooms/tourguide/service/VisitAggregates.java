@@ -0,0 +1,205 @@
+package com.openclassrooms.tourguide.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.openclassrooms.tourguide.helper.BoundingBox;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Agrégats de fréquentation tenus à jour au fil du suivi : nombre de positions par cellule
+ * de la grille (carte de chaleur) et par attraction, et nombre de récompenses par attraction.
+ * Les compteurs sont rangés par tranche de temps dans un anneau de tranches : une tranche
+ * plus ancienne que la rétention est recyclée lorsque son emplacement est réutilisé.
+ * L'enregistrement ne prend aucun verrou ({@link LongAdder} dans des {@link ConcurrentHashMap}) ;
+ * une requête parcourt les cellules des tranches de la période, sans parcourir les utilisateurs.
+ * Chaque nœud agrège les utilisateurs de sa partition.
+ */
+public class VisitAggregates {
+
+    private final double cellSizeDegrees;
+    private final long bucketMillis;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    /**
+     * Crée des agrégats par cellules de 0,1 degré et tranches d'une heure, conservés 7 jours.
+     */
+    public VisitAggregates() {
+        this(0.1, Duration.ofHours(1), Duration.ofDays(7));
+    }
+
+    /**
+     * @param cellSizeDegrees la taille d'une cellule de la grille, en degrés
+     * @param bucketDuration la durée d'une tranche
+     * @param retention la durée pendant laquelle les tranches sont conservées
+     */
+    public VisitAggregates(double cellSizeDegrees, Duration bucketDuration, Duration retention) {
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.bucketMillis = bucketDuration.toMillis();
+        this.buckets = new AtomicReferenceArray<>((int) Math.max(1, retention.toMillis() / bucketMillis));
+    }
+
+    /**
+     * Enregistre une position visitée.
+     * @param visitedLocation la position
+     * @param nearbyAttractions les attractions à portée de la position
+     */
+    public void recordVisit(VisitedLocation visitedLocation, List<Attraction> nearbyAttractions) {
+        Bucket bucket = bucketFor(visitedLocation.timeVisited.getTime());
+        if (bucket == null) {
+            return;
+        }
+        long cell = cellOf(visitedLocation.location.latitude, visitedLocation.location.longitude);
+        bucket.cellVisits.computeIfAbsent(cell, key -> new LongAdder()).increment();
+        for (Attraction attraction : nearbyAttractions) {
+            bucket.footfall.computeIfAbsent(attraction.attractionName, key -> new Footfall()).visits.increment();
+        }
+    }
+
+    /**
+     * Enregistre des récompenses nouvellement attribuées, dans la tranche de leur visite.
+     * @param userRewards les récompenses
+     */
+    public void recordRewards(List<UserReward> userRewards) {
+        for (UserReward userReward : userRewards) {
+            Bucket bucket = bucketFor(userReward.visitedLocation.timeVisited.getTime());
+            if (bucket != null) {
+                bucket.footfall.computeIfAbsent(userReward.attraction.attractionName, key -> new Footfall())
+                        .rewards.increment();
+            }
+        }
+    }
+
+    /**
+     * Calcule la carte de chaleur d'une période.
+     * @param from début de la période, inclus, arrondi à sa tranche
+     * @param to fin de la période, exclue
+     * @param boundingBox la zone retenue
+     * @return le nombre de positions par cellule
+     */
+    public List<Cell> heatmap(Instant from, Instant to, BoundingBox boundingBox) {
+        Map<Long, Long> totals = new HashMap<>();
+        for (Bucket bucket : bucketsBetween(from, to)) {
+            bucket.cellVisits.forEach((cell, visits) -> totals.merge(cell, visits.sum(), Long::sum));
+        }
+        return totals.entrySet().stream()
+                .map(entry -> toCell(entry.getKey(), entry.getValue()))
+                .filter(cell -> boundingBox.contains(cell.latitude(), cell.longitude()))
+                .toList();
+    }
+
+    /**
+     * Calcule la fréquentation des attractions sur une période.
+     * @param from début de la période, inclus, arrondi à sa tranche
+     * @param to fin de la période, exclue
+     * @return le nombre de positions à portée et de récompenses, par nom d'attraction
+     */
+    public Map<String, AttractionFootfall> footfall(Instant from, Instant to) {
+        Map<String, long[]> totals = new HashMap<>();
+        for (Bucket bucket : bucketsBetween(from, to)) {
+            bucket.footfall.forEach((attractionName, footfall) -> {
+                long[] total = totals.computeIfAbsent(attractionName, key -> new long[2]);
+                total[0] += footfall.visits.sum();
+                total[1] += footfall.rewards.sum();
+            });
+        }
+        Map<String, AttractionFootfall> result = new HashMap<>();
+        totals.forEach((attractionName, total) ->
+                result.put(attractionName, new AttractionFootfall(total[0], total[1])));
+        return result;
+    }
+
+    /** @return la taille d'une cellule, en degrés */
+    public double getCellSizeDegrees() {
+        return cellSizeDegrees;
+    }
+
+    /**
+     * Cellule de la carte de chaleur, désignée par son coin sud-ouest.
+     * @param latitude latitude du coin sud-ouest
+     * @param longitude longitude du coin sud-ouest
+     * @param visits nombre de positions enregistrées dans la cellule
+     */
+    public record Cell(double latitude, double longitude, long visits) {
+    }
+
+    /**
+     * Fréquentation d'une attraction.
+     * @param visits nombre de positions enregistrées à portée de l'attraction
+     * @param rewards nombre de récompenses attribuées pour l'attraction
+     */
+    public record AttractionFootfall(long visits, long rewards) {
+    }
+
+    /**
+     * Retourne la tranche d'un instant, en recyclant l'emplacement s'il porte une tranche plus ancienne.
+     * @return la tranche, ou {@code null} si l'instant est sorti de la rétention
+     */
+    private Bucket bucketFor(long millis) {
+        long index = Math.floorDiv(millis, bucketMillis);
+        int slot = (int) Math.floorMod(index, (long) buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(slot);
+            if (bucket != null && bucket.index == index) {
+                return bucket;
+            }
+            if (bucket != null && bucket.index > index) {
+                return null;
+            }
+            if (buckets.compareAndSet(slot, bucket, new Bucket(index))) {
+                return buckets.get(slot);
+            }
+        }
+    }
+
+    private List<Bucket> bucketsBetween(Instant from, Instant to) {
+        long fromIndex = Math.floorDiv(from.toEpochMilli(), bucketMillis);
+        long toIndex = Math.floorDiv(to.toEpochMilli() - 1, bucketMillis);
+        List<Bucket> selected = new ArrayList<>();
+        for (int slot = 0; slot < buckets.length(); slot++) {
+            Bucket bucket = buckets.get(slot);
+            if (bucket != null && bucket.index >= fromIndex && bucket.index <= toIndex) {
+                selected.add(bucket);
+            }
+        }
+        return selected;
+    }
+
+    /** Code une cellule sur 64 bits : 32 bits d'indice de latitude, 32 bits d'indice de longitude. */
+    private long cellOf(double latitude, double longitude) {
+        long row = (long) Math.floor(latitude / cellSizeDegrees);
+        long column = (long) Math.floor(longitude / cellSizeDegrees);
+        return (row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    private Cell toCell(long cell, long visits) {
+        long row = cell >> 32;
+        long column = (int) cell;
+        return new Cell(row * cellSizeDegrees, column * cellSizeDegrees, visits);
+    }
+
+    private static final class Bucket {
+        private final long index;
+        private final Map<Long, LongAdder> cellVisits = new ConcurrentHashMap<>();
+        private final Map<String, Footfall> footfall = new ConcurrentHashMap<>();
+
+        Bucket(long index) {
+            this.index = index;
+        }
+    }
+
+    private static final class Footfall {
+        private final LongAdder visits = new LongAdder();
+        private final LongAdder rewards = new LongAdder();
+    }
+}
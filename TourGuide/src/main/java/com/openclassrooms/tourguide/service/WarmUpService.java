@@ -0,0 +1,143 @@
+package com.openclassrooms.tourguide.service;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Phase de préchauffage exécutée au démarrage de l'application.
+ * Le catalogue des attractions est chargé puis les points de récompense de toutes
+ * les attractions sont récupérés en parallèle sur un pool borné, afin que les
+ * premiers appels à {@code calculateRewards} et {@code /getNearbyAttractions} ne
+ * paient pas la latence de RewardCentral. Le chemin de {@code /getNearbyAttractions} est
+ * ensuite exécuté depuis la position de chaque attraction, pour un utilisateur fictif.
+ * L'état du préchauffage est exposé comme indicateur de santé : il reste
+ * {@code OUT_OF_SERVICE} tant que les caches ne sont pas chauds, ce qui permet
+ * de ne router le trafic vers l'instance qu'une fois prête.
+ */
+public class WarmUpService implements HealthIndicator {
+    private final Logger logger = LoggerFactory.getLogger(WarmUpService.class);
+
+    /** Nombre d'attractions demandées par requête de préchauffage, comme {@code /getNearbyAttractions} par défaut. */
+    private static final int NEARBY_LIMIT = 5;
+
+    private final RewardsService rewardsService;
+    private final TourGuideService tourGuideService;
+    private final int parallelism;
+
+    private volatile boolean ready = false;
+    private volatile Duration warmUpTime;
+    private volatile int attractionCount;
+    private volatile int nearbyRequests;
+    private volatile RuntimeException failure;
+
+    /**
+     * @param rewardsService le service dont le catalogue et le cache des points sont préchauffés
+     * @param tourGuideService le service dont le chemin de {@code /getNearbyAttractions} est préchauffé
+     * @param parallelism le nombre maximal d'appels RewardCentral simultanés pendant le préchauffage
+     */
+    public WarmUpService(RewardsService rewardsService, TourGuideService tourGuideService, int parallelism) {
+        this.rewardsService = rewardsService;
+        this.tourGuideService = tourGuideService;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Lance le préchauffage dans un thread dédié, sans bloquer le démarrage du contexte.
+     */
+    public void start() {
+        Thread thread = new Thread(this::warmUp, "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Exécute le préchauffage et mesure sa durée.
+     */
+    public void warmUp() {
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "warm-up-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        StopWatch stopWatch = StopWatch.createStarted();
+        try {
+            rewardsService.getAttractionCatalog().getSnapshot();
+            attractionCount = rewardsService.prefetchRewardPoints(executor);
+            nearbyRequests = warmUpNearbyAttractions(executor);
+            warmUpTime = Duration.ofMillis(stopWatch.getTime());
+            ready = true;
+            logger.info("Warm-up completed: {} attractions prefetched in {} ms", attractionCount, warmUpTime.toMillis());
+        } catch (RuntimeException e) {
+            failure = e;
+            logger.error("Warm-up failed", e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Exécute le chemin de {@code /getNearbyAttractions} depuis la position de chaque attraction,
+     * ce qui remplit aussi le cache des réponses pour les cellules des attractions.
+     * @param executor l'exécuteur borné sur lequel les requêtes sont lancées
+     * @return le nombre de requêtes exécutées
+     */
+    private int warmUpNearbyAttractions(ExecutorService executor) {
+        User user = new User(UUID.randomUUID(), "warm-up", "000", "warm-up@tourGuide.com");
+        List<Attraction> attractions = rewardsService.getAttractionIndex().getAttractions();
+        CompletableFuture<?>[] requests = attractions.stream()
+                .map(attraction -> CompletableFuture.runAsync(() -> {
+                    VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attraction, new Date());
+                    tourGuideService.getNearbyAttractionDTOs(user, visitedLocation, NEARBY_LIMIT);
+                }, executor))
+                .toArray(CompletableFuture<?>[]::new);
+        CompletableFuture.allOf(requests).join();
+        return requests.length;
+    }
+
+    /**
+     * @return {@code true} une fois le préchauffage terminé
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return la durée mesurée du préchauffage, ou {@code null} s'il n'est pas terminé
+     */
+    public Duration getWarmUpTime() {
+        return warmUpTime;
+    }
+
+    @Override
+    public Health health() {
+        if (failure != null) {
+            return Health.down(failure).build();
+        }
+        if (!ready) {
+            return Health.outOfService().withDetail("parallelism", parallelism).build();
+        }
+        return Health.up()
+                .withDetail("attractions", attractionCount)
+                .withDetail("nearbyRequests", nearbyRequests)
+                .withDetail("warmUpTimeMillis", warmUpTime.toMillis())
+                .build();
+    }
+}
@@ -1,108 +1,359 @@
 package com.openclassrooms.tourguide.tracker;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.openclassrooms.tourguide.diagnostics.TrackerCycleEvent;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
 
+import gpsUtil.location.VisitedLocation;
+
 /**
  * Le {@code Tracker} est un composant chargé de suivre et mettre à jour
  * la localisation des utilisateurs à intervalles réguliers
- * Il s'exécute dans un thread dédié et utilise un pool de threads pour
- * paralléliser la mise à jour des localisations lorsque le nombre
- * d'utilisateurs est important
+ * Les cycles démarrent à cadence fixe ({@link Settings#period()}), quelle que soit leur durée.
+ * Chaque cycle dispose d'une échéance ({@link Settings#deadline()}) : les utilisateurs dont
+ * le suivi n'est pas terminé à l'échéance sont traités selon la {@link OverrunPolicy} choisie.
  * Fonctionnalités principales :
  * Récupération de la liste des utilisateurs depuis {@link TourGuideService}
  * Mise à jour de leur position en arrière-plan
+ * Suivi des dépassements d'échéance et de l'ancienneté des positions
  * Gestion de l'arrêt propre via {@link #stopTracking()}
  */
 public class Tracker extends Thread {
     private Logger logger = LoggerFactory.getLogger(Tracker.class);
 
     /**
-     * Intervalle entre deux cycles de suivi des utilisateurs (en secondes).
-     * Ici fixé à 5 minutes.
+     * Traitement des utilisateurs dont le suivi n'est pas terminé à l'échéance d'un cycle.
+     */
+    public enum OverrunPolicy {
+        /** Les demandes en retard sont annulées ; ces utilisateurs attendent le cycle suivant. */
+        SKIP,
+        /** Les demandes en retard continuent ; ces utilisateurs ne sont pas redemandés au cycle suivant. */
+        CARRY_OVER,
+        /**
+         * Les demandes en retard sont annulées, et le cycle suivant ne suit que le nombre d'utilisateurs
+         * traités à temps, en commençant par les positions les plus anciennes : les utilisateurs
+         * les plus récemment mis à jour sont délestés.
+         */
+        SHED
+    }
+
+    /**
+     * Réglages du tracker.
+     * @param period intervalle entre le début de deux cycles
+     * @param deadline durée maximale d'un cycle, au plus égale à la période
+     * @param overrunPolicy traitement des utilisateurs en retard à l'échéance
      */
-    private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
+    public record Settings(Duration period, Duration deadline, OverrunPolicy overrunPolicy) {
 
+        /** Cycles de 5 minutes, échéance à la fin de la période, retards reportés. */
+        public static final Settings DEFAULT =
+                new Settings(Duration.ofMinutes(5), Duration.ofMinutes(5), OverrunPolicy.CARRY_OVER);
+
+        public Settings {
+            if (deadline.compareTo(period) > 0) {
+                throw new IllegalArgumentException("Tracker deadline " + deadline + " exceeds period " + period);
+            }
+        }
+    }
 
     /**
-     * Pool de threads pour exécuter les tâches de suivi des utilisateurs en parallèle.
+     * Pool exécutant la boucle du tracker ; le suivi de chaque utilisateur
+     * est asynchrone et ne mobilise pas son thread.
      */
-    private final ExecutorService executorService = Executors.newFixedThreadPool(100);
+    private final ExecutorService executorService;
+    /** Vrai si le pool a été créé par ce tracker, qui doit alors l'arrêter ; un pool injecté est arrêté par son propriétaire. */
+    private final boolean ownsExecutor;
+    private final Future<?> loop;
 
     private final TourGuideService tourGuideService;
-    private boolean stop = false;
+    private final Settings settings;
+    private volatile boolean stop = false;
+
+    /** Suivis encore en cours, reportés d'un cycle au suivant. */
+    private final Map<User, CompletableFuture<?>> inFlight = new HashMap<>();
+    /** Nombre d'utilisateurs suivis au prochain cycle en mode {@link OverrunPolicy#SHED}. */
+    private int capacity = Integer.MAX_VALUE;
+
+    private final LongAdder cycles = new LongAdder();
+    private final LongAdder overruns = new LongAdder();
+    private final LongAdder skippedUsers = new LongAdder();
+    private final LongAdder carriedOverUsers = new LongAdder();
+    private final LongAdder shedUsers = new LongAdder();
+    private volatile long lastCycleMillis;
+    private volatile Staleness staleness = new Staleness(0, 0, Map.of());
+
+    /**
+     * Constructeur du tracker, avec un thread qui lui est propre ; {@link #stopTracking()} l'arrête.
+     * @param tourGuideService le service principal de l'application, utilisé pour
+     * récupérer les utilisateurs et mettre à jour leurs positions
+     * @param settings la période, l'échéance et le traitement des retards
+     */
+    public Tracker(TourGuideService tourGuideService, Settings settings) {
+        this(tourGuideService, Executors.newSingleThreadExecutor(), true, settings);
+    }
 
     /**
      * Constructeur du tracker
      * @param tourGuideService le service principal de l'application, utilisé pour
      * récupérer les utilisateurs et mettre à jour leurs positions
+     * @param executorService le pool exécutant la boucle du tracker, arrêté par son propriétaire
      */
-    public Tracker(TourGuideService tourGuideService) {
+    public Tracker(TourGuideService tourGuideService, ExecutorService executorService) {
+        this(tourGuideService, executorService, Settings.DEFAULT);
+    }
+
+    /**
+     * Constructeur du tracker
+     * @param tourGuideService le service principal de l'application
+     * @param executorService le pool exécutant la boucle du tracker, arrêté par son propriétaire
+     * @param settings la période, l'échéance et le traitement des retards
+     */
+    public Tracker(TourGuideService tourGuideService, ExecutorService executorService, Settings settings) {
+        this(tourGuideService, executorService, false, settings);
+    }
+
+    private Tracker(TourGuideService tourGuideService, ExecutorService executorService, boolean ownsExecutor,
+                    Settings settings) {
         this.tourGuideService = tourGuideService;
+        this.executorService = executorService;
+        this.ownsExecutor = ownsExecutor;
+        this.settings = settings;
         // Lancement automatique du thread au démarrage
-        executorService.submit(this);
+        this.loop = executorService.submit(this);
     }
 
     /**
      * Permet d'arrêter proprement le suivi des utilisateurs
-     * Cette méthode interrompt la boucle principale et arrête le pool de threads
+     * Cette méthode interrompt la boucle principale ; le pool n'est arrêté que s'il a été créé par ce tracker
      */
     public void stopTracking() {
         stop = true;
-        executorService.shutdownNow();
+        loop.cancel(true);
+        if (ownsExecutor) {
+            executorService.shutdownNow();
+        }
     }
 
     /**
      * Méthode principale exécutée par le thread du tracker
      * Étapes :
-     *   <li>Récupérer la liste des utilisateurs
-     *   <li>Mettre à jour leurs positions via {@link TourGuideService#trackUserLocation(User)}
-     *   <li>Attendre l'intervalle défini avant de recommencer
+     *   <li>Récupérer la liste des utilisateurs à suivre pendant ce cycle
+     *   <li>Mettre à jour leurs positions via {@link TourGuideService#trackUserLocationAsync(User)}
+     *   <li>Attendre au plus l'échéance, puis traiter les retards
+     *   <li>Attendre le début du cycle suivant
      */
     @Override
     public void run() {
-        StopWatch stopWatch = new StopWatch();
+        long periodNanos = settings.period().toNanos();
+        long nextCycleNanos = System.nanoTime();
 
         while (true) {
             if (Thread.currentThread().isInterrupted() || stop) {
                 logger.debug("Tracker stopping");
                 break;
             }
-            // Étape 1 : récupération des utilisateurs
-            List<User> users = tourGuideService.getAllUsers();
-            logger.debug("Begin Tracker. Tracking " + users.size() + " users.");
+            try {
+                runCycle();
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            // Cadence fixe : le cycle suivant part une période après le début de celui-ci,
+            // sans rattrapage en rafale si l'échéance a été dépassée
+            nextCycleNanos = Math.max(nextCycleNanos + periodNanos, System.nanoTime());
+            try {
+                logger.debug("Tracker sleeping");
+                TimeUnit.NANOSECONDS.sleep(nextCycleNanos - System.nanoTime());
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        inFlight.values().forEach(future -> future.cancel(false));
+    }
+
+    /**
+     * Exécute un cycle de suivi.
+     */
+    private void runCycle() throws InterruptedException {
+        StopWatch stopWatch = StopWatch.createStarted();
+        TrackerCycleEvent event = new TrackerCycleEvent();
+        event.begin();
+        event.carriedOver = inFlight.size();
+
+        // Étape 1 : utilisateurs de la partition de ce nœud, hors suivis reportés encore en cours
+        List<User> users = new ArrayList<>();
+        for (User user : tourGuideService.getTrackedUsers()) {
+            if (!inFlight.containsKey(user)) {
+                users.add(user);
+            }
+        }
+        if (settings.overrunPolicy() == OverrunPolicy.SHED && users.size() > capacity) {
+            users.sort(Comparator.comparingLong(Tracker::lastVisitedMillis));
+            shedUsers.add(users.size() - capacity);
+            event.shed = users.size() - capacity;
+            users = users.subList(0, capacity);
+        }
+        logger.debug("Begin Tracker. Tracking " + users.size() + " users, " + inFlight.size() + " carried over.");
 
-            stopWatch.start();
+        event.users = users.size();
 
-            // Étape 2 : mise à jour parallèle des positions
-            users.parallelStream().forEach(user -> {
-                try {
-                    tourGuideService.trackUserLocation(user);
-                } catch (Exception e) {
+        // Étape 2 : mise à jour des positions via la file de fond de l'ordonnanceur GpsUtil,
+        // les requêtes interactives restant prioritaires pendant le cycle
+        for (User user : users) {
+            // Le futur d'origine est conservé : l'annuler retire la demande GpsUtil si elle n'est pas servie
+            CompletableFuture<?> tracking = tourGuideService.trackUserLocationAsync(user);
+            tracking.whenComplete((visitedLocation, e) -> {
+                if (e != null && !(e instanceof CancellationException)) {
                     logger.error("Error tracking user " + user.getUserName(), e);
                 }
             });
+            inFlight.put(user, tracking);
+        }
 
-            stopWatch.stop();
-            logger.debug("Tracker Time Elapsed: {} seconds.", TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
-            stopWatch.reset();
+        // Étape 3 : attente jusqu'à l'échéance, les erreurs individuelles n'interrompant pas l'attente
+        boolean overrun = false;
+        CompletableFuture<?>[] settled = inFlight.values().stream()
+                .map(future -> future.handle((value, e) -> null))
+                .toArray(CompletableFuture<?>[]::new);
+        try {
+            CompletableFuture.allOf(settled).get(settings.deadline().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            overrun = true;
+        } catch (ExecutionException e) {
+            logger.debug("Tracker cycle failed", e);
+        }
 
-            // Étape 3 : pause entre deux cycles
-            try {
-                logger.debug("Tracker sleeping");
-                TimeUnit.SECONDS.sleep(trackingPollingInterval);
-            } catch (InterruptedException e) {
-                break;
+        int before = inFlight.size();
+        inFlight.values().removeIf(CompletableFuture::isDone);
+        int completedOnTime = before - inFlight.size();
+
+        // Étape 4 : traitement des retards
+        if (overrun && !inFlight.isEmpty()) {
+            overruns.increment();
+            int late = inFlight.size();
+            switch (settings.overrunPolicy()) {
+                case CARRY_OVER -> carriedOverUsers.add(late);
+                case SKIP, SHED -> {
+                    skippedUsers.add(late);
+                    inFlight.values().forEach(future -> future.cancel(false));
+                    inFlight.clear();
+                }
             }
+            capacity = Math.max(1, completedOnTime);
+            logger.warn("Tracker cycle overran its {} deadline: {} users late ({})",
+                    settings.deadline(), late, settings.overrunPolicy());
+        } else {
+            capacity = Integer.MAX_VALUE;
         }
+
+        event.completedOnTime = completedOnTime;
+        event.late = overrun ? inFlight.size() : 0;
+        event.overrunPolicy = settings.overrunPolicy().name();
+        event.commit();
+
+        stopWatch.stop();
+        lastCycleMillis = stopWatch.getTime();
+        cycles.increment();
+        staleness = measureStaleness();
+        logger.debug("Tracker Time Elapsed: {} seconds.", TimeUnit.MILLISECONDS.toSeconds(lastCycleMillis));
+    }
+
+    /**
+     * Mesure l'ancienneté de la dernière position de chaque utilisateur suivi.
+     */
+    private Staleness measureStaleness() {
+        long now = System.currentTimeMillis();
+        long maxMillis = 0;
+        int staleCount = 0;
+        long staleAfterMillis = settings.period().toMillis() + settings.deadline().toMillis();
+        List<User> users = tourGuideService.getTrackedUsers();
+        for (User user : users) {
+            long ageMillis = now - lastVisitedMillis(user);
+            maxMillis = Math.max(maxMillis, ageMillis);
+            if (ageMillis > staleAfterMillis) {
+                staleCount++;
+            }
+        }
+        Map<String, Long> stalest = new LinkedHashMap<>();
+        users.stream()
+                .sorted(Comparator.comparingLong(Tracker::lastVisitedMillis))
+                .limit(10)
+                .forEach(user -> stalest.put(user.getUserName(), (now - lastVisitedMillis(user)) / 1000));
+        return new Staleness(maxMillis, staleCount, stalest);
+    }
+
+    private static long lastVisitedMillis(User user) {
+        List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+        return visitedLocations.isEmpty() ? 0 : visitedLocations.get(visitedLocations.size() - 1).timeVisited.getTime();
+    }
+
+    /** @return les réglages du tracker */
+    public Settings getSettings() {
+        return settings;
+    }
+
+    /** @return le nombre de cycles terminés */
+    public long getCycleCount() {
+        return cycles.sum();
+    }
+
+    /** @return le nombre de cycles ayant dépassé leur échéance */
+    public long getOverrunCount() {
+        return overruns.sum();
+    }
+
+    /** @return le nombre de suivis annulés à l'échéance ({@code SKIP} et {@code SHED}) */
+    public long getSkippedUserCount() {
+        return skippedUsers.sum();
+    }
+
+    /** @return le nombre de suivis reportés au cycle suivant ({@code CARRY_OVER}) */
+    public long getCarriedOverUserCount() {
+        return carriedOverUsers.sum();
+    }
+
+    /** @return le nombre d'utilisateurs délestés en début de cycle ({@code SHED}) */
+    public long getShedUserCount() {
+        return shedUsers.sum();
+    }
+
+    /** @return la durée du dernier cycle, en millisecondes */
+    public long getLastCycleMillis() {
+        return lastCycleMillis;
+    }
+
+    /** @return l'ancienneté des positions mesurée à la fin du dernier cycle */
+    public Staleness getStaleness() {
+        return staleness;
+    }
+
+    /**
+     * Ancienneté des positions des utilisateurs suivis.
+     * @param maxMillis l'ancienneté de la position la plus ancienne, en millisecondes
+     * @param staleUsers le nombre d'utilisateurs dont la position date de plus d'une période et une échéance
+     * @param stalestSeconds les dix utilisateurs aux positions les plus anciennes, avec leur ancienneté en secondes
+     */
+    public record Staleness(long maxMillis, int staleUsers, Map<String, Long> stalestSeconds) {
     }
 }
@@ -0,0 +1,157 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Historique des positions d'un utilisateur, trié par date de visite.
+ * Le stockage est un tableau recopié à chaque écriture : les lectures travaillent sur un instantané
+ * sans verrou, et les recherches par période se font par dichotomie sur les dates.
+ * Les positions arrivent presque toujours dans l'ordre, l'insertion se fait alors en fin de tableau.
+ */
+public class LocationHistory {
+
+    private static final VisitedLocation[] EMPTY = new VisitedLocation[0];
+
+    private volatile VisitedLocation[] locations = EMPTY;
+
+    /**
+     * Ajoute une position à sa place dans l'ordre chronologique, après celles de même date.
+     * @param visitedLocation la position
+     */
+    public synchronized void add(VisitedLocation visitedLocation) {
+        locations = insert(locations, visitedLocation);
+    }
+
+    /**
+     * Ajoute plusieurs positions en une seule recopie du tableau.
+     * @param visitedLocations les positions, dans un ordre quelconque
+     */
+    public synchronized void addAll(List<VisitedLocation> visitedLocations) {
+        VisitedLocation[] current = locations;
+        VisitedLocation[] updated = Arrays.copyOf(current, current.length + visitedLocations.size());
+        for (int i = 0; i < visitedLocations.size(); i++) {
+            updated[current.length + i] = visitedLocations.get(i);
+        }
+        // Tri stable : l'ordre d'arrivée est conservé entre positions de même date
+        Arrays.sort(updated, Comparator.comparingLong(LocationHistory::timeOf));
+        locations = updated;
+    }
+
+    /**
+     * Remplace la position la plus récente.
+     * @param visitedLocation la position qui la remplace
+     */
+    public synchronized void replaceLast(VisitedLocation visitedLocation) {
+        VisitedLocation[] current = locations;
+        if (current.length == 0) {
+            locations = new VisitedLocation[] { visitedLocation };
+            return;
+        }
+        locations = insert(Arrays.copyOf(current, current.length - 1), visitedLocation);
+    }
+
+    /**
+     * Vide l'historique.
+     */
+    public synchronized void clear() {
+        locations = EMPTY;
+    }
+
+    /** @return le nombre de positions */
+    public int size() {
+        return locations.length;
+    }
+
+    /** @return la position la plus récente, ou {@code null} si l'historique est vide */
+    public VisitedLocation last() {
+        VisitedLocation[] current = locations;
+        return current.length == 0 ? null : current[current.length - 1];
+    }
+
+    /** @return un instantané non modifiable de l'historique, du plus ancien au plus récent */
+    public List<VisitedLocation> asList() {
+        return Collections.unmodifiableList(Arrays.asList(locations));
+    }
+
+    /**
+     * Recherche les positions d'une période, par ordre chronologique.
+     * @param fromMillis début de la période, inclus, en millisecondes depuis l'époque Unix
+     * @param toMillis fin de la période, exclue
+     * @param limit le nombre maximal de positions de la page
+     * @return la première page de la période
+     */
+    public Page find(long fromMillis, long toMillis, int limit) {
+        return find(fromMillis, 0, toMillis, limit);
+    }
+
+    /**
+     * Recherche les positions d'une période, par ordre chronologique, à partir d'un curseur
+     * (date, rang parmi les positions de cette date). Les positions de même date gardent leur ordre
+     * d'arrivée : le curseur {@link Page#nextFrom()}, {@link Page#nextSkip()} reprend la lecture
+     * exactement après la dernière position de la page, qui ne dépasse jamais {@code limit}.
+     * @param fromMillis début de la période, inclus, en millisecondes depuis l'époque Unix
+     * @param skip le nombre de positions datées de {@code fromMillis} déjà lues
+     * @param toMillis fin de la période, exclue
+     * @param limit le nombre maximal de positions de la page
+     * @return la page commençant au curseur
+     */
+    public Page find(long fromMillis, int skip, long toMillis, int limit) {
+        VisitedLocation[] snapshot = locations;
+        int first = lowerBound(snapshot, fromMillis);
+        int end = Math.max(first, lowerBound(snapshot, toMillis));
+        int sameDateEnd = fromMillis == Long.MAX_VALUE ? snapshot.length : lowerBound(snapshot, fromMillis + 1);
+        int start = Math.min(first + Math.max(0, skip), Math.min(sameDateEnd, end));
+        int pageEnd = start + Math.min(limit, end - start);
+        Long nextFrom = null;
+        int nextSkip = 0;
+        if (pageEnd < end) {
+            nextFrom = timeOf(snapshot[pageEnd]);
+            nextSkip = pageEnd - lowerBound(snapshot, nextFrom);
+        }
+        return new Page(Collections.unmodifiableList(Arrays.asList(snapshot).subList(start, pageEnd)),
+                end - first, nextFrom, nextSkip);
+    }
+
+    /**
+     * Page de positions.
+     * @param locations les positions de la page
+     * @param matching le nombre total de positions de la période
+     * @param nextFrom la date de la première position de la page suivante, ou {@code null} s'il n'y en a pas
+     * @param nextSkip le nombre de positions datées de {@code nextFrom} déjà lues
+     */
+    public record Page(List<VisitedLocation> locations, int matching, Long nextFrom, int nextSkip) {
+    }
+
+    private static VisitedLocation[] insert(VisitedLocation[] current, VisitedLocation visitedLocation) {
+        int index = lowerBound(current, timeOf(visitedLocation) + 1);
+        VisitedLocation[] updated = new VisitedLocation[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        updated[index] = visitedLocation;
+        System.arraycopy(current, index, updated, index + 1, current.length - index);
+        return updated;
+    }
+
+    /** Indice de la première position datée de {@code millis} ou après. */
+    private static int lowerBound(VisitedLocation[] snapshot, long millis) {
+        int low = 0;
+        int high = snapshot.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timeOf(snapshot[middle]) < millis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long timeOf(VisitedLocation visitedLocation) {
+        return visitedLocation.timeVisited.getTime();
+    }
+}
@@ -1,10 +1,15 @@
 package com.openclassrooms.tourguide.user;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
@@ -25,10 +30,14 @@ public class User {
 	private String emailAddress;
     /** Date de la dernière connexion de l'utilisateur. */
 	private Date latestLocationTimestamp;
-    /** Liste des localisations visitées par l'utilisateur. */
-	private List<VisitedLocation> visitedLocations = new CopyOnWriteArrayList<>();
-    /** Liste des récompenses obtenues par l'utilisateur. */
-    private List<UserReward> userRewards = new CopyOnWriteArrayList<>();
+    /** Historique des localisations visitées par l'utilisateur, trié par date. */
+	private final LocationHistory locationHistory = new LocationHistory();
+    /** Récompenses obtenues, indexées par nom d'attraction : l'insertion y décide de l'unique gagnant. */
+	private final ConcurrentMap<String, UserReward> rewardsByAttraction = new ConcurrentHashMap<>();
+    /** Récompenses obtenues dans l'ordre d'attribution ; le tableau publié n'est jamais modifié. */
+	private final AtomicReference<UserReward[]> userRewards = new AtomicReference<>(new UserReward[0]);
+    /** Version des récompenses, incrémentée à chaque récompense ajoutée. */
+	private final AtomicLong rewardsVersion = new AtomicLong();
     /** Préférences de voyage de l'utilisateur. */
 	private UserPreferences userPreferences = new UserPreferences();
     /** Liste des fournisseurs de services touristiques associés à l'utilisateur. */
@@ -116,40 +125,92 @@ public class User {
      * @param visitedLocation la localisation visitée à ajouter
      */
 	public void addToVisitedLocations(VisitedLocation visitedLocation) {
-		visitedLocations.add(visitedLocation);
+		locationHistory.add(visitedLocation);
+	}
+
+    /**
+     * Ajoute plusieurs localisations visitées à l'historique de l'utilisateur.
+     * @param visitedLocations les localisations à ajouter
+     */
+	public void addAllToVisitedLocations(List<VisitedLocation> visitedLocations) {
+		locationHistory.addAll(visitedLocations);
+	}
+
+    /**
+     * Remplace la dernière localisation visitée, retirée de l'historique par la compression de trajectoire.
+     * @param visitedLocation la localisation qui la remplace
+     */
+	public void replaceLastVisitedLocation(VisitedLocation visitedLocation) {
+		locationHistory.replaceLast(visitedLocation);
 	}
 
     /**
      * Récupère la liste des localisations visitées par l'utilisateur
-     * @return la liste des localisations visitées
+     * @return un instantané des localisations visitées, triées par date
      */
 	public List<VisitedLocation> getVisitedLocations() {
-		return visitedLocations;
+		return locationHistory.asList();
+	}
+
+    /**
+     * Récupère l'historique des localisations, interrogeable par période
+     * @return l'historique des localisations
+     */
+	public LocationHistory getLocationHistory() {
+		return locationHistory;
 	}
 
 	public void clearVisitedLocations() {
-		visitedLocations.clear();
+		locationHistory.clear();
 	}
 
     /**
      * Ajoute une récompense à la liste des récompenses de l'utilisateur
      * en évitant les doublons pour une même attraction
+     * Sans verrou : l'insertion dans l'index par attraction désigne l'unique gagnant,
+     * qui ajoute ensuite la récompense à la liste par compare-and-set
      * @param userReward la récompense à ajouter
+     * @return {@code true} si la récompense a été ajoutée, {@code false} si l'attraction était déjà récompensée
+     */
+	public boolean addUserReward(UserReward userReward) {
+		if (rewardsByAttraction.putIfAbsent(userReward.attraction.attractionName, userReward) != null) {
+			return false;
+		}
+		UserReward[] current;
+		UserReward[] updated;
+		do {
+			current = userRewards.get();
+			updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = userReward;
+		} while (!userRewards.compareAndSet(current, updated));
+		rewardsVersion.incrementAndGet();
+		return true;
+	}
+
+    /**
+     * Indique si l'utilisateur a déjà été récompensé pour une attraction
+     * @param attractionName le nom de l'attraction
+     * @return {@code true} si une récompense existe pour cette attraction
      */
-    public void addUserReward(UserReward userReward) {
-        boolean alreadyRewarded = userRewards.stream()
-                .anyMatch(r -> r.attraction.attractionName.equals(userReward.attraction.attractionName));
-        if (!alreadyRewarded) {
-            userRewards.add(userReward);
-        }
-    }
+	public boolean hasUserReward(String attractionName) {
+		return rewardsByAttraction.containsKey(attractionName);
+	}
+
+    /**
+     * Récupère la version des récompenses de l'utilisateur
+     * Elle change à chaque nouvelle récompense et sert d'ETag aux lectures de {@code /getRewards}
+     * @return la version courante
+     */
+	public long getRewardsVersion() {
+		return rewardsVersion.get();
+	}
 
     /**
      * Récupère la liste des récompenses obtenues par l'utilisateur
-     * @return la liste des récompenses
+     * @return un instantané non modifiable des récompenses, dans l'ordre d'attribution
      */
 	public List<UserReward> getUserRewards() {
-		return userRewards;
+		return Collections.unmodifiableList(Arrays.asList(userRewards.get()));
 	}
 
     /**
@@ -173,7 +234,7 @@ public class User {
      * @return la dernière localisation visitée ou {@code null} si aucune n'existe
      */
 	public VisitedLocation getLastVisitedLocation() {
-		return visitedLocations.get(visitedLocations.size() - 1);
+		return locationHistory.last();
 	}
 
     /**
@@ -16,22 +16,35 @@ public class UserReward {
 	public final Attraction attraction;
     /** Points de récompense gagnés pour cette visite. */
 	private int rewardPoints;
+    /** Date d'attribution, en millisecondes depuis l'époque Unix ; postérieure à la visite. */
+	private final long grantedAt;
 
     /**
-     * Crée une nouvelle récompense utilisateur
+     * Crée une nouvelle récompense utilisateur, attribuée maintenant
      * @param visitedLocation la localisation visitée par l'utilisateur
      * @param attraction l'attraction liée à la localisation
      * @param rewardPoints le nombre de points attribués
      */
 	public UserReward(VisitedLocation visitedLocation, Attraction attraction, int rewardPoints) {
+		this(visitedLocation, attraction, rewardPoints, System.currentTimeMillis());
+	}
+
+    /**
+     * Recrée une récompense attribuée à une date connue, par exemple lue dans un point de reprise
+     * @param visitedLocation la localisation visitée par l'utilisateur
+     * @param attraction l'attraction liée à la localisation
+     * @param rewardPoints le nombre de points attribués
+     * @param grantedAt la date d'attribution, en millisecondes depuis l'époque Unix
+     */
+	public UserReward(VisitedLocation visitedLocation, Attraction attraction, int rewardPoints, long grantedAt) {
 		this.visitedLocation = visitedLocation;
 		this.attraction = attraction;
 		this.rewardPoints = rewardPoints;
+		this.grantedAt = grantedAt;
 	}
 	
 	public UserReward(VisitedLocation visitedLocation, Attraction attraction) {
-		this.visitedLocation = visitedLocation;
-		this.attraction = attraction;
+		this(visitedLocation, attraction, 0);
 	}
 
     /**
@@ -49,5 +62,13 @@ public class UserReward {
 	public int getRewardPoints() {
 		return rewardPoints;
 	}
+
+    /**
+     * Récupère la date d'attribution de la récompense
+     * @return la date d'attribution, en millisecondes depuis l'époque Unix
+     */
+	public long getGrantedAt() {
+		return grantedAt;
+	}
 	
 }
@@ -0,0 +1,67 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.helper.RecordStreamEncoder;
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+/**
+ * Classe de test de la diffusion au fil de l'eau des positions de tous les utilisateurs.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TestAllCurrentLocations {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private TourGuideService tourGuideService;
+
+    /**
+     * Le contexte, partagé entre les classes de test, doit être créé avec les utilisateurs internes
+     * par défaut, quel que soit le nombre laissé par un test précédent.
+     */
+	@BeforeAll
+	public static void useDefaultInternalUsers() {
+		InternalTestHelper.setInternalUserNumber(100);
+	}
+
+    /**
+     * Vérifie que {@code /getAllCurrentLocations} diffuse une ligne NDJSON par utilisateur
+     * situé dans la zone demandée.
+     */
+	@Test
+	public void currentLocationsAreStreamedAsNdjson() throws Exception {
+		MvcResult result = mockMvc.perform(get("/getAllCurrentLocations").param("minLatitude", "0"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		String body = mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(RecordStreamEncoder.NDJSON))
+				.andReturn().getResponse().getContentAsString();
+
+		// Le tracker déplace les utilisateurs pendant le test : seul le filtrage est vérifié exactement.
+		String[] lines = body.split("\n");
+		assertTrue(lines.length > 0 && lines.length <= tourGuideService.getAllUsers().size());
+		ObjectMapper mapper = new ObjectMapper();
+		for (String line : lines) {
+			assertTrue(mapper.readTree(line).get("latitude").asDouble() >= 0);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Mesure des allocations des chemins chauds de l'évaluation de proximité et des récompenses.
+ * Les octets alloués par opération sont lus sur le thread courant ; en régime établi, ils ne
+ * doivent pas dépendre du nombre de couples position/attraction évalués.
+ */
+public class TestAllocation {
+
+	private static final int WARM_UP = 2_000;
+	private static final int OPERATIONS = 2_000;
+
+    /**
+     * Recalcule les récompenses d'un utilisateur déjà récompensé pour toutes les attractions,
+     * avec un millier de positions autour de celles-ci : seules les allocations par appel restent.
+     */
+	@Test
+	public void rewardEvaluationAllocatesNothingPerPair() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		List<Attraction> attractions = rewardsService.getAttractionIndex().getAttractions();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		SplittableRandom random = new SplittableRandom(42);
+		for (int i = 0; i < 1_000; i++) {
+			Attraction attraction = attractions.get(i % attractions.size());
+			Location location = new Location(attraction.latitude + random.nextDouble(-0.1, 0.1),
+					attraction.longitude + random.nextDouble(-0.1, 0.1));
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, new Date(i)));
+		}
+		rewardsService.calculateRewards(user);
+		assertEquals(attractions.size(), user.getUserRewards().size());
+
+		double bytesPerCall = bytesPerOperation(() -> rewardsService.calculateRewardsAsync(user).join());
+		double bytesPerPair = bytesPerCall / (1_000.0 * attractions.size());
+		System.out.printf("calculateRewards: %.0f bytes/op, %.3f bytes/pair%n", bytesPerCall, bytesPerPair);
+
+		// Les allocations par appel (instantané de l'historique, tampon, futur) tiennent en quelques centaines d'octets
+		assertTrue(bytesPerCall < 1_024, bytesPerCall + " bytes/op");
+	}
+
+    /**
+     * Vérifie qu'une position éloignée de toute attraction est évaluée sans allocation.
+     */
+	@Test
+	public void proximityMissAllocatesNothing() {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		Location location = new Location(0, 0);
+		assertFalse(rewardsService.isNearAnyAttraction(location));
+
+		double bytesPerCall = bytesPerOperation(() -> {
+			rewardsService.isNearAnyAttraction(location);
+			rewardsService.getAttractionsInProximity(location);
+		});
+		System.out.printf("proximity miss: %.1f bytes/op%n", bytesPerCall);
+
+		assertTrue(bytesPerCall < 8, bytesPerCall + " bytes/op");
+	}
+
+	private static double bytesPerOperation(Runnable operation) {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "thread allocation counters unavailable");
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threads.isThreadAllocatedMemorySupported(), "thread allocation counters unsupported");
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		for (int i = 0; i < WARM_UP; i++) {
+			operation.run();
+		}
+		long before = threads.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < OPERATIONS; i++) {
+			operation.run();
+		}
+		long after = threads.getCurrentThreadAllocatedBytes();
+		return (double) (after - before) / OPERATIONS;
+	}
+}
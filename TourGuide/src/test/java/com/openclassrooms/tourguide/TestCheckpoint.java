@@ -0,0 +1,139 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.CheckpointService;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * Classe de test des points de reprise de l'état des utilisateurs.
+ */
+public class TestCheckpoint {
+
+	private final List<ExecutorService> executors = new ArrayList<>();
+	private final List<TourGuideService> services = new ArrayList<>();
+
+    /**
+     * Arrête les pools et les services créés par le test et rétablit le nombre d'utilisateurs internes.
+     */
+	@AfterEach
+	public void closeResources() {
+		executors.forEach(ExecutorService::shutdownNow);
+		services.forEach(TourGuideService::close);
+		InternalTestHelper.setInternalUserNumber(100);
+	}
+
+    /**
+     * Un point de reprise écrit en plusieurs parties restaure les mêmes utilisateurs,
+     * historiques et récompenses ; seuls les points de reprise les plus récents sont conservés.
+     */
+	@Test
+	public void checkpointRoundTrip(@TempDir Path directory) throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService source = service(new TourGuideService(gpsUtil, rewardsService));
+		source.tracker.stopTracking();
+		Attraction attraction = rewardsService.getAttractionIndex().getAttractions().get(0);
+		for (int i = 0; i < 250; i++) {
+			User user = new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com");
+			user.getUserPreferences().setTripDuration(i % 7 + 1);
+			for (int j = 0; j < 10; j++) {
+				user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(j, i), new Date(j * 1000L)));
+			}
+			user.addUserReward(new UserReward(user.getLastVisitedLocation(), attraction, i));
+			source.addUser(user);
+		}
+
+		CheckpointService writer = new CheckpointService(source, rewardsService, executor(Executors.newFixedThreadPool(4)),
+				directory, Duration.ofMinutes(15), 100, 1, false);
+		writer.checkpoint();
+		Thread.sleep(5);
+		CheckpointService.Report written = writer.checkpoint();
+		assertEquals(250, written.users());
+		assertEquals(2500, written.locations());
+		assertEquals(250, written.rewards());
+		try (Stream<Path> checkpoints = Files.list(directory)) {
+			assertEquals(1, checkpoints.count());
+		}
+
+		TourGuideService target = service(new TourGuideService(gpsUtil, rewardsService));
+		target.tracker.stopTracking();
+		CheckpointService reader = new CheckpointService(target, rewardsService, executor(Executors.newFixedThreadPool(4)),
+				directory, Duration.ofMinutes(15), 100, 1, false);
+		CheckpointService.Report restored = reader.restore(reader.latestCheckpoint().orElseThrow());
+
+		assertEquals(250, restored.users());
+		assertTrue(restored.usersPerSecond() > 0);
+		User original = source.getUser("user42");
+		User copy = target.getUser("user42");
+		assertEquals(original.getUserId(), copy.getUserId());
+		assertEquals(42 % 7 + 1, copy.getUserPreferences().getTripDuration());
+		assertEquals(10, copy.getVisitedLocations().size());
+		assertEquals(original.getLastVisitedLocation().timeVisited, copy.getLastVisitedLocation().timeVisited);
+		assertEquals(42, copy.getUserRewards().get(0).getRewardPoints());
+		assertEquals(attraction.attractionId, copy.getUserRewards().get(0).attraction.attractionId);
+		assertEquals(original.getUserRewards().get(0).getGrantedAt(), copy.getUserRewards().get(0).getGrantedAt());
+	}
+
+    /**
+     * La coupure porte sur la date d'attribution des récompenses : une récompense attribuée après le début
+     * du point de reprise n'y figure pas, même pour une visite ancienne.
+     */
+	@Test
+	public void rewardsAreCutOnGrantTime(@TempDir Path directory) throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService source = service(new TourGuideService(gpsUtil, rewardsService));
+		source.tracker.stopTracking();
+		List<Attraction> attractions = rewardsService.getAttractionIndex().getAttractions();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation oldVisit = new VisitedLocation(user.getUserId(), new Location(0, 0), new Date(1000));
+		user.addToVisitedLocations(oldVisit);
+		user.addUserReward(new UserReward(oldVisit, attractions.get(0), 10, 2000));
+		user.addUserReward(new UserReward(oldVisit, attractions.get(1), 20, System.currentTimeMillis() + 60_000));
+		source.addUser(user);
+
+		CheckpointService writer = new CheckpointService(source, rewardsService, executor(Executors.newFixedThreadPool(2)),
+				directory, Duration.ofMinutes(15), 100, 1, false);
+		CheckpointService.Report written = writer.checkpoint();
+
+		assertEquals(1, written.rewards());
+	}
+
+	private ExecutorService executor(ExecutorService executor) {
+		executors.add(executor);
+		return executor;
+	}
+
+	private TourGuideService service(TourGuideService service) {
+		services.add(service);
+		return service;
+	}
+}
@@ -0,0 +1,228 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.cluster.ClusterMembership;
+import com.openclassrooms.tourguide.cluster.ClusterRoutingInterceptor;
+import com.openclassrooms.tourguide.cluster.ConsistentHashRing;
+import com.openclassrooms.tourguide.cluster.UserHandoff;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Classe de test du partitionnement des utilisateurs entre plusieurs nœuds.
+ * Vérifie la répartition par hachage cohérent et la transmission des requêtes
+ * au nœud propriétaire, avec plusieurs instances lancées dans la même JVM.
+ */
+public class TestCluster {
+
+	private static final String SECRET = "test-secret";
+
+    /**
+     * Vérifie que l'ajout d'un nœud ne déplace qu'une fraction des utilisateurs,
+     * tous vers le nouveau nœud.
+     */
+	@Test
+	public void addingNodeMovesOnlyItsShare() {
+		ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c"));
+		ConsistentHashRing after = new ConsistentHashRing(List.of("a", "b", "c", "d"));
+
+		int users = 10000;
+		long moved = IntStream.range(0, users)
+				.mapToObj(i -> "internalUser" + i)
+				.filter(userName -> !before.ownerOf(userName).equals(after.ownerOf(userName)))
+				.peek(userName -> assertEquals("d", after.ownerOf(userName)))
+				.count();
+
+		assertTrue(moved > users * 0.15 && moved < users * 0.35, "moved " + moved);
+	}
+
+    /**
+     * Lance deux nœuds dans la JVM et vérifie qu'une requête reçue par un nœud
+     * pour un utilisateur de l'autre est transmise et traitée par le propriétaire,
+     * et que chaque tracker ne suit que sa partition.
+     */
+	@Test
+	public void requestsAreForwardedToOwningNode() throws Exception {
+		InternalTestHelper.setInternalUserNumber(20);
+		ConfigurableApplicationContext nodeA = startNode("a");
+		ConfigurableApplicationContext nodeB = startNode("b");
+		try {
+			Map<String, String> members = Map.of("a", baseUrl(nodeA), "b", baseUrl(nodeB));
+			nodeA.getBean(ClusterMembership.class).updateMembers(members);
+			nodeB.getBean(ClusterMembership.class).updateMembers(members);
+
+			String userOfB = userOf(nodeA, "b").getUserName();
+
+			HttpResponse<String> response = HttpClient.newHttpClient().send(
+					HttpRequest.newBuilder(URI.create(baseUrl(nodeA) + "/getLocation?userName=" + userOfB)).build(),
+					HttpResponse.BodyHandlers.ofString());
+
+			assertEquals(200, response.statusCode());
+			assertEquals("b", response.headers().firstValue(ClusterRoutingInterceptor.NODE_HEADER).orElse(null));
+
+			int trackedByA = nodeA.getBean(TourGuideService.class).getTrackedUsers().size();
+			int trackedByB = nodeB.getBean(TourGuideService.class).getTrackedUsers().size();
+			assertEquals(20, trackedByA + trackedByB);
+		} finally {
+			nodeA.close();
+			nodeB.close();
+		}
+	}
+
+    /**
+     * Vérifie que le changement de composition passe par le secret partagé, puis que le nœud
+     * qui perd un utilisateur remet son état, y compris sa dernière position, au nouveau propriétaire.
+     */
+	@Test
+	public void ownerChangeHandsUserOff() throws Exception {
+		InternalTestHelper.setInternalUserNumber(20);
+		ConfigurableApplicationContext nodeA = startNode("a");
+		ConfigurableApplicationContext nodeB = startNode("b");
+		try {
+			String members = "{\"a\":\"" + baseUrl(nodeA) + "\",\"b\":\"" + baseUrl(nodeB) + "\"}";
+			assertEquals(403, putMembers(nodeA, members, null).statusCode());
+			assertEquals(403, putMembers(nodeA, members, "wrong").statusCode());
+			assertEquals(1, nodeA.getBean(ClusterMembership.class).getMembers().size());
+
+			ClusterMembership future = new ClusterMembership("a", Map.of("a", "", "b", ""));
+			User movedUser = nodeA.getBean(TourGuideService.class).getAllUsers().stream()
+					.filter(user -> future.ownerOf(user.getUserId()).equals("b"))
+					.findFirst()
+					.orElseThrow();
+			VisitedLocation visitedLocation = new VisitedLocation(movedUser.getUserId(), new Location(12.5, 45.5), new Date());
+			movedUser.addToVisitedLocations(visitedLocation);
+
+			assertEquals(200, putMembers(nodeA, members, SECRET).statusCode());
+			assertEquals(200, putMembers(nodeB, members, SECRET).statusCode());
+
+			TourGuideService serviceOfB = nodeB.getBean(TourGuideService.class);
+			long deadline = System.currentTimeMillis() + 10_000;
+			while (!hasLocation(serviceOfB.getUser(movedUser.getUserName()), visitedLocation)
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(50);
+			}
+			assertTrue(hasLocation(serviceOfB.getUser(movedUser.getUserName()), visitedLocation));
+			assertTrue(nodeB.getBean(ClusterMembership.class).isLocal(movedUser.getUserId()));
+		} finally {
+			nodeA.close();
+			nodeB.close();
+		}
+	}
+
+    /**
+     * Vérifie qu'une requête groupée reçue par un nœud est découpée par propriétaire :
+     * l'utilisateur de l'autre nœud est servi par celui-ci, un nom inconnu reste à {@code null}.
+     */
+	@Test
+	public void batchRequestsAreSplitByOwner() throws Exception {
+		InternalTestHelper.setInternalUserNumber(20);
+		ConfigurableApplicationContext nodeA = startNode("a");
+		ConfigurableApplicationContext nodeB = startNode("b");
+		try {
+			ClusterMembership future = new ClusterMembership("a", Map.of("a", "", "b", ""));
+			String userOfA = ownedBy(nodeA, future, "a").getUserName();
+			String userOfB = ownedBy(nodeA, future, "b").getUserName();
+			TourGuideService serviceOfB = nodeB.getBean(TourGuideService.class);
+			serviceOfB.tracker.stopTracking();
+			User handedOff = serviceOfB.getUser(userOfB);
+
+			Map<String, String> members = Map.of("a", baseUrl(nodeA), "b", baseUrl(nodeB));
+			nodeA.getBean(ClusterMembership.class).updateMembers(members);
+			nodeB.getBean(ClusterMembership.class).updateMembers(members);
+			// A remet à B l'état de ses utilisateurs : la position de test est ajoutée après cette remise
+			long deadline = System.currentTimeMillis() + 10_000;
+			while (serviceOfB.getUser(userOfB) == handedOff && System.currentTimeMillis() < deadline) {
+				Thread.sleep(50);
+			}
+			User copyOnB = serviceOfB.getUser(userOfB);
+			copyOnB.addToVisitedLocations(new VisitedLocation(copyOnB.getUserId(), new Location(12.5, 45.5), new Date()));
+
+			HttpResponse<String> response = HttpClient.newHttpClient().send(
+					HttpRequest.newBuilder(URI.create(baseUrl(nodeA) + "/batch/getLocations"))
+							.header("Content-Type", "application/json")
+							.POST(HttpRequest.BodyPublishers.ofString(
+									"[\"" + userOfB + "\",\"unknown\",\"" + userOfA + "\"]"))
+							.build(),
+					HttpResponse.BodyHandlers.ofString());
+
+			assertEquals(200, response.statusCode());
+			JsonNode locations = new ObjectMapper().readTree(response.body());
+			assertEquals(List.of(userOfB, "unknown", userOfA), fieldNames(locations));
+			assertEquals(12.5, locations.get(userOfB).get("location").get("latitude").asDouble());
+			assertTrue(locations.get("unknown").isNull());
+			assertTrue(locations.get(userOfA).has("location"));
+		} finally {
+			nodeA.close();
+			nodeB.close();
+		}
+	}
+
+	private User ownedBy(ConfigurableApplicationContext context, ClusterMembership membership, String nodeId) {
+		return context.getBean(TourGuideService.class).getAllUsers().stream()
+				.filter(user -> membership.ownerOf(user.getUserId()).equals(nodeId))
+				.findFirst()
+				.orElseThrow();
+	}
+
+	private List<String> fieldNames(JsonNode node) {
+		List<String> values = new ArrayList<>();
+		node.fieldNames().forEachRemaining(values::add);
+		return values;
+	}
+
+	private boolean hasLocation(User user, VisitedLocation visitedLocation) {
+		return user.getVisitedLocations().stream().anyMatch(location -> location.location.latitude == visitedLocation.location.latitude
+				&& location.timeVisited.equals(visitedLocation.timeVisited));
+	}
+
+	private User userOf(ConfigurableApplicationContext context, String nodeId) {
+		ClusterMembership membership = context.getBean(ClusterMembership.class);
+		return context.getBean(TourGuideService.class).getAllUsers().stream()
+				.filter(user -> membership.ownerOf(user.getUserId()).equals(nodeId))
+				.findFirst()
+				.orElseThrow();
+	}
+
+	private HttpResponse<String> putMembers(ConfigurableApplicationContext context, String members, String secret)
+			throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl(context) + "/cluster/members"))
+				.header("Content-Type", "application/json")
+				.PUT(HttpRequest.BodyPublishers.ofString(members));
+		if (secret != null) {
+			request.header(UserHandoff.SECRET_HEADER, secret);
+		}
+		return HttpClient.newHttpClient().send(request.build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private ConfigurableApplicationContext startNode(String nodeId) {
+		return new SpringApplicationBuilder(TourguideApplication.class)
+				.run("--server.port=0", "--tourguide.cluster.node-id=" + nodeId, "--tourguide.cluster.secret=" + SECRET);
+	}
+
+	private String baseUrl(ConfigurableApplicationContext context) {
+		return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+	}
+}
@@ -0,0 +1,115 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Classe de test du format binaire des réponses.
+ * Vérifie que la négociation de contenu sert du CBOR aux clients qui le demandent,
+ * que la projection allégée des récompenses est plus compacte que le JSON complet,
+ * et que les récompenses sont servies de façon conditionnelle par ETag.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TestCompactEncoding {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private TourGuideService tourGuideService;
+
+    /**
+     * Le contexte, partagé entre les classes de test, doit être créé avec les utilisateurs internes
+     * par défaut, quel que soit le nombre laissé par un test précédent.
+     */
+	@BeforeAll
+	public static void useDefaultInternalUsers() {
+		InternalTestHelper.setInternalUserNumber(100);
+	}
+
+    /**
+     * Vérifie que {@code /getRewards} renvoie la projection allégée en CBOR.
+     */
+	@Test
+	public void rewardsAreServedAsCompactCbor() throws Exception {
+		User user = tourGuideService.getUser("internalUser0");
+		VisitedLocation visitedLocation = user.getLastVisitedLocation();
+		Attraction attraction = tourGuideService.getNearByAttractions(visitedLocation).get(0);
+		user.addUserReward(new UserReward(visitedLocation, attraction, 42));
+
+		byte[] cbor = mockMvc.perform(get("/getRewards").param("userName", "internalUser0")
+						.accept(MediaType.APPLICATION_CBOR))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+				.andReturn().getResponse().getContentAsByteArray();
+		byte[] json = mockMvc.perform(get("/getRewards").param("userName", "internalUser0")
+						.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsByteArray();
+
+		List<Map<String, Object>> rewards = new CBORMapper().readValue(cbor, new TypeReference<>() {});
+		Map<String, Object> reward = rewards.stream()
+				.filter(r -> attraction.attractionName.equals(r.get("attractionName")))
+				.findFirst()
+				.orElseThrow();
+
+		assertEquals(42, reward.get("rewardPoints"));
+		assertEquals(visitedLocation.timeVisited.getTime(), ((Number) reward.get("timeVisited")).longValue());
+		assertTrue(cbor.length * 2 < json.length, cbor.length + " bytes vs " + json.length);
+	}
+
+    /**
+     * Vérifie que {@code /getRewards} répond 304 tant que les récompenses n'ont pas changé.
+     */
+	@Test
+	public void rewardsAreServedConditionally() throws Exception {
+		User user = new User(UUID.randomUUID(), "etagUser", "000", "etagUser@tourGuide.com");
+		tourGuideService.addUser(user);
+
+		String eTag = mockMvc.perform(get("/getRewards").param("userName", "etagUser"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		mockMvc.perform(get("/getRewards").param("userName", "etagUser").header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(status().isNotModified());
+
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(0, 0), new Date());
+		Attraction attraction = tourGuideService.getNearByAttractions(visitedLocation).get(0);
+		user.addUserReward(new UserReward(visitedLocation, attraction, 42));
+
+		String newETag = mockMvc.perform(get("/getRewards").param("userName", "etagUser")
+						.header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotEquals(eTag, newETag);
+	}
+}
@@ -0,0 +1,106 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import gpsUtil.GpsUtil;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.cluster.ClusterMembership;
+import com.openclassrooms.tourguide.diagnostics.DiagnosticsRecorder;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.GpsUtilScheduler;
+import com.openclassrooms.tourguide.service.InternalUserGenerator;
+import com.openclassrooms.tourguide.service.NearbyAttractionsCache;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideExecutors;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TrajectoryCompressor;
+import com.openclassrooms.tourguide.service.UserUpdatePublisher;
+import com.openclassrooms.tourguide.service.VisitAggregates;
+import com.openclassrooms.tourguide.tracker.Tracker;
+
+/**
+ * Classe de test des événements JFR et des enregistrements à la demande.
+ */
+public class TestDiagnostics {
+
+    /**
+     * Enregistre quelques cycles du tracker et vérifie que le fichier téléchargeable contient
+     * les cycles, le suivi de chaque utilisateur, l'évaluation des récompenses et les appels externes.
+     */
+	@Test
+	public void recordingCapturesTrackerEvents(@TempDir Path directory) throws Exception {
+		DiagnosticsRecorder recorder = new DiagnosticsRecorder(directory, Duration.ofMinutes(1), 10_000_000);
+		recorder.start(Duration.ofMinutes(5), "default");
+		assertEquals(Duration.ofMinutes(1), recorder.status().duration());
+		assertThrows(IllegalStateException.class, () -> recorder.start(Duration.ofMinutes(1), "default"));
+
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		InternalTestHelper.setInternalUserNumber(5);
+		TourGuideService tourGuideService = new TourGuideService(new GpsUtilScheduler(gpsUtil, 1000, 4),
+				rewardsService, ClusterMembership.standalone(), new UserUpdatePublisher(), new TourGuideExecutors(),
+				new Tracker.Settings(Duration.ofMillis(200), Duration.ofMillis(200), Tracker.OverrunPolicy.CARRY_OVER),
+				TrajectoryCompressor.disabled(rewardsService), new VisitAggregates(),
+				new NearbyAttractionsCache(), InternalUserGenerator.defaults());
+		TimeUnit.MILLISECONDS.sleep(2500);
+		tourGuideService.tracker.stopTracking();
+
+		DiagnosticsRecorder.Status stopped = recorder.stop();
+		assertEquals("CLOSED", stopped.state());
+		Path file = recorder.getFile();
+		assertEquals(file.getFileName().toString(), stopped.file());
+		assertTrue(stopped.sizeBytes() > 0);
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		recorder.shutdown();
+
+		Map<String, List<RecordedEvent>> byType = events.stream()
+				.filter(event -> event.getEventType().getName().startsWith("com.openclassrooms.tourguide."))
+				.collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+		List<RecordedEvent> cycles = byType.getOrDefault("com.openclassrooms.tourguide.TrackerCycle", List.of());
+		assertTrue(cycles.size() >= 2, "cycles " + cycles.size());
+		assertTrue(cycles.stream().anyMatch(cycle -> cycle.getInt("users") == 5));
+		assertTrue(byType.getOrDefault("com.openclassrooms.tourguide.UserTracking", List.of()).stream()
+				.anyMatch(tracking -> "completed".equals(tracking.getString("outcome"))));
+		assertTrue(byType.containsKey("com.openclassrooms.tourguide.RewardEvaluation"));
+		Map<String, Long> calls = byType.getOrDefault("com.openclassrooms.tourguide.ExternalCall", List.of()).stream()
+				.collect(Collectors.groupingBy(call -> call.getString("service"), Collectors.counting()));
+		assertTrue(calls.getOrDefault("gpsUtil", 0L) >= 5, "calls " + calls);
+		assertTrue(calls.getOrDefault("rewardCentral", 0L) >= 1, "calls " + calls);
+	}
+
+    /**
+     * Sans répertoire configuré, les enregistrements sont refusés : aucun n'est démarré.
+     */
+	@Test
+	public void unconfiguredInstanceRejectsRecordings() {
+		DiagnosticsController controller = new DiagnosticsController();
+		controller.diagnosticsRecorder = new DiagnosticsRecorder(null, Duration.ofMinutes(1), 10_000_000);
+
+		ResponseStatusException e = assertThrows(ResponseStatusException.class,
+				() -> controller.startRecording(Duration.ofMinutes(1), "default"));
+
+		assertEquals(HttpStatus.FORBIDDEN, e.getStatusCode());
+		assertThrows(ResponseStatusException.class, controller::downloadRecording);
+		assertNull(controller.diagnosticsRecorder.status());
+		assertThrows(IllegalStateException.class,
+				() -> controller.diagnosticsRecorder.start(Duration.ofMinutes(1), "default"));
+	}
+}
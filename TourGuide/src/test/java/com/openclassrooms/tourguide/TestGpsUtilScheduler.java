@@ -0,0 +1,83 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.service.GpsUtilScheduler;
+import com.openclassrooms.tourguide.service.GpsUtilScheduler.Lane;
+
+/**
+ * Classe de test de l'ordonnanceur GpsUtil.
+ * Vérifie que les requêtes interactives passent devant les requêtes du tracker
+ * et que chaque ordonnanceur tient son propre budget d'appels.
+ */
+public class TestGpsUtilScheduler {
+
+    /**
+     * Une requête interactive soumise derrière une file de requêtes du tracker
+     * doit être servie avant la quasi-totalité de celles-ci.
+     */
+	@Test
+	public void interactiveRequestsOvertakeBackgroundQueue() {
+		GpsUtilScheduler scheduler = new GpsUtilScheduler(new GpsUtil(), 50, 1);
+
+		List<CompletableFuture<VisitedLocation>> background = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			background.add(scheduler.getUserLocation(UUID.randomUUID(), Lane.BACKGROUND));
+		}
+		UUID userId = UUID.randomUUID();
+		VisitedLocation visitedLocation = scheduler.getUserLocation(userId, Lane.INTERACTIVE).join();
+		long backgroundServed = scheduler.getBackgroundCompletedCount();
+
+		CompletableFuture.allOf(background.toArray(CompletableFuture<?>[]::new)).join();
+		scheduler.shutdown();
+
+		assertEquals(userId, visitedLocation.userId);
+		assertTrue(backgroundServed <= 2);
+		assertEquals(20, scheduler.getBackgroundCompletedCount());
+	}
+
+    /**
+     * Un ordonnanceur saturé par d'autres appelants ne ralentit pas les permis d'un autre ordonnanceur :
+     * 100 permis à 1000 par seconde sont obtenus en une centaine de millisecondes.
+     */
+	@Test
+	public void schedulersOwnTheirBudget() throws Exception {
+		GpsUtilScheduler busy = new GpsUtilScheduler(new GpsUtil(), 1000, 1);
+		GpsUtilScheduler idle = new GpsUtilScheduler(new GpsUtil(), 1000, 1);
+		ExecutorService callers = Executors.newFixedThreadPool(8);
+		AtomicBoolean saturating = new AtomicBoolean(true);
+		for (int i = 0; i < 8; i++) {
+			callers.submit(() -> {
+				while (saturating.get()) {
+					busy.acquirePermit();
+				}
+			});
+		}
+
+		Thread.sleep(100);
+		long start = System.nanoTime();
+		for (int i = 0; i < 100; i++) {
+			idle.acquirePermit();
+		}
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		saturating.set(false);
+		callers.shutdown();
+		assertTrue(callers.awaitTermination(5, TimeUnit.SECONDS));
+
+		assertTrue(elapsedMillis < 400, "elapsed " + elapsedMillis + " ms");
+	}
+}
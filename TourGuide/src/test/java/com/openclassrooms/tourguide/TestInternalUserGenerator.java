@@ -0,0 +1,84 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.cluster.ClusterMembership;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.GpsUtilScheduler;
+import com.openclassrooms.tourguide.service.InternalUserGenerator;
+import com.openclassrooms.tourguide.service.NearbyAttractionsCache;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideExecutors;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TrajectoryCompressor;
+import com.openclassrooms.tourguide.service.UserUpdatePublisher;
+import com.openclassrooms.tourguide.service.VisitAggregates;
+import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Classe de test de la génération des utilisateurs internes.
+ */
+public class TestInternalUserGenerator {
+
+    /**
+     * Une même graine produit la même population, quel que soit le parallélisme.
+     */
+	@Test
+	public void sameSeedGivesSamePopulation() {
+		Map<String, User> sequential = generate(new InternalUserGenerator(7, false), 1);
+		Map<String, User> parallel = generate(new InternalUserGenerator(7, false), 8);
+		Map<String, User> otherSeed = generate(new InternalUserGenerator(8, false), 8);
+
+		assertEquals(20_000, parallel.size());
+		for (String userName : List.of("internalUser0", "internalUser12345", "internalUser19999")) {
+			User user = sequential.get(userName);
+			assertEquals(user.getUserId(), parallel.get(userName).getUserId());
+			assertEquals(user.getLastVisitedLocation().location.latitude,
+					parallel.get(userName).getLastVisitedLocation().location.latitude);
+			assertEquals(3, parallel.get(userName).getVisitedLocations().size());
+			assertEquals(4, user.getUserId().version());
+			assertNotEquals(user.getUserId(), otherSeed.get(userName).getUserId());
+		}
+	}
+
+    /**
+     * En mode arrière-plan, le service est construit sans attendre la population, qui se remplit ensuite.
+     */
+	@Test
+	public void backgroundGenerationFillsRegistry() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(50_000);
+		TourGuideService tourGuideService = new TourGuideService(new GpsUtilScheduler(gpsUtil), rewardsService,
+				ClusterMembership.standalone(), new UserUpdatePublisher(), new TourGuideExecutors(),
+				Tracker.Settings.DEFAULT, TrajectoryCompressor.disabled(rewardsService), new VisitAggregates(),
+				new NearbyAttractionsCache(), new InternalUserGenerator(InternalUserGenerator.DEFAULT_SEED, true));
+		tourGuideService.tracker.stopTracking();
+
+		InternalUserGenerator.Report report = tourGuideService.getInternalUsersGeneration().join();
+		InternalTestHelper.setInternalUserNumber(100);
+
+		assertEquals(50_000, report.users());
+		assertEquals(50_000, tourGuideService.getAllUsers().size());
+	}
+
+	private Map<String, User> generate(InternalUserGenerator generator, int threads) {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		Map<String, User> users = new ConcurrentHashMap<>();
+		generator.generate(20_000, executor, chunk -> chunk.forEach(user -> users.put(user.getUserName(), user))).join();
+		executor.shutdown();
+		return users;
+	}
+}
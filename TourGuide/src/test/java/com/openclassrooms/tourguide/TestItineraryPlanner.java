@@ -0,0 +1,142 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import com.openclassrooms.tourguide.helper.GeoUtils;
+import com.openclassrooms.tourguide.service.AttractionCatalog;
+import com.openclassrooms.tourguide.service.AttractionDistanceMatrix;
+import com.openclassrooms.tourguide.service.ItineraryPlanner;
+
+/**
+ * Classe de test de la matrice des distances entre attractions et du planificateur d'itinéraires.
+ */
+public class TestItineraryPlanner {
+
+	private final AttractionCatalog attractionCatalog = new AttractionCatalog(new GpsUtil());
+	private final Location start = new Location(33.817595, -117.922008);
+
+    /**
+     * Vérifie que la matrice restitue les distances calculées deux à deux, dans les deux sens.
+     */
+	@Test
+	public void matrixMatchesPairwiseDistances() {
+		List<Attraction> attractions = attractionCatalog.getSnapshot().getAttractions();
+		AttractionDistanceMatrix matrix = attractionCatalog.getSnapshot().getDistanceMatrix();
+
+		assertEquals(attractions.size(), matrix.size());
+		for (int i = 0; i < attractions.size(); i++) {
+			assertEquals(0, matrix.distance(i, i));
+			assertEquals(i, matrix.indexOf(attractions.get(i).attractionName));
+			for (int j = 0; j < attractions.size(); j++) {
+				double expected = GeoUtils.distanceInMiles(attractions.get(i).latitude, attractions.get(i).longitude,
+						attractions.get(j).latitude, attractions.get(j).longitude);
+				assertEquals(expected, matrix.distance(i, j), expected * 1e-6 + 1e-3);
+				assertEquals(matrix.distance(i, j), matrix.distance(j, i));
+			}
+		}
+		assertEquals(-1, matrix.indexOf("Atlantis"));
+	}
+
+    /**
+     * Vérifie que l'itinéraire tient dans la durée du séjour et ne visite chaque attraction qu'une fois.
+     */
+	@Test
+	public void itineraryRespectsTripDuration() {
+		ItineraryPlanner planner = new ItineraryPlanner(attractionCatalog, 3);
+
+		ItineraryPlanner.Itinerary itinerary = planner.plan(start, 2);
+
+		assertEquals(2, itinerary.days().size());
+		Set<String> visited = new HashSet<>();
+		double total = 0;
+		for (ItineraryPlanner.Day day : itinerary.days()) {
+			assertTrue(day.stops().size() <= 3);
+			for (ItineraryPlanner.Stop stop : day.stops()) {
+				assertTrue(visited.add(stop.attraction().attractionName));
+				total += stop.milesFromPrevious();
+			}
+		}
+		assertEquals(6, visited.size());
+		assertEquals(total, itinerary.totalMiles(), 1e-6);
+		assertEquals(1, planner.plan(start, 1, List.of("Disneyland", "Disneyland")).days().get(0).stops().size());
+		assertThrows(IllegalArgumentException.class, () -> planner.plan(start, 1, List.of("Atlantis")));
+		assertThrows(IllegalArgumentException.class, () -> planner.plan(start, 1,
+				attractionCatalog.getSnapshot().getAttractions().stream().limit(4).map(a -> a.attractionName).toList()));
+	}
+
+    /**
+     * Compare le trajet obtenu au plus court trajet possible, calculé par énumération sur huit attractions.
+     */
+	@Test
+	public void routeIsCloseToOptimal() {
+		List<Attraction> attractions = attractionCatalog.getSnapshot().getAttractions();
+		List<String> names = attractions.stream().skip(5).limit(8).map(a -> a.attractionName).toList();
+		ItineraryPlanner planner = new ItineraryPlanner(attractionCatalog, names.size());
+
+		double planned = planner.plan(start, 1, names).totalMiles();
+
+		AttractionDistanceMatrix matrix = attractionCatalog.getSnapshot().getDistanceMatrix();
+		int[] stops = names.stream().mapToInt(matrix::indexOf).toArray();
+		double optimal = shortestRoute(matrix, stops, 0, -1, 0, Double.POSITIVE_INFINITY);
+		assertTrue(planned >= optimal - 1e-3, planned + " < " + optimal);
+		assertTrue(planned <= optimal * 1.05, planned + " vs optimal " + optimal);
+	}
+
+    /**
+     * Vérifie qu'un itinéraire couvrant tout le catalogue est planifié en moins d'une milliseconde en moyenne.
+     */
+	@Test
+	public void planningTakesMilliseconds() {
+		ItineraryPlanner planner = new ItineraryPlanner(attractionCatalog, 3);
+		int requests = 2_000;
+		for (int i = 0; i < requests; i++) {
+			planner.plan(start, 10);
+		}
+		long begin = System.nanoTime();
+		for (int i = 0; i < requests; i++) {
+			planner.plan(new Location(start.latitude + i * 1e-3, start.longitude), 10);
+		}
+		double millisPerRequest = (System.nanoTime() - begin) / 1e6 / requests;
+		System.out.printf("itinerary of %d attractions: %.3f ms/request%n",
+				planner.plan(start, 10).days().stream().mapToInt(day -> day.stops().size()).sum(), millisPerRequest);
+
+		assertTrue(millisPerRequest < 1, millisPerRequest + " ms/request");
+	}
+
+	private double shortestRoute(AttractionDistanceMatrix matrix, int[] stops, int placed, int previous,
+								 double length, double best) {
+		if (length >= best) {
+			return best;
+		}
+		if (placed == stops.length) {
+			return length;
+		}
+		for (int i = placed; i < stops.length; i++) {
+			swap(stops, placed, i);
+			Attraction attraction = attractionCatalog.getSnapshot().getAttractions().get(stops[placed]);
+			double edge = previous < 0
+					? GeoUtils.distanceInMiles(start.latitude, start.longitude, attraction.latitude, attraction.longitude)
+					: matrix.distance(previous, stops[placed]);
+			best = shortestRoute(matrix, stops, placed + 1, stops[placed], length + edge, best);
+			swap(stops, placed, i);
+		}
+		return best;
+	}
+
+	private static void swap(int[] array, int i, int j) {
+		int value = array[i];
+		array[i] = array[j];
+		array[j] = value;
+	}
+}
@@ -0,0 +1,111 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.user.LocationHistory;
+
+/**
+ * Classe de test de l'historique des positions trié par date.
+ */
+public class TestLocationHistory {
+
+	private final UUID userId = UUID.randomUUID();
+
+    /**
+     * Les positions reçues dans le désordre sont rangées par date,
+     * et la dernière position est la plus récente.
+     */
+	@Test
+	public void locationsAreKeptInTimeOrder() {
+		LocationHistory history = new LocationHistory();
+		history.add(visit(3000));
+		history.add(visit(1000));
+		history.add(visit(2000));
+		history.replaceLast(visit(4000));
+
+		assertEquals(List.of(1000L, 2000L, 4000L), times(history.asList()));
+		assertEquals(4000, history.last().timeVisited.getTime());
+	}
+
+    /**
+     * Une période se lit page par page en reprenant {@code nextFrom} et {@code nextSkip},
+     * sans perdre ni répéter de positions, même de même date.
+     */
+	@Test
+	public void periodIsPaginatedWithoutGapsOrDuplicates() {
+		LocationHistory history = new LocationHistory();
+		for (int i = 0; i < 100; i++) {
+			history.add(visit(i / 2 * 1000L));
+		}
+
+		List<Long> read = new ArrayList<>();
+		Long from = 10_000L;
+		int skip = 0;
+		LocationHistory.Page page;
+		do {
+			page = history.find(from, skip, 40_000, 7);
+			read.addAll(times(page.locations()));
+			from = page.nextFrom();
+			skip = page.nextSkip();
+		} while (from != null);
+
+		assertEquals(60, history.find(10_000, 40_000, 7).matching());
+		assertEquals(60, read.size());
+		assertEquals(10_000L, read.get(0));
+		assertEquals(39_000L, read.get(59));
+		assertNull(history.find(50_000, 60_000, 100).nextFrom());
+		assertEquals(0, history.find(60_000, 70_000, 10).locations().size());
+	}
+
+    /**
+     * Plus de positions de même date que la limite : chaque page respecte la limite,
+     * et les positions sont toutes lues une fois, dans leur ordre d'arrivée.
+     */
+	@Test
+	public void limitIsHardCapForSameDateBursts() {
+		LocationHistory history = new LocationHistory();
+		history.add(visit(1000, 0));
+		for (int i = 1; i <= 20; i++) {
+			history.add(visit(2000, i));
+		}
+		history.add(visit(3000, 21));
+
+		List<Double> read = new ArrayList<>();
+		Long from = 0L;
+		int skip = 0;
+		LocationHistory.Page page;
+		do {
+			page = history.find(from, skip, Long.MAX_VALUE, 7);
+			assertTrue(page.locations().size() <= 7, "page of " + page.locations().size());
+			page.locations().forEach(visitedLocation -> read.add(visitedLocation.location.latitude));
+			from = page.nextFrom();
+			skip = page.nextSkip();
+		} while (from != null);
+
+		assertEquals(IntStream.rangeClosed(0, 21).mapToObj(i -> (double) i).toList(), read);
+	}
+
+	private VisitedLocation visit(long millis, double latitude) {
+		return new VisitedLocation(userId, new Location(latitude, 0), new Date(millis));
+	}
+
+	private VisitedLocation visit(long millis) {
+		return new VisitedLocation(userId, new Location(0, 0), new Date(millis));
+	}
+
+	private List<Long> times(List<VisitedLocation> locations) {
+		return locations.stream().map(visitedLocation -> visitedLocation.timeVisited.getTime()).toList();
+	}
+}
@@ -0,0 +1,111 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.service.RewardCentralClient;
+import com.openclassrooms.tourguide.service.TourGuideExecutors;
+
+/**
+ * Classe de test du client RewardCentral.
+ * Ces tests vérifient l'envoi de requêtes dupliquées (hedges) et le repli
+ * sur la dernière valeur connue lorsque la deadline est dépassée.
+ */
+public class TestRewardCentralClient {
+
+    /**
+     * Vérifie qu'une requête dupliquée répond à la place d'un premier appel trop lent.
+     */
+	@Test
+	public void hedgedRequestWinsOverSlowCall() {
+		RewardCentral rewardCentral = new ScriptedRewardCentral(2000, 10);
+		RewardCentralClient client = new RewardCentralClient(rewardCentral, Duration.ofSeconds(1), 0.9);
+
+		long start = System.nanoTime();
+		int points = client.getAttractionRewardPoints(UUID.randomUUID(), UUID.randomUUID());
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertEquals(2, points);
+		assertEquals(1, client.getHedgeCount());
+		assertEquals(1, client.getHedgeWinCount());
+		assertTrue(elapsedMillis < 2000);
+	}
+
+    /**
+     * Vérifie que la dernière valeur connue est retournée lorsque la deadline est dépassée.
+     */
+	@Test
+	public void deadlineFallsBackToLastValue() {
+		RewardCentral rewardCentral = new ScriptedRewardCentral(10, 2000, 2000);
+		RewardCentralClient client = new RewardCentralClient(rewardCentral, Duration.ofMillis(300), 0.9);
+		UUID attractionId = UUID.randomUUID();
+
+		int first = client.getAttractionRewardPoints(attractionId, UUID.randomUUID());
+		int second = client.getAttractionRewardPoints(attractionId, UUID.randomUUID());
+
+		assertEquals(1, first);
+		assertEquals(first, second);
+		assertEquals(1, client.getDeadlineFallbackCount());
+	}
+
+    /**
+     * Vérifie qu'un appel rejeté par le pool d'entrée-sortie saturé échoue aussitôt au lieu de s'accumuler
+     * dans sa file, et que la profondeur de la file et le rejet sont exposés.
+     */
+	@Test
+	public void saturatedPoolRejectsCalls() {
+		TourGuideExecutors executors = new TourGuideExecutors(1, 1, 1, 1);
+		RewardCentralClient client = new RewardCentralClient(new ScriptedRewardCentral(500),
+				executors.io(), Duration.ofSeconds(5), 0.9);
+		try {
+			client.getAttractionRewardPointsAsync(UUID.randomUUID(), UUID.randomUUID(), Duration.ofSeconds(5));
+			client.getAttractionRewardPointsAsync(UUID.randomUUID(), UUID.randomUUID(), Duration.ofSeconds(5));
+			CompletableFuture<Integer> rejected = client.getAttractionRewardPointsAsync(
+					UUID.randomUUID(), UUID.randomUUID(), Duration.ofSeconds(5));
+
+			CompletionException e = assertThrows(CompletionException.class, rejected::join);
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+			assertEquals(1, client.getFailureCount());
+			assertEquals(1, executors.getIoQueueDepth());
+			assertEquals(1, executors.getRejectedCount());
+		} finally {
+			executors.shutdown();
+		}
+	}
+
+    /**
+     * RewardCentral simulé : le n-ième appel dure le n-ième délai fourni
+     * et retourne son numéro d'ordre.
+     */
+	private static class ScriptedRewardCentral extends RewardCentral {
+		private final long[] delaysMillis;
+		private final AtomicInteger calls = new AtomicInteger();
+
+		ScriptedRewardCentral(long... delaysMillis) {
+			this.delaysMillis = delaysMillis;
+		}
+
+		@Override
+		public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+			int call = calls.incrementAndGet();
+			try {
+				TimeUnit.MILLISECONDS.sleep(delaysMillis[Math.min(call, delaysMillis.length) - 1]);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return call;
+		}
+	}
+}
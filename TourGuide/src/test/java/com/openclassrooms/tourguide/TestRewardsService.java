@@ -1,21 +1,33 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.AttractionCatalog;
+import com.openclassrooms.tourguide.service.RewardCentralClient;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.WarmUpService;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 
@@ -55,6 +67,46 @@ public class TestRewardsService {
 		assertTrue(rewardsService.isWithinAttractionProximity(attraction, attraction));
 	}
 
+    /**
+     * Vérifie qu'un rafraîchissement du catalogue sans changement conserve
+     * l'instantané courant et l'identité des attractions.
+     */
+	@Test
+	public void attractionCatalogRefreshKeepsSnapshot() {
+		AttractionCatalog attractionCatalog = new AttractionCatalog(new GpsUtil());
+		AttractionCatalog.Snapshot before = attractionCatalog.getSnapshot();
+
+		boolean changed = attractionCatalog.refresh();
+
+		assertFalse(changed);
+		assertSame(before, attractionCatalog.getSnapshot());
+		assertEquals(1, attractionCatalog.getSnapshot().getVersion());
+	}
+
+    /**
+     * Vérifie que le préchauffage charge les points de toutes les attractions, exécute
+     * les attractions proches depuis chacune et passe l'indicateur de santé à UP avec la durée mesurée.
+     */
+	@Test
+	public void warmUpReportsReadiness() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		WarmUpService warmUpService = new WarmUpService(rewardsService, tourGuideService, 8);
+		assertEquals(Status.OUT_OF_SERVICE, warmUpService.health().getStatus());
+
+		warmUpService.warmUp();
+		tourGuideService.tracker.stopTracking();
+
+		assertTrue(warmUpService.isReady());
+		assertEquals(Status.UP, warmUpService.health().getStatus());
+		assertEquals(rewardsService.getAttractionIndex().getAttractions().size(),
+				warmUpService.health().getDetails().get("attractions"));
+		assertEquals(rewardsService.getAttractionIndex().getAttractions().size(),
+				warmUpService.health().getDetails().get("nearbyRequests"));
+	}
+
     /**
      * Vérifie que le paramètre de proximité par défaut est utilisé
      * pour calculer les récompenses.
@@ -75,4 +127,65 @@ public class TestRewardsService {
 		assertEquals(gpsUtil.getAttractions().size(), userRewards.size());
 	}
 
+    /**
+     * Lance simultanément plusieurs calculs de récompenses pour le même utilisateur et vérifie
+     * que chaque récompense est renvoyée par un seul des appels.
+     */
+	@Test
+	public void concurrentCalculationsReportEachRewardOnce() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), gpsUtil.getAttractions().get(0), new Date()));
+
+		List<CompletableFuture<List<UserReward>>> calculations = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			calculations.add(CompletableFuture.supplyAsync(() -> rewardsService.calculateRewards(user)));
+		}
+		List<UserReward> reported = calculations.stream()
+				.flatMap(calculation -> calculation.join().stream())
+				.toList();
+
+		assertEquals(gpsUtil.getAttractions().size(), user.getUserRewards().size());
+		assertEquals(Set.copyOf(user.getUserRewards()), Set.copyOf(reported));
+		assertEquals(user.getUserRewards().size(), reported.size());
+	}
+
+
+    /**
+     * Vérifie que des points expirés sont redemandés à RewardCentral et que, si la réponse
+     * tarde au-delà de la deadline, la dernière valeur connue est servie.
+     */
+	@Test
+	public void expiredPointsAreRefreshedWithDeadlineFallback() throws InterruptedException {
+		AtomicInteger calls = new AtomicInteger();
+		RewardCentral slowAfterFirstCall = new RewardCentral() {
+			@Override
+			public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+				if (calls.incrementAndGet() > 1) {
+					try {
+						TimeUnit.SECONDS.sleep(2);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return 100 + calls.get();
+			}
+		};
+		RewardCentralClient client = new RewardCentralClient(slowAfterFirstCall, Duration.ofMillis(200), 0.9);
+		RewardsService rewardsService = new RewardsService(new AttractionCatalog(new GpsUtil()), client,
+				Duration.ofMillis(50));
+		Attraction attraction = rewardsService.getAttractionIndex().getAttractions().get(0);
+
+		int first = rewardsService.getRewardPointsAsync(attraction, UUID.randomUUID()).join();
+		assertEquals(first, rewardsService.getRewardPointsAsync(attraction, UUID.randomUUID()).join());
+		assertEquals(1, calls.get());
+		TimeUnit.MILLISECONDS.sleep(100);
+		int refreshed = rewardsService.getRewardPointsAsync(attraction, UUID.randomUUID()).join();
+
+		assertTrue(calls.get() > 1);
+		assertEquals(first, refreshed);
+		assertEquals(1, client.getDeadlineFallbackCount());
+	}
 }
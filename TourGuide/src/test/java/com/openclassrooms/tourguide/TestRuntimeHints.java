@@ -0,0 +1,32 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import tripPricer.Provider;
+
+/**
+ * Classe de test des indications de compilation native.
+ */
+public class TestRuntimeHints {
+
+    /**
+     * Les champs publics des classes de {@code libs/} sérialisées en JSON
+     * et les DTO des flux sont accessibles par réflexion.
+     */
+	@Test
+	public void libraryTypesAreRegisteredForReflection() throws NoSuchFieldException {
+		RuntimeHints hints = new RuntimeHints();
+		new TourGuideRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+		assertTrue(RuntimeHintsPredicates.reflection().onField(VisitedLocation.class.getField("location")).test(hints));
+		assertTrue(RuntimeHintsPredicates.reflection().onField(Attraction.class.getField("attractionName")).test(hints));
+		assertTrue(RuntimeHintsPredicates.reflection().onField(Provider.class.getField("price")).test(hints));
+		assertTrue(RuntimeHintsPredicates.reflection().onType(UserLocationDTO.class).test(hints));
+	}
+}
@@ -1,19 +1,32 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.server.ResponseStatusException;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.helper.GeoUtils;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.AttractionIndex;
+import com.openclassrooms.tourguide.service.NearbyAttractionsCache;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
@@ -111,6 +124,24 @@ public class TestTourGuideService {
 		assertEquals(user.getUserId(), visitedLocation.userId);
 	}
 
+    /**
+     * Vérifie que la fermeture du service arrête l'ordonnanceur GpsUtil qu'il a créé :
+     * une nouvelle demande de position est alors annulée au lieu d'attendre un worker.
+     */
+	@Test
+	public void closeStopsOwnedScheduler() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+		tourGuideService.close();
+		tourGuideService.close();
+
+		assertThrows(CancellationException.class, () -> tourGuideService.trackUserLocation(user));
+	}
+
     /**
      * Vérifie que les cinq attractions les plus proches sont bien récupérées pour l'utilisateur
      */
@@ -131,6 +162,156 @@ public class TestTourGuideService {
 		assertEquals(5, attractions.size());
 	}
 
+    /**
+     * Vérifie que la recherche d'attractions respecte le rayon de proximité
+     * défini dans les préférences de l'utilisateur.
+     */
+	@Test
+	public void getNearbyAttractionsWithinUserProximity() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.getUserPreferences().setAttractionProximity(100);
+		Attraction disneyland = rewardsService.getAttractionIndex().getAttractions().get(0);
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), disneyland, new Date());
+
+		List<Attraction> attractions = tourGuideService.getNearByAttractions(user, visitedLocation, 5);
+		long expected = rewardsService.getAttractionIndex().getAttractions().stream()
+				.filter(a -> tourGuideService.getDistance(disneyland, a) <= 100)
+				.count();
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(disneyland.attractionName, attractions.get(0).attractionName);
+		assertEquals(Math.min(5, expected), attractions.size());
+		attractions.forEach(a -> assertTrue(tourGuideService.getDistance(disneyland, a) <= 100));
+	}
+
+    /**
+     * Vérifie qu'une seconde requête dans la même cellule de position est servie par le cache,
+     * avec les distances recalculées depuis la position exacte.
+     */
+	@Test
+	public void nearbyAttractionsAreCachedPerCell() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction disneyland = rewardsService.getAttractionIndex().getAttractions().get(0);
+		Location nearby = new Location(disneyland.latitude + 0.001, disneyland.longitude);
+
+		List<NearbyAttractionDTO> first = tourGuideService.getNearbyAttractionDTOs(user,
+				new VisitedLocation(user.getUserId(), disneyland, new Date()), 5);
+		List<NearbyAttractionDTO> second = tourGuideService.getNearbyAttractionDTOs(user,
+				new VisitedLocation(user.getUserId(), nearby, new Date()), 5);
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(1, tourGuideService.getNearbyAttractionsCache().getHitCount());
+		assertEquals(first.size(), second.size());
+		assertEquals(first.get(0).rewardPoints, second.get(0).rewardPoints);
+		assertEquals(tourGuideService.getDistance(nearby, disneyland), second.get(0).distanceInMiles, 1e-9);
+	}
+
+    /**
+     * Vérifie que les candidats d'une cellule contiennent le résultat exact de toute position de la cellule,
+     * y compris près de ses bords, sur un catalogue dense où les plus proches changent d'un bord à l'autre.
+     */
+	@Test
+	public void cellCandidatesCoverEveryPositionOfTheCell() {
+		List<Attraction> catalog = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			for (int j = 0; j < 20; j++) {
+				catalog.add(new Attraction("a" + i + "-" + j, "city", "state", 33.8 + i * 0.0037, -117.95 + j * 0.0041));
+			}
+		}
+		AttractionIndex index = new AttractionIndex(catalog);
+		NearbyAttractionsCache cache = new NearbyAttractionsCache(100, 0.01);
+
+		for (int proximity : new int[] { Integer.MAX_VALUE, 1 }) {
+			for (int i = 0; i <= 20; i++) {
+				for (int j = 0; j <= 20; j++) {
+					Location location = new Location(33.83 + i * 0.0005 - 1e-9, -117.92 + j * 0.0005 - 1e-9);
+					NearbyAttractionsCache.Key key = cache.keyFor(location, proximity, 5);
+					List<Attraction> candidates = cache.findCandidates(index, key);
+
+					List<String> expected = index.findWithinRadius(location, proximity, 5).stream()
+							.map(a -> a.attractionName).toList();
+					List<String> ranked = candidates.stream()
+							.filter(a -> distance(location, a) <= proximity)
+							.sorted(Comparator.comparingDouble(a -> distance(location, a)))
+							.limit(5)
+							.map(a -> a.attractionName)
+							.toList();
+					assertEquals(expected, ranked, location.latitude + "," + location.longitude);
+				}
+			}
+		}
+	}
+
+	private static double distance(Location location, Attraction attraction) {
+		return GeoUtils.distanceInMiles(location.latitude, location.longitude, attraction.latitude, attraction.longitude);
+	}
+
+    /**
+     * Vérifie qu'une requête groupée répond pour chaque utilisateur en ne demandant
+     * qu'une fois les points de chaque attraction.
+     */
+	@Test
+	public void batchNearbyAttractionsShareRewardCalls() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		Attraction disneyland = rewardsService.getAttractionIndex().getAttractions().get(0);
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			User user = new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com");
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
+					new Location(disneyland.latitude + i * 0.05, disneyland.longitude), new Date()));
+			users.add(user);
+		}
+
+		Map<User, List<NearbyAttractionDTO>> results = tourGuideService.getNearbyAttractionDTOs(users, 5);
+		long distinctAttractions = results.values().stream()
+				.flatMap(List::stream)
+				.map(dto -> dto.attractionName)
+				.distinct()
+				.count();
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(users.size(), results.size());
+		results.values().forEach(attractions -> assertEquals(5, attractions.size()));
+		assertEquals(distinctAttractions, rewardsService.getRewardCentralClient().getCallCount());
+	}
+
+    /**
+     * Vérifie qu'un nombre d'attractions nul, négatif ou trop grand est refusé par une erreur 400,
+     * sur l'endpoint simple comme sur sa version groupée.
+     */
+	@Test
+	public void nearbyAttractionsLimitIsValidated() {
+		TourGuideController controller = new TourGuideController();
+		BatchController batchController = new BatchController();
+
+		for (int limit : new int[] {0, -1, TourGuideController.MAX_NEARBY_LIMIT + 1}) {
+			ResponseStatusException single = assertThrows(ResponseStatusException.class,
+					() -> controller.getNearbyAttractions("internalUser0", limit));
+			ResponseStatusException batch = assertThrows(ResponseStatusException.class,
+					() -> batchController.getNearbyAttractions(new MockHttpServletRequest(), List.of("internalUser0"), limit));
+
+			assertEquals(HttpStatus.BAD_REQUEST, single.getStatusCode());
+			assertEquals(HttpStatus.BAD_REQUEST, batch.getStatusCode());
+		}
+	}
+
 	public void getTripDeals() {
 		GpsUtil gpsUtil = new GpsUtil();
 		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
@@ -0,0 +1,85 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.cluster.ClusterMembership;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.GpsUtilScheduler;
+import com.openclassrooms.tourguide.service.InternalUserGenerator;
+import com.openclassrooms.tourguide.service.NearbyAttractionsCache;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideExecutors;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TrajectoryCompressor;
+import com.openclassrooms.tourguide.service.UserUpdatePublisher;
+import com.openclassrooms.tourguide.service.VisitAggregates;
+import com.openclassrooms.tourguide.tracker.Tracker;
+
+/**
+ * Classe de test de la cadence du tracker et du traitement des cycles en retard.
+ */
+public class TestTracker {
+
+    /**
+     * Avec un débit GpsUtil volontairement trop faible, chaque cycle dépasse son échéance :
+     * les suivis en retard sont annulés et les cycles suivants délestent les utilisateurs
+     * aux positions les plus récentes, sans décaler la cadence.
+     */
+	@Test
+	public void overrunningCyclesShedLoad() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(50);
+		TourGuideService tourGuideService = new TourGuideService(new GpsUtilScheduler(gpsUtil, 20, 1),
+				rewardsService, ClusterMembership.standalone(), new UserUpdatePublisher(), new TourGuideExecutors(),
+				new Tracker.Settings(Duration.ofMillis(300), Duration.ofMillis(10), Tracker.OverrunPolicy.SHED),
+				TrajectoryCompressor.disabled(rewardsService), new VisitAggregates(),
+				new NearbyAttractionsCache(), InternalUserGenerator.defaults());
+
+		TimeUnit.MILLISECONDS.sleep(1000);
+		Tracker tracker = tourGuideService.tracker;
+		tracker.stopTracking();
+
+		assertTrue(tracker.getCycleCount() >= 2, "cycles " + tracker.getCycleCount());
+		assertTrue(tracker.getOverrunCount() > 0);
+		assertTrue(tracker.getSkippedUserCount() > 0);
+		assertTrue(tracker.getShedUserCount() > 0);
+		assertEquals(0, tracker.getCarriedOverUserCount());
+		assertTrue(tracker.getStaleness().maxMillis() > 0);
+		assertTrue(tracker.getStaleness().stalestSeconds().size() <= 10);
+	}
+
+    /**
+     * Arrêter le tracker libère le thread du pool injecté sans arrêter ce pool, qui reste utilisable
+     * jusqu'à l'arrêt par son propriétaire.
+     */
+	@Test
+	public void stopTrackingKeepsInjectedPool() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideExecutors executors = new TourGuideExecutors();
+		TourGuideService tourGuideService = new TourGuideService(new GpsUtilScheduler(gpsUtil, 1000, 1),
+				rewardsService, ClusterMembership.standalone(), new UserUpdatePublisher(), executors,
+				Tracker.Settings.DEFAULT, TrajectoryCompressor.disabled(rewardsService), new VisitAggregates(),
+				new NearbyAttractionsCache(), InternalUserGenerator.defaults());
+
+		tourGuideService.tracker.stopTracking();
+
+		assertFalse(executors.tracker().isShutdown());
+		assertEquals("free", executors.tracker().submit(() -> "free").get(5, TimeUnit.SECONDS));
+		tourGuideService.close();
+		assertFalse(executors.tracker().isShutdown());
+		executors.shutdown();
+		assertTrue(executors.tracker().isShutdown());
+	}
+}
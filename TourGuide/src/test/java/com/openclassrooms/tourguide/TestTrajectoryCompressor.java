@@ -0,0 +1,97 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TrajectoryCompressor;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Classe de test de la compression en ligne de l'historique des positions.
+ */
+public class TestTrajectoryCompressor {
+
+    /**
+     * Un utilisateur immobile puis en ligne droite, loin de toute attraction,
+     * ne conserve que les extrémités de ses trajectoires, plus une position
+     * tous les {@code maxWindow} remplacements.
+     */
+	@Test
+	public void stationaryAndStraightMoversAreCompressed() {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		TrajectoryCompressor compressor = new TrajectoryCompressor(rewardsService, 0.1, 64);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+		for (int i = 0; i < 100; i++) {
+			compressor.append(user, visit(user, 0, -150));
+		}
+		for (int i = 1; i <= 50; i++) {
+			compressor.append(user, visit(user, 0, -150 + i * 0.001));
+		}
+
+		assertTrue(user.getVisitedLocations().size() <= 5, "size " + user.getVisitedLocations().size());
+		assertEquals(-150 + 50 * 0.001, user.getLastVisitedLocation().location.longitude, 1e-9);
+		assertEquals(150, compressor.getAppendedCount() + compressor.getReplacedCount());
+	}
+
+    /**
+     * Les positions proches d'une attraction sont toutes conservées.
+     */
+	@Test
+	public void locationsNearAttractionsAreKept() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		TrajectoryCompressor compressor = new TrajectoryCompressor(rewardsService, 0.1, 64);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = gpsUtil.getAttractions().get(0);
+
+		for (int i = 0; i < 20; i++) {
+			compressor.append(user, visit(user, attraction.latitude, attraction.longitude));
+		}
+
+		assertEquals(20, user.getVisitedLocations().size());
+		assertEquals(0, compressor.getReplacedCount());
+	}
+
+    /**
+     * La fenêtre d'un utilisateur sans nouvelle position est oubliée au passage suivant,
+     * et celle d'un utilisateur remplacé l'est immédiatement.
+     */
+	@Test
+	public void idleAndForgottenWindowsAreEvicted() throws InterruptedException {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		TrajectoryCompressor compressor = new TrajectoryCompressor(rewardsService, 0.1, 64, Duration.ofMillis(100));
+		User idle = new User(UUID.randomUUID(), "idle", "000", "idle@tourGuide.com");
+		User active = new User(UUID.randomUUID(), "active", "000", "active@tourGuide.com");
+
+		compressor.append(idle, visit(idle, 0, -150));
+		compressor.append(active, visit(active, 0, -150));
+		assertEquals(2, compressor.getWindowCount());
+
+		TimeUnit.MILLISECONDS.sleep(200);
+		compressor.append(active, visit(active, 0, -150.001));
+		assertEquals(1, compressor.getWindowCount());
+
+		compressor.forget(active.getUserId());
+		assertEquals(0, compressor.getWindowCount());
+		compressor.append(active, visit(active, 0, -150.002));
+		assertEquals(3, active.getVisitedLocations().size());
+	}
+
+	private VisitedLocation visit(User user, double latitude, double longitude) {
+		return new VisitedLocation(user.getUserId(), new Location(latitude, longitude), new Date());
+	}
+}
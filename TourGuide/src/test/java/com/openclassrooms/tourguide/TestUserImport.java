@@ -0,0 +1,120 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import gpsUtil.GpsUtil;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.UserImportService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Classe de test de l'import en masse des utilisateurs.
+ */
+public class TestUserImport {
+
+    /**
+     * Un fichier CSV est importé par blocs parallèles ; les lignes invalides sont rejetées
+     * et les utilisateurs déjà présents conservés.
+     */
+	@Test
+	public void csvUsersAreImportedInChunks(@TempDir Path directory) throws Exception {
+		TourGuideService tourGuideService = newTourGuideService();
+		Path file = directory.resolve("users.csv");
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			writer.write("userName,emailAddress,tripDuration,locations\n");
+			for (int i = 0; i < 10_000; i++) {
+				writer.write("user" + i + ",\"user" + i + "@tourGuide.com\"," + (i % 5 + 1) + ",1.5;2.5;2000|1.0;2.0;1000\n");
+			}
+			writer.write("user7,duplicate@tourGuide.com,1,\n");
+			writer.write("user10000,bad@tourGuide.com,many,\n");
+		}
+
+		ExecutorService cpu = Executors.newFixedThreadPool(4);
+		UserImportService.Report report = new UserImportService(tourGuideService, cpu, 500)
+				.importUsers(file, UserImportService.Format.CSV);
+		cpu.shutdown();
+
+		assertEquals(10_002, report.rows());
+		assertEquals(10_000, report.imported());
+		assertEquals(1, report.duplicates());
+		assertEquals(1, report.rejected());
+		assertTrue(report.errors().get(0).startsWith("line 10003"), report.errors().get(0));
+		assertTrue(report.rowsPerSecond() > 0);
+
+		User user = tourGuideService.getUser("user7");
+		assertEquals("user7@tourGuide.com", user.getEmailAddress());
+		assertEquals(3, user.getUserPreferences().getTripDuration());
+		assertEquals(List.of(1000L, 2000L), user.getVisitedLocations().stream()
+				.map(visitedLocation -> visitedLocation.timeVisited.getTime()).toList());
+	}
+
+    /**
+     * Un fichier NDJSON est importé avec les préférences imbriquées et l'historique.
+     */
+	@Test
+	public void ndjsonUsersAreImported(@TempDir Path directory) throws Exception {
+		TourGuideService tourGuideService = newTourGuideService();
+		Path file = directory.resolve("users.ndjson");
+		Files.writeString(file, """
+				{"userName":"anna","userId":"0e6a4a8e-4b36-4d1b-9a55-1b1e1c3a5a11","preferences":{"numberOfChildren":2},"locations":[{"latitude":33.8,"longitude":-117.9,"timeVisited":1000}]}
+				{"userName":"bob","emailAddress":"bob@tourGuide.com"}
+				{"emailAddress":"nobody@tourGuide.com"}
+				""");
+
+		ExecutorService cpu = Executors.newFixedThreadPool(2);
+		UserImportService.Report report = new UserImportService(tourGuideService, cpu, 2)
+				.importUsers(file, UserImportService.Format.of(file));
+		cpu.shutdown();
+
+		assertEquals(2, report.imported());
+		assertEquals(1, report.rejected());
+		User anna = tourGuideService.getUser("anna");
+		assertEquals("0e6a4a8e-4b36-4d1b-9a55-1b1e1c3a5a11", anna.getUserId().toString());
+		assertEquals(2, anna.getUserPreferences().getNumberOfChildren());
+		assertEquals(33.8, anna.getLastVisitedLocation().location.latitude);
+	}
+
+    /**
+     * Un en-tête CSV sans colonne {@code userName} est refusé par une erreur 400 qui en donne la raison.
+     */
+	@Test
+	public void invalidCsvHeaderIsBadRequest(@TempDir Path directory) throws Exception {
+		Files.writeString(directory.resolve("users.csv"), "name,emailAddress\njon,jon@tourGuide.com\n");
+		ExecutorService cpu = Executors.newFixedThreadPool(1);
+		ImportController controller = new ImportController();
+		controller.userImportService = new UserImportService(newTourGuideService(), cpu, 10);
+		controller.importDirectory = directory.toString();
+
+		ResponseStatusException e = assertThrows(ResponseStatusException.class,
+				() -> controller.importUsers("users.csv", null));
+		cpu.shutdown();
+
+		assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+		assertTrue(e.getReason().contains("userName"), e.getReason());
+	}
+
+	private TourGuideService newTourGuideService() {
+		GpsUtil gpsUtil = new GpsUtil();
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, new RewardsService(gpsUtil, new RewardCentral()));
+		tourGuideService.tracker.stopTracking();
+		return tourGuideService;
+	}
+}
@@ -0,0 +1,110 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * Classe de test de l'attribution des récompenses sous forte contention.
+ * Vérifie qu'une attraction n'est récompensée qu'une fois par utilisateur,
+ * quel que soit le nombre d'attributions concurrentes.
+ */
+public class TestUserRewards {
+
+	private static final int THREADS = 32;
+
+    /**
+     * Lance simultanément sur 32 threads l'attribution de toutes les attractions, plusieurs
+     * fois chacune, et vérifie qu'une seule attribution gagne par attraction.
+     */
+	@Test
+	public void concurrentGrantsKeepOneRewardPerAttraction() throws Exception {
+		List<Attraction> attractions = new GpsUtil().getAttractions();
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			for (int round = 0; round < 50; round++) {
+				User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+				VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attractions.get(0), new Date());
+				AtomicInteger granted = new AtomicInteger();
+				CountDownLatch start = new CountDownLatch(1);
+				List<CompletableFuture<Void>> tasks = new ArrayList<>();
+				for (int t = 0; t < THREADS; t++) {
+					int offset = t;
+					tasks.add(CompletableFuture.runAsync(() -> {
+						await(start);
+						for (int i = 0; i < attractions.size() * 4; i++) {
+							Attraction attraction = attractions.get((i + offset) % attractions.size());
+							if (user.addUserReward(new UserReward(visitedLocation, attraction, offset))) {
+								granted.incrementAndGet();
+							}
+						}
+					}, executor));
+				}
+				start.countDown();
+				CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+
+				List<UserReward> userRewards = user.getUserRewards();
+				Set<String> names = userRewards.stream().map(r -> r.attraction.attractionName).collect(Collectors.toSet());
+				assertEquals(attractions.size(), granted.get());
+				assertEquals(attractions.size(), userRewards.size());
+				assertEquals(attractions.size(), names.size());
+				assertEquals(attractions.size(), user.getRewardsVersion());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+    /**
+     * Lance simultanément plusieurs calculs de récompenses pour le même utilisateur et vérifie
+     * que l'ensemble des récompenses renvoyées par les appels est exactement celui de l'utilisateur.
+     */
+	@Test
+	public void concurrentCalculationsReportEachRewardOnce() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), gpsUtil.getAttractions().get(0), new Date()));
+
+		List<CompletableFuture<List<UserReward>>> calculations = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			calculations.add(CompletableFuture.supplyAsync(() -> rewardsService.calculateRewardsAsync(user).join()));
+		}
+		List<UserReward> reported = calculations.stream()
+				.flatMap(calculation -> calculation.join().stream())
+				.toList();
+
+		assertEquals(gpsUtil.getAttractions().size(), user.getUserRewards().size());
+		assertEquals(Set.copyOf(user.getUserRewards()), Set.copyOf(reported));
+		assertEquals(user.getUserRewards().size(), reported.size());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.UserUpdatePublisher;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Classe de test de la diffusion des mises à jour par Server-Sent Events.
+ * Vérifie qu'un abonné reçoit la nouvelle position publiée par le suivi.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class TestUserUpdates {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private TourGuideService tourGuideService;
+
+    /**
+     * Vérifie qu'un abonné à un utilisateur reçoit un événement {@code location} à chaque suivi.
+     */
+	@Test
+	public void subscriberReceivesTrackedLocation() throws Exception {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		tourGuideService.addUser(user);
+		HttpRequest request = HttpRequest.newBuilder(
+						URI.create("http://localhost:" + port + "/subscribe?userName=jon"))
+				.header("Accept", "text/event-stream")
+				.build();
+		HttpResponse<Stream<String>> response = HttpClient.newHttpClient()
+				.send(request, HttpResponse.BodyHandlers.ofLines());
+
+		CompletableFuture<String> locationData = CompletableFuture.supplyAsync(() -> {
+			Iterator<String> lines = response.body().iterator();
+			while (lines.hasNext()) {
+				if (lines.next().equals("event:" + UserUpdatePublisher.LOCATION_EVENT)) {
+					return lines.next();
+				}
+			}
+			return null;
+		});
+		while (tourGuideService.getUserUpdatePublisher().getSubscriberCount() == 0) {
+			Thread.sleep(10);
+		}
+		tourGuideService.trackUserLocation(user);
+
+		String data = locationData.get(10, TimeUnit.SECONDS);
+		response.body().close();
+
+		assertTrue(data.startsWith("data:") && data.contains(user.getUserId().toString()), data);
+	}
+}
@@ -0,0 +1,92 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.helper.BoundingBox;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.VisitAggregates;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * Classe de test des agrégats de fréquentation.
+ */
+public class TestVisitAggregates {
+
+    /**
+     * Les positions sont comptées par cellule et par tranche, et les tranches
+     * sorties de la rétention sont recyclées.
+     */
+	@Test
+	public void visitsAreCountedPerCellAndBucket() {
+		VisitAggregates aggregates = new VisitAggregates(1.0, Duration.ofHours(1), Duration.ofHours(3));
+		UUID userId = UUID.randomUUID();
+		Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		Instant start = Instant.parse("2024-05-01T10:00:00Z");
+
+		aggregates.recordVisit(visit(userId, 33.5, -117.5, start), List.of(attraction));
+		aggregates.recordVisit(visit(userId, 33.6, -117.9, start.plusSeconds(60)), List.of(attraction));
+		aggregates.recordVisit(visit(userId, -10.5, 20.5, start.plusSeconds(3600)), List.of());
+		aggregates.recordRewards(List.of(new UserReward(visit(userId, 33.8, -117.9, start), attraction, 100)));
+
+		List<VisitAggregates.Cell> firstHour = aggregates.heatmap(start, start.plusSeconds(3600), BoundingBox.WORLD);
+		assertEquals(List.of(new VisitAggregates.Cell(33, -118, 2)), firstHour);
+		assertEquals(2, aggregates.heatmap(start, start.plusSeconds(7200), BoundingBox.WORLD).size());
+		assertEquals(1, aggregates.heatmap(start, start.plusSeconds(7200), new BoundingBox(-20, 0, 0, 30)).size());
+		assertEquals(new VisitAggregates.AttractionFootfall(2, 1),
+				aggregates.footfall(start, start.plusSeconds(3600)).get("Disneyland"));
+
+		// Trois heures plus tard, l'emplacement de la première tranche est réutilisé
+		aggregates.recordVisit(visit(userId, 33.5, -117.5, start.plusSeconds(3 * 3600)), List.of());
+		aggregates.recordVisit(visit(userId, 33.5, -117.5, start), List.of());
+		assertTrue(aggregates.heatmap(start, start.plusSeconds(3600), BoundingBox.WORLD).isEmpty());
+		assertTrue(aggregates.footfall(start, start.plusSeconds(3600)).isEmpty());
+	}
+
+    /**
+     * Le suivi d'un utilisateur alimente les agrégats.
+     */
+	@Test
+	public void trackingFeedsAggregates() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		tourGuideService.trackUserLocation(user);
+		tourGuideService.trackUserLocation(user);
+		tourGuideService.tracker.stopTracking();
+
+		Map<String, VisitAggregates.AttractionFootfall> footfall =
+				tourGuideService.getVisitAggregates().footfall(Instant.EPOCH, Instant.now().plusSeconds(1));
+		long visits = tourGuideService.getVisitAggregates()
+				.heatmap(Instant.EPOCH, Instant.now().plusSeconds(1), BoundingBox.WORLD).stream()
+				.mapToLong(VisitAggregates.Cell::visits)
+				.sum();
+		assertEquals(2, visits);
+		assertEquals(user.getUserRewards().size(),
+				footfall.values().stream().mapToLong(VisitAggregates.AttractionFootfall::rewards).sum());
+	}
+
+	private VisitedLocation visit(UUID userId, double latitude, double longitude, Instant time) {
+		return new VisitedLocation(userId, new Location(latitude, longitude), Date.from(time));
+	}
+}